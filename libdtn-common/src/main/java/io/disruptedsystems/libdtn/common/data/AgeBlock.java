@@ -35,10 +35,11 @@ public class AgeBlock extends ExtensionBlock {
      */
     public void start() {
         timeStart = System.nanoTime();
+        timeEnd = timeStart;
     }
 
     /**
-     * Stop ageing this AgeBlock.
+     * Stop ageing this AgeBlock. The age it is serialized with is frozen until the next stop.
      */
     public void stop() {
         timeEnd = System.nanoTime();
@@ -39,12 +39,14 @@ public abstract class BlockBlob extends CanonicalBlock {
     }
 
     /**
-     * Clear the blob unless it is tagged not so.
+     * Release the reference on the blob. The blob frees its resources only if that was the
+     * last reference, other holders may still be using it otherwise. A file is never deleted,
+     * whoever created it manages its lifetime.
      */
     @Override
     public void clearBlock() {
         super.clearBlock();
-        data.getWritableBlob().clear();
+        data.release();
     }
 
     @Override
@@ -1,9 +1,14 @@
 package io.disruptedsystems.libdtn.common.data;
 
+import io.disruptedsystems.libdtn.common.data.blob.Blob;
 import io.disruptedsystems.libdtn.common.data.eid.Eid;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * The format of a bundle and its specifications are described in RFC 5050.
@@ -15,12 +20,17 @@ import java.util.LinkedList;
  * This is useful for bundle processing pipelines. Those attachement will not get serialized
  * neither to peers nor to storage.
  *
+ * <p>The serializer may also keep the encoded form of the blocks in the Bundle so that a bundle
+ * sent more than once is not encoded again. It is dropped whenever a block is added, updated or
+ * deleted, or when a field of the primary block is modified.
+ *
  * @author Lucien Loiseau on 16/07/18.
  */
 public class Bundle extends PrimaryBlock implements BundleApi {
 
     public ArrayList<CanonicalBlock> blocks = new ArrayList<>();
     private int blockNumber = 1;
+    private Map<Block, Object> encodedForms = Collections.synchronizedMap(new IdentityHashMap<>());
 
     /**
      * Default Constructor.
@@ -65,6 +75,67 @@ public class Bundle extends PrimaryBlock implements BundleApi {
             block.clearBlock();
         }
         blocks.clear();
+        encodedForms.clear();
+    }
+
+    /**
+     * take a reference on the blobs of this bundle, for instance while it is being sent or
+     * delivered. The blobs remain valid until they are released, even if the bundle is cleared
+     * in the meantime.
+     *
+     * @return the retained blobs, each of them must be released once done
+     * @throws IllegalStateException if a blob of this bundle was already deallocated
+     */
+    public List<Blob> retainBlobs() {
+        List<Blob> retained = new LinkedList<>();
+        try {
+            for (CanonicalBlock block : blocks) {
+                if (block instanceof BlockBlob) {
+                    retained.add(((BlockBlob) block).data.retain());
+                }
+            }
+        } catch (IllegalStateException ise) {
+            retained.forEach(Blob::release);
+            throw ise;
+        }
+        return retained;
+    }
+
+    /**
+     * returns the encoded form of a block of this bundle, as it was kept by the serializer.
+     *
+     * @param block the primary block (this Bundle) or one of its canonical block
+     * @return the encoded form or null if there is none
+     */
+    public Object getEncodedForm(Block block) {
+        return encodedForms.get(block);
+    }
+
+    /**
+     * keep the encoded form of a block of this bundle.
+     *
+     * @param block the primary block (this Bundle) or one of its canonical block
+     * @param encoded form of the block
+     */
+    public void setEncodedForm(Block block, Object encoded) {
+        encodedForms.put(block, encoded);
+    }
+
+    /**
+     * drop the encoded form of a block, it must be called by anyone that modifies the content of
+     * a block in place.
+     *
+     * @param block the primary block (this Bundle) or one of its canonical block
+     */
+    public void invalidateEncodedForm(Block block) {
+        encodedForms.remove(block);
+    }
+
+    @Override
+    protected void primaryBlockChanged() {
+        if (encodedForms != null) {
+            encodedForms.remove(this);
+        }
     }
 
     @Override
@@ -114,6 +185,8 @@ public class Bundle extends PrimaryBlock implements BundleApi {
         }
 
         if (found) {
+            encodedForms.remove(blocks.get(nb));
+            encodedForms.remove(block);
             blocks.get(nb).clearBlock();
             blocks.set(nb, block);
         }
@@ -133,11 +206,13 @@ public class Bundle extends PrimaryBlock implements BundleApi {
             block.number = blockNumber++;
         }
 
+        encodedForms.remove(block);
         blocks.add(block);
     }
 
     @Override
     public void delBlock(CanonicalBlock block) {
+        encodedForms.remove(block);
         blocks.remove(block);
     }
 
@@ -90,6 +90,7 @@ public class PrimaryBlock extends Block {
 
     /* libdtn internal use */
     public BundleId bid;
+    private Priority priority = Priority.NORMAL; /* local only, not serialized in BPv7 */
 
     /**
      * Constructor: creates an empty PrimaryBlock, should probably not be used.
@@ -134,6 +135,7 @@ public class PrimaryBlock extends Block {
         this.appDataLength = other.appDataLength;
         this.fragmentOffset = other.fragmentOffset;
         this.bid = other.bid;
+        this.priority = other.priority;
     }
 
     public int getVersion() {
@@ -194,12 +196,21 @@ public class PrimaryBlock extends Block {
         return fragmentOffset;
     }
 
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+
     public void setVersion(int version) {
         this.version = version;
     }
 
     public void setProcV7Flags(long procV7Flags) {
         this.procV7Flags = procV7Flags;
+        primaryBlockChanged();
     }
 
     /**
@@ -214,44 +225,60 @@ public class PrimaryBlock extends Block {
         } else {
             procV7Flags &= ~(0b1L << flag.getOffset());
         }
+        primaryBlockChanged();
     }
 
     public void setCrcType(CrcFieldType crcType) {
         this.crcType = crcType;
+        primaryBlockChanged();
     }
 
     public void setDestination(Eid destination) {
         this.destination = destination;
+        primaryBlockChanged();
     }
 
     public void setSource(Eid source) {
         this.source = source;
         this.bid = BundleId.create(this);
+        primaryBlockChanged();
     }
 
     public void setReportto(Eid reportto) {
         this.reportto = reportto;
+        primaryBlockChanged();
     }
 
     public void setCreationTimestamp(long creationTimestamp) {
         this.creationTimestamp = creationTimestamp;
         this.bid = BundleId.create(this);
+        primaryBlockChanged();
     }
 
     public void setSequenceNumber(long sequenceNumber) {
         this.sequenceNumber = sequenceNumber;
         this.bid = BundleId.create(this);
+        primaryBlockChanged();
     }
 
     public void setLifetime(long lifetime) {
         this.lifetime = lifetime;
+        primaryBlockChanged();
     }
 
     public void setAppDataLength(Long appDataLength) {
         this.appDataLength = appDataLength;
+        primaryBlockChanged();
     }
 
     public void setFragmentOffset(Long fragmentOffset) {
         this.fragmentOffset = fragmentOffset;
+        primaryBlockChanged();
+    }
+
+    /**
+     * called whenever a field of the PrimaryBlock that is serialized is modified.
+     */
+    protected void primaryBlockChanged() {
     }
 }
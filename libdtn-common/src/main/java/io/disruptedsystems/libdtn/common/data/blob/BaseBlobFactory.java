@@ -13,11 +13,13 @@ import io.disruptedsystems.libdtn.common.utils.FileUtil;
 public class BaseBlobFactory implements BlobFactory {
 
     private static final String TAG = "BaseBlobFactory";
+    private static final long GROWING_VOLATILE_LIMIT = 4194304;
 
     private VolatileMemory memory;
     private boolean enableVolatileBlob = false;
     private boolean enableFileBlob = false;
     private String filePath = "./";
+    private long growingVolatileLimit = GROWING_VOLATILE_LIMIT;
 
     /**
      * enable volatile Blob to be created.
@@ -26,7 +28,18 @@ public class BaseBlobFactory implements BlobFactory {
      * @return the current BaseBlobFactory.
      */
     public BaseBlobFactory enableVolatile(int limit) {
-        this.memory = new VolatileMemory(limit);
+        return enableVolatile(limit, false);
+    }
+
+    /**
+     * enable volatile Blob to be created.
+     *
+     * @param limit  in terms of memory consumption all the volatile Blob can take together.
+     * @param direct true to back the volatile Blob with direct buffers.
+     * @return the current BaseBlobFactory.
+     */
+    public BaseBlobFactory enableVolatile(int limit, boolean direct) {
+        this.memory = new VolatileMemory(limit, direct);
         enableVolatileBlob = true;
         return this;
     }
@@ -64,6 +77,18 @@ public class BaseBlobFactory implements BlobFactory {
         return this;
     }
 
+    /**
+     * Set the size from which a Blob of indefinite size grows into a persistent Blob rather
+     * than in memory, if persistent Blob are enabled.
+     *
+     * @param limit size in bytes.
+     * @return the current BaseBlobFactory.
+     */
+    public BaseBlobFactory setGrowingVolatileLimit(long limit) {
+        this.growingVolatileLimit = limit;
+        return this;
+    }
+
     /**
      * Check wether volatile blob is enabled.
      *
@@ -73,6 +98,15 @@ public class BaseBlobFactory implements BlobFactory {
         return enableVolatileBlob;
     }
 
+    /**
+     * Memory pool of the volatile Blob.
+     *
+     * @return VolatileMemory, null if volatile blob were never enabled.
+     */
+    public VolatileMemory getVolatileMemory() {
+        return memory;
+    }
+
     /**
      * Check wether persistent blob is enabled.
      *
@@ -149,8 +183,15 @@ public class BaseBlobFactory implements BlobFactory {
 
     // ----- indefinite size blob -------
 
-    private Blob createGrowingBlob() throws BlobFactoryException {
-        return new VersatileGrowingBuffer(this);
+    private Blob createGrowingBlob() {
+        try {
+            return new VersatileGrowingBuffer(
+                    this::createVolatileBlob,
+                    this::createFileBlob,
+                    growingVolatileLimit);
+        } catch (BlobFactoryException e) {
+            return new NullBlob();
+        }
     }
 
 }
@@ -11,6 +11,12 @@ import java.nio.ByteBuffer;
 /**
  * A Blob is an abstract structure that holds a buffer that may be very large.
  *
+ * <p>A Blob is reference counted. It is created with a single reference held by its creator.
+ * Any other holder, for instance a storage or a convergence layer sending the Blob, must
+ * {@link #retain()} it and {@link #release()} it once done. The memory or file resources
+ * of the Blob are freed when the last reference is released. A {@link WritableBlob} is only
+ * a view of its Blob and does not hold a reference of its own.
+ *
  * @author Lucien Loiseau on 21/10/18.
  */
 public interface Blob extends Taggable {
@@ -18,6 +24,29 @@ public interface Blob extends Taggable {
     class NotFileBlob extends Exception {
     }
 
+    /**
+     * Take a new reference on this Blob.
+     *
+     * @return this Blob
+     * @throws IllegalStateException if the Blob was already deallocated
+     */
+    Blob retain();
+
+    /**
+     * Release a reference on this Blob. The Blob is deallocated when its last reference is
+     * released and must not be used afterwards.
+     *
+     * @return true if this was the last reference and the Blob was deallocated
+     */
+    boolean release();
+
+    /**
+     * Current number of references on this Blob.
+     *
+     * @return reference count, 0 if the Blob was deallocated
+     */
+    int refCount();
+
     /**
      * Size of the current blob object.
      *
@@ -33,6 +62,16 @@ public interface Blob extends Taggable {
      */
     Flowable<ByteBuffer> observe();
 
+    /**
+     * Same as {@link #observe()} but lets the caller hint the size of the buffers it wants to
+     * receive, for instance a larger size to relay a large payload. The Blob may emit buffers
+     * of a different size. The buffers stay valid after they are emitted.
+     *
+     * @param chunkSize preferred size of the buffers
+     * @return Flowable of ByteBuffer
+     */
+    Flowable<ByteBuffer> observe(int chunkSize);
+
     /**
      * modify the content of the Blob in-place. If the function throws an Exception it will
      * not modify the Blob.
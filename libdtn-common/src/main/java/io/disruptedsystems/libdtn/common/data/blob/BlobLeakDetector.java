@@ -0,0 +1,103 @@
+package io.disruptedsystems.libdtn.common.data.blob;
+
+import io.disruptedsystems.libdtn.common.utils.Log;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BlobLeakDetector reports the {@link RefCountedBlob} that are garbage collected while still
+ * holding a reference, that is, a holder forgot to release them. Tracking is disabled by
+ * default, once enabled the allocation site of every Blob is recorded so that a leak can be
+ * traced back to where the Blob was created.
+ */
+public final class BlobLeakDetector {
+
+    private static final String TAG = "BlobLeakDetector";
+
+    private static volatile boolean enabled = false;
+    private static volatile Log logger = null;
+    private static final ReferenceQueue<RefCountedBlob> queue = new ReferenceQueue<>();
+    private static final Set<Track> tracks = ConcurrentHashMap.newKeySet();
+    private static final AtomicLong leaks = new AtomicLong();
+
+    private BlobLeakDetector() {
+    }
+
+    static final class Track extends PhantomReference<RefCountedBlob> {
+        private final AtomicInteger refs;
+        private final Throwable allocation;
+
+        private Track(RefCountedBlob blob, AtomicInteger refs) {
+            super(blob, queue);
+            this.refs = refs;
+            this.allocation = new Throwable("blob allocated here");
+        }
+
+        void close() {
+            tracks.remove(this);
+            clear();
+        }
+    }
+
+    /**
+     * Enable or disable leak detection, only the Blob created while enabled are tracked.
+     *
+     * @param enable true to enable leak detection
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * Set the logger that will report the leaks.
+     *
+     * @param log logger, null to only count the leaks
+     */
+    public static void setLogger(Log log) {
+        logger = log;
+    }
+
+    /**
+     * Number of leaked Blob detected so far.
+     *
+     * @return number of leaks
+     */
+    public static long leaks() {
+        poll();
+        return leaks.get();
+    }
+
+    static Track track(RefCountedBlob blob, AtomicInteger refs) {
+        poll();
+        if (!enabled) {
+            return null;
+        }
+        Track track = new Track(blob, refs);
+        tracks.add(track);
+        return track;
+    }
+
+    private static void poll() {
+        Track track;
+        while ((track = (Track) queue.poll()) != null) {
+            if (!tracks.remove(track) || track.refs.get() <= 0) {
+                continue;
+            }
+            leaks.incrementAndGet();
+            Log log = logger;
+            if (log != null) {
+                StringBuilder sb = new StringBuilder("blob was garbage collected without being "
+                        + "released, refCount=" + track.refs.get());
+                for (StackTraceElement element : track.allocation.getStackTrace()) {
+                    sb.append("\n\tat ").append(element);
+                }
+                log.w(TAG, sb.toString());
+            }
+        }
+    }
+}
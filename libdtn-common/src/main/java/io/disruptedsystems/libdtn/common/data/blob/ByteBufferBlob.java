@@ -2,15 +2,20 @@ package io.disruptedsystems.libdtn.common.data.blob;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * ByteBufferBlob is a {@link Blob} that uses a ByteBuffer internally to hold the data.
+ * ByteBufferBlob is a {@link Blob} that uses a ByteBuffer from {@link VolatileMemory}
+ * internally to hold the data. The buffer is given back to VolatileMemory when the last
+ * reference on the Blob is released.
  *
  * @author Lucien Loiseau on 20/09/18.
  */
 public class ByteBufferBlob extends UntrackedByteBufferBlob {
 
     private VolatileMemory memory;
+    private ByteBuffer slab;
+    private final AtomicBoolean freed = new AtomicBoolean(false);
 
     /**
      * Constructor.
@@ -21,24 +26,56 @@ public class ByteBufferBlob extends UntrackedByteBufferBlob {
      */
     public ByteBufferBlob(VolatileMemory memory, int expectedSize) throws IOException {
         this.memory = memory;
-        this.data = memory.malloc(expectedSize);
+        this.slab = memory.malloc(expectedSize);
+        this.data = slab.slice();
         this.data.mark();
     }
 
-    public ByteBufferBlob(byte[] data) throws IOException {
-        this.data = memory.malloc(data);
-        this.data.mark();
+    /**
+     * Constructor creates a ByteBufferBlob holding a copy of a byte array.
+     *
+     * @param memory a memory tracker.
+     * @param data array to copy.
+     * @throws IOException if the Blob could not be created.
+     */
+    public ByteBufferBlob(VolatileMemory memory, byte[] data) throws IOException {
+        this(memory, ByteBuffer.wrap(data));
     }
 
-    public ByteBufferBlob(ByteBuffer data) throws IOException {
-        this.data = memory.malloc(data);
+    /**
+     * Constructor creates a ByteBufferBlob holding a copy of the remaining bytes of a buffer.
+     *
+     * @param memory a memory tracker.
+     * @param data buffer to copy.
+     * @throws IOException if the Blob could not be created.
+     */
+    public ByteBufferBlob(VolatileMemory memory, ByteBuffer data) throws IOException {
+        this(memory, data.remaining());
+        this.data.put(data);
+        this.data.position(0);
         this.data.mark();
     }
 
+    @Override
+    protected void deallocate() {
+        if (freed.compareAndSet(false, true)) {
+            data = ByteBuffer.allocate(0);
+            data.mark();
+            memory.free(slab);
+            slab = null;
+        }
+    }
+
     @Override
     protected void finalize() throws Throwable {
         super.finalize();
-        memory.free(data.capacity());
+        /*
+         * safety net for a blob that was dropped without being released. A reader may still
+         * hold a duplicate of the buffer so it is only accounted for, not recycled.
+         */
+        if (freed.compareAndSet(false, true)) {
+            memory.discard(slab);
+        }
     }
 
 }
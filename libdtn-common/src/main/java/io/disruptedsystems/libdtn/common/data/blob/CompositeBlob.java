@@ -0,0 +1,81 @@
+package io.disruptedsystems.libdtn.common.data.blob;
+
+import io.disruptedsystems.libdtn.common.utils.Function;
+import io.disruptedsystems.libdtn.common.utils.Supplier;
+import io.reactivex.rxjava3.core.Flowable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * CompositeBlob is a read-only view of the concatenation of several Blobs. Nothing is copied,
+ * the parts are read one after the other when the CompositeBlob is observed.
+ *
+ * <p>The CompositeBlob holds a reference on each of its parts for as long as it is not released
+ * itself. The size is computed once, the parts must not be modified while they are composed.
+ */
+public class CompositeBlob extends VolatileBlob {
+
+    private final List<Blob> parts;
+    private final long size;
+
+    /**
+     * Constructor.
+     *
+     * @param parts Blobs to concatenate, in order
+     */
+    public CompositeBlob(List<Blob> parts) {
+        List<Blob> retained = new ArrayList<>(parts.size());
+        long total = 0;
+        for (Blob part : parts) {
+            retained.add(part.retain());
+            total += part.size();
+        }
+        this.parts = Collections.unmodifiableList(retained);
+        this.size = total;
+    }
+
+    /**
+     * Blobs that are concatenated.
+     *
+     * @return unmodifiable list of Blob
+     */
+    public List<Blob> getParts() {
+        return parts;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public Flowable<ByteBuffer> observe() {
+        return Flowable.fromIterable(parts).concatMap(Blob::observe, 1);
+    }
+
+    @Override
+    public Flowable<ByteBuffer> observe(int chunkSize) {
+        return Flowable.fromIterable(parts).concatMap(b -> b.observe(chunkSize), 1);
+    }
+
+    @Override
+    public void map(Supplier<ByteBuffer> open,
+                    Function<ByteBuffer, ByteBuffer> update,
+                    Supplier<ByteBuffer> close) throws Exception {
+        throw new IOException("composite blob is read-only");
+    }
+
+    @Override
+    public WritableBlob getWritableBlob() {
+        return new ReadOnlyWritableBlob("composite blob is read-only");
+    }
+
+    @Override
+    protected void deallocate() {
+        parts.forEach(Blob::release);
+    }
+}
@@ -0,0 +1,171 @@
+package io.disruptedsystems.libdtn.common.data.blob;
+
+import io.disruptedsystems.libdtn.common.utils.Function;
+import io.disruptedsystems.libdtn.common.utils.Supplier;
+import io.reactivex.rxjava3.core.Flowable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * CompressedFileBlob is a read-only {@link FileBlob} whose file holds the content deflated.
+ * The content is inflated on the fly when the Blob is observed so that a compressed Blob can
+ * be used anywhere a FileBlob is expected.
+ *
+ * <p>The file starts with the size of the original content (8 bytes, big endian) followed by
+ * a zlib stream. By convention, the name of a compressed file ends with {@link #SUFFIX}.
+ */
+public class CompressedFileBlob extends FileBlob {
+
+    public static final String SUFFIX = ".z";
+    private static final int BUFFER_SIZE = 4096;
+
+    private final long originalSize;
+
+    /**
+     * Constructor: creates a Blob from the path of a compressed file.
+     *
+     * @param absolutePath to file
+     * @throws IOException if the file cannot be accessed
+     */
+    public CompressedFileBlob(String absolutePath) throws IOException {
+        super(absolutePath);
+        this.originalSize = originalSize(new File(absolutePath));
+    }
+
+    /**
+     * Open a compressed file for writing.
+     *
+     * @param file         to write to
+     * @param originalSize size of the content once inflated
+     * @return OutputStream that deflates everything written to it
+     * @throws IOException if the file cannot be opened
+     */
+    public static OutputStream compressTo(File file, long originalSize) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeLong(originalSize);
+            header.flush();
+        } catch (IOException io) {
+            out.close();
+            throw io;
+        }
+        return new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED), BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                def.end();
+            }
+        };
+    }
+
+    /**
+     * Open a compressed file for reading.
+     *
+     * @param file to read from
+     * @return InputStream of the inflated content
+     * @throws IOException if the file cannot be opened or is not compressed
+     */
+    public static InputStream decompressFrom(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        try {
+            new DataInputStream(in).readLong();
+        } catch (IOException io) {
+            in.close();
+            throw io;
+        }
+        return new InflaterInputStream(in);
+    }
+
+    /**
+     * Read the size of the content of a compressed file once inflated.
+     *
+     * @param file compressed file
+     * @return size in bytes
+     * @throws IOException if the file cannot be read
+     */
+    public static long originalSize(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readLong();
+        }
+    }
+
+    @Override
+    public long size() {
+        return originalSize;
+    }
+
+    @Override
+    public Flowable<ByteBuffer> observe() {
+        return observe(BUFFER_SIZE);
+    }
+
+    /**
+     * The content is inflated so it can't be mapped, every chunk is inflated into a new buffer.
+     *
+     * @param chunkSize size of the inflated chunks
+     * @return Flowable of ByteBuffer
+     */
+    @Override
+    public Flowable<ByteBuffer> observe(int chunkSize) {
+        return Flowable.generate(
+                () -> decompressFrom(new File(getFilePath())),
+                (in, emitter) -> {
+                    try {
+                        byte[] chunk = new byte[chunkSize];
+                        int read = in.read(chunk);
+                        if (read == -1) {
+                            emitter.onComplete();
+                        } else {
+                            emitter.onNext(ByteBuffer.wrap(chunk, 0, read));
+                        }
+                    } catch (IOException io) {
+                        emitter.onError(io);
+                    }
+                    return in;
+                },
+                InputStream::close);
+    }
+
+    @Override
+    public Flowable<ByteBuffer> observeShared(ByteBuffer buffer) {
+        return observe(buffer.capacity());
+    }
+
+    /**
+     * The region is given in the inflated content, which is inflated from the start.
+     *
+     * @param offset    of the first byte to read
+     * @param length    number of bytes to read
+     * @param chunkSize size of the buffers
+     * @return Flowable of ByteBuffer
+     */
+    @Override
+    public Flowable<ByteBuffer> observe(long offset, long length, int chunkSize) {
+        return SliceBlob.trim(observe(chunkSize), offset, length);
+    }
+
+    @Override
+    public void map(Supplier<ByteBuffer> open,
+                    Function<ByteBuffer, ByteBuffer> update,
+                    Supplier<ByteBuffer> close) throws Exception {
+        throw new IOException("compressed blob is read-only");
+    }
+
+    @Override
+    public WritableBlob getWritableBlob() {
+        return new ReadOnlyWritableBlob("compressed blob is read-only");
+    }
+}
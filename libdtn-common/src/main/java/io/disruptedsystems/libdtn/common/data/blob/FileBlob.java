@@ -4,11 +4,9 @@ import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 import io.disruptedsystems.libdtn.common.utils.Function;
 import io.disruptedsystems.libdtn.common.utils.Supplier;
-import io.disruptedsystems.libdtn.common.data.Tag;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Flowable;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -17,6 +15,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.NonReadableChannelException;
 import java.nio.file.Files;
@@ -27,12 +26,25 @@ import java.nio.file.Paths;
  * FileBlob holds a Blob in a file saved in persistent storage. Useful for large Blob that can't
  * fit in memory or if persistence over reboot is necessary for long caching strategy.
  *
+ * <p>A large FileBlob can be read through a memory mapping with {@link #observe(int)} or into
+ * a single reused buffer with {@link #observeShared(ByteBuffer)} to avoid allocating a new
+ * buffer for every chunk.
+ *
+ * <p>Releasing the last reference on a FileBlob does not delete the file, whoever created the
+ * file, for instance the storage, manages its lifetime. A file that is managed by someone else
+ * should be handed out {@link #readOnly()}.
+ *
  * @author Lucien Loiseau on 26/07/18.
  */
-public class FileBlob extends Tag implements Blob {
+public class FileBlob extends RefCountedBlob {
 
+    public static final long MAPPING_THRESHOLD = 65536;
     private static final int BUFFER_SIZE = 4096;
+    private static final int READ_SIZE = 2048;
+    private static final long MAX_REGION_SIZE = 1 << 30;
+    private static final int CHUNK_SIZE = 65536;
     private File file;
+    private boolean readOnly = false;
 
     public String getPathToBlob() {
         return file.getAbsolutePath();
@@ -65,6 +77,17 @@ public class FileBlob extends Tag implements Blob {
         }
     }
 
+    /**
+     * Prevent this FileBlob from modifying, moving or deleting its file, for instance because
+     * the file is managed by the storage and may be shared by several bundles.
+     *
+     * @return this FileBlob
+     */
+    public FileBlob readOnly() {
+        this.readOnly = true;
+        return this;
+    }
+
     @Override
     public String getFilePath() {
         return file.getAbsolutePath();
@@ -81,6 +104,115 @@ public class FileBlob extends Tag implements Blob {
 
     @Override
     public Flowable<ByteBuffer> observe() {
+        return observeCopy(READ_SIZE);
+    }
+
+    /**
+     * Read the file by memory-mapping it. The Flowable emits read-only slices of the mapping so
+     * reading allocates no buffer and the slices stay valid after they are emitted. Files
+     * smaller than {@link #MAPPING_THRESHOLD} are read with a copy instead, mapping them would
+     * cost more than it saves.
+     *
+     * @param chunkSize size of the slices
+     * @return Flowable of read-only ByteBuffer
+     */
+    @Override
+    public Flowable<ByteBuffer> observe(int chunkSize) {
+        if (size() < MAPPING_THRESHOLD) {
+            return observeCopy(chunkSize);
+        }
+        return Flowable.generate(
+                () -> new MappedReader(file, 0, -1, chunkSize),
+                (reader, emitter) -> {
+                    try {
+                        ByteBuffer slice = reader.next();
+                        if (slice == null) {
+                            emitter.onComplete();
+                        } else {
+                            emitter.onNext(slice);
+                        }
+                    } catch (IOException io) {
+                        emitter.onError(io);
+                    }
+                    return reader;
+                },
+                MappedReader::close);
+    }
+
+    /**
+     * Read a region of the file without reading what precedes it. Like {@link #observe(int)},
+     * a large region is memory-mapped and a region smaller than {@link #MAPPING_THRESHOLD} is
+     * read with a copy.
+     *
+     * @param offset    of the first byte to read
+     * @param length    number of bytes to read
+     * @param chunkSize size of the buffers
+     * @return Flowable of ByteBuffer
+     */
+    public Flowable<ByteBuffer> observe(long offset, long length, int chunkSize) {
+        if (length < MAPPING_THRESHOLD) {
+            return Flowable.fromCallable(() -> {
+                ByteBuffer buffer = ByteBuffer.allocate((int) length);
+                try (FileChannel channel = new FileInputStream(file).getChannel()) {
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, offset + buffer.position()) == -1) {
+                            throw new IOException("region is out of the file");
+                        }
+                    }
+                }
+                buffer.flip();
+                return buffer;
+            }).filter(ByteBuffer::hasRemaining);
+        }
+        return Flowable.generate(
+                () -> new MappedReader(file, offset, length, chunkSize),
+                (reader, emitter) -> {
+                    try {
+                        ByteBuffer slice = reader.next();
+                        if (slice == null) {
+                            emitter.onComplete();
+                        } else {
+                            emitter.onNext(slice);
+                        }
+                    } catch (IOException io) {
+                        emitter.onError(io);
+                    }
+                    return reader;
+                },
+                MappedReader::close);
+    }
+
+    /**
+     * Read the file into a single buffer supplied by the caller, every emission overwrites the
+     * previous one. The consumer must be done with a buffer before it requests the next one,
+     * so this Flowable must be consumed synchronously and not buffered by an operator such as
+     * observeOn or blockingIterable. The size of the reads is the capacity of the buffer.
+     *
+     * @param buffer to read into, heap or direct
+     * @return Flowable emitting the buffer every time it is filled
+     */
+    public Flowable<ByteBuffer> observeShared(ByteBuffer buffer) {
+        return Flowable.generate(
+                () -> new FileInputStream(file).getChannel(),
+                (channel, emitter) -> {
+                    try {
+                        buffer.clear();
+                        if (channel.read(buffer) == -1) {
+                            emitter.onComplete();
+                        } else {
+                            buffer.flip();
+                            emitter.onNext(buffer);
+                        }
+                    } catch (NonReadableChannelException | IOException io) {
+                        emitter.onError(io);
+                    }
+                    return channel;
+                },
+                FileChannel::close);
+    }
+
+    /* read the file chunk by chunk, each chunk in a newly allocated buffer */
+    private Flowable<ByteBuffer> observeCopy(int chunkSize) {
         return Flowable.generate(
                 () -> {
                     if (!file.exists()) {
@@ -95,7 +227,7 @@ public class FileBlob extends Tag implements Blob {
                     }
 
                     try {
-                        ByteBuffer buffer = ByteBuffer.allocate(2048);
+                        ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
                         buffer.clear();
                         if (channel.read(buffer) == -1) {
                             emitter.onComplete();
@@ -114,10 +246,60 @@ public class FileBlob extends Tag implements Blob {
                 (channel) -> channel.close());
     }
 
+    /*
+     * walks a file mapped region by region, regions can't be larger than 2GB. A negative length
+     * reads up to the end of the file.
+     */
+    private static final class MappedReader {
+        private final FileChannel channel;
+        private final long size;
+        private final int chunkSize;
+        private MappedByteBuffer region = null;
+        private long regionStart = 0;
+        private long position;
+
+        MappedReader(File file, long offset, long length, int chunkSize) throws IOException {
+            this.channel = new RandomAccessFile(file, "r").getChannel();
+            this.size = (length < 0) ? channel.size() : offset + length;
+            this.chunkSize = chunkSize;
+            this.position = offset;
+            if (size > channel.size()) {
+                channel.close();
+                throw new IOException("region is out of the file");
+            }
+        }
+
+        ByteBuffer next() throws IOException {
+            if (position >= size) {
+                return null;
+            }
+            if (region == null || position >= regionStart + region.capacity()) {
+                regionStart = position;
+                region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart,
+                        Math.min(MAX_REGION_SIZE, size - regionStart));
+            }
+            int offset = (int) (position - regionStart);
+            int length = Math.min(chunkSize, region.capacity() - offset);
+            ByteBuffer slice = region.duplicate();
+            slice.position(offset);
+            slice.limit(offset + length);
+            position += length;
+            return slice.slice();
+        }
+
+        void close() throws IOException {
+            /* the mapping stays valid after the channel is closed */
+            channel.close();
+        }
+    }
+
     @Override
     public void map(Supplier<ByteBuffer> open,
                     Function<ByteBuffer, ByteBuffer> update,
                     Supplier<ByteBuffer> close) throws Exception {
+        if (readOnly) {
+            throw new IOException("read-only file: " + file.getAbsolutePath());
+        }
         if (!file.exists()) {
             throw new FileNotFoundException("file not found: " + file.getAbsolutePath());
         }
@@ -141,6 +323,9 @@ public class FileBlob extends Tag implements Blob {
 
     @Override
     public WritableBlob getWritableBlob() {
+        if (readOnly) {
+            return new ReadOnlyWritableBlob("read-only file: " + file.getAbsolutePath());
+        }
         return new WritableFileBlob();
     }
 
@@ -152,6 +337,10 @@ public class FileBlob extends Tag implements Blob {
     @Override
     public Completable moveToFile(String newLocation) {
         return Completable.create(s -> {
+            if (readOnly) {
+                s.onError(new IOException("read-only file: " + file.getAbsolutePath()));
+                return;
+            }
             try {
                 Path sourcePath = Paths.get(file.getAbsolutePath());
                 Path destinationPath = Paths.get(newLocation);
@@ -172,8 +361,8 @@ public class FileBlob extends Tag implements Blob {
     private class WritableFileBlob implements WritableBlob {
 
         private FileOutputStream fos = null;
-        private BufferedOutputStream bos = null;
-        private boolean open = false;
+        private FileChannel channel = null;
+        private ByteBuffer pending = null;
 
         @Override
         public void clear() {
@@ -184,67 +373,64 @@ public class FileBlob extends Tag implements Blob {
         }
 
         private void open() throws IOException {
-            if (open) {
+            if (channel != null) {
                 return;
             }
             if (!file.exists()) {
                 throw new IOException("can't access file");
             }
             fos = new FileOutputStream(file, true);
-            bos = new BufferedOutputStream(fos);
-            open = true;
+            channel = fos.getChannel();
+            pending = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+
+        /* small writes are staged in a buffer, it must be flushed before any bulk write */
+        private void flush() throws IOException {
+            pending.flip();
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+            }
+            pending.clear();
         }
 
         @Override
         public int write(byte b) throws IOException {
             open();
-            bos.write(b);
+            if (!pending.hasRemaining()) {
+                flush();
+            }
+            pending.put(b);
             return 1;
         }
 
         @Override
         public int write(byte[] a) throws IOException {
-            open();
-            bos.write(a);
-            return a.length;
+            return write(ByteBuffer.wrap(a));
         }
 
         @Override
         public int write(ByteBuffer buffer) throws IOException {
+            open();
             int length = buffer.remaining();
+            if (length <= pending.remaining()) {
+                pending.put(buffer);
+                return length;
+            }
+            flush();
             while (buffer.hasRemaining()) {
-                int b = buffer.get();
-                System.out.println("bundle=" + (char) b);
-                bos.write(b);
+                channel.write(buffer);
             }
             return length;
         }
 
         @Override
         public int write(InputStream stream) throws IOException {
-            open();
-            int total = 0;
-            byte[] fileBuffer = new byte[BUFFER_SIZE];
-            int count = stream.read(fileBuffer, 0, BUFFER_SIZE);
-            while (count > 0) {
-                bos.write(fileBuffer, 0, count);
-                total += count;
-                count = stream.read(fileBuffer, 0, BUFFER_SIZE);
-            }
-            return total;
+            return transfer(stream, Long.MAX_VALUE);
         }
 
         @Override
         public int write(InputStream stream, int size) throws IOException {
-            open();
-            int total = 0;
-            byte[] fileBuffer = new byte[BUFFER_SIZE];
-            int count = stream.read(fileBuffer, 0, Math.min(BUFFER_SIZE, size));
-            while (count > 0) {
-                bos.write(fileBuffer, 0, count);
-                total += count;
-                count = stream.read(fileBuffer, 0, Math.min(BUFFER_SIZE, size - total));
-            }
+            int total = transfer(stream, size);
             if (total != size) {
                 throw new IOException("We read " + (total < size ? "less" : "more")
                         + " bytes than expected");
@@ -252,11 +438,45 @@ public class FileBlob extends Tag implements Blob {
             return total;
         }
 
+        /* copy up to size bytes from the stream, straight from channel to channel if possible */
+        private int transfer(InputStream stream, long size) throws IOException {
+            open();
+            flush();
+            long total = 0;
+            if (stream instanceof FileInputStream) {
+                FileChannel source = ((FileInputStream) stream).getChannel();
+                long position = source.position();
+                long count = Math.min(size, source.size() - position);
+                while (total < count) {
+                    long sent = source.transferTo(position + total, count - total, channel);
+                    if (sent <= 0) {
+                        break;
+                    }
+                    total += sent;
+                }
+                source.position(position + total);
+                return (int) total;
+            }
+
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int count;
+            while (total < size
+                    && (count = stream.read(chunk, 0, (int) Math.min(chunk.length, size - total)))
+                    > 0) {
+                ByteBuffer wrapped = ByteBuffer.wrap(chunk, 0, count);
+                while (wrapped.hasRemaining()) {
+                    channel.write(wrapped);
+                }
+                total += count;
+            }
+            return (int) total;
+        }
+
         @Override
         public void close() {
             try {
-                if (bos != null) {
-                    bos.close();
+                if (channel != null) {
+                    flush();
                 }
             } catch (IOException io) {
                 // ignore
@@ -268,6 +488,8 @@ public class FileBlob extends Tag implements Blob {
             } catch (IOException io) {
                 // ignore
             }
+            fos = null;
+            channel = null;
         }
     }
 }
@@ -0,0 +1,174 @@
+package io.disruptedsystems.libdtn.common.data.blob;
+
+import io.disruptedsystems.libdtn.common.utils.Function;
+import io.disruptedsystems.libdtn.common.utils.Supplier;
+import io.reactivex.rxjava3.core.Flowable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * MappedBlob keeps the buffers it is written with instead of copying them. A read-only direct
+ * buffer, such as a slice of a memory-mapped file, is kept as a view so the data is read from
+ * the mapping every time the MappedBlob is observed. Any other buffer may be reused by its
+ * owner and is copied.
+ *
+ * <p>The views keep the mapping alive for as long as the MappedBlob is referenced, the mapped
+ * file must not be modified meanwhile. Mapping a function over the MappedBlob copies its data
+ * once into the heap.
+ */
+public class MappedBlob extends VolatileBlob {
+
+    private static final int READ_SIZE = 2048;
+
+    private final long expectedSize;
+    private List<ByteBuffer> parts = new ArrayList<>();
+    private long size;
+
+    /**
+     * Constructor creates an empty MappedBlob with an expected size.
+     *
+     * @param expectedSize of the Blob
+     */
+    public MappedBlob(long expectedSize) {
+        this.expectedSize = expectedSize;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public Flowable<ByteBuffer> observe() {
+        return observe(READ_SIZE);
+    }
+
+    /**
+     * Emits views of the buffers the MappedBlob was written with, cut to the chunk size.
+     *
+     * @param chunkSize size of the views
+     * @return Flowable of ByteBuffer
+     */
+    @Override
+    public Flowable<ByteBuffer> observe(int chunkSize) {
+        return Flowable.defer(() -> Flowable.fromIterable(parts))
+                .concatMap(part -> {
+                    List<ByteBuffer> views = new ArrayList<>();
+                    for (int pos = 0; pos < part.limit(); pos += chunkSize) {
+                        ByteBuffer view = part.duplicate();
+                        view.limit(Math.min(part.limit(), pos + chunkSize));
+                        view.position(pos);
+                        views.add(view);
+                    }
+                    return Flowable.fromIterable(views);
+                }, 1);
+    }
+
+    @Override
+    public void map(Supplier<ByteBuffer> open,
+                    Function<ByteBuffer, ByteBuffer> function,
+                    Supplier<ByteBuffer> close) throws Exception {
+        ByteBuffer data = ByteBuffer.allocate((int) size);
+        for (ByteBuffer part : parts) {
+            data.put(part.duplicate());
+        }
+        data.flip();
+
+        ByteBuffer opened = open.get();
+        ByteBuffer mapped = function.apply(data);
+        ByteBuffer closed = close.get();
+        ByteBuffer ret = ByteBuffer.allocate(opened.remaining()
+                + mapped.remaining()
+                + closed.remaining());
+        ret.put(opened);
+        ret.put(mapped);
+        ret.put(closed);
+        ret.flip();
+        parts = new ArrayList<>(Collections.singletonList(ret));
+        size = ret.limit();
+    }
+
+    @Override
+    public WritableBlob getWritableBlob() {
+        return new WritableBlob() {
+            @Override
+            public void clear() {
+                parts = new ArrayList<>();
+                size = 0;
+            }
+
+            @Override
+            public int write(byte b) throws BlobOverflowException {
+                return write(new byte[]{b});
+            }
+
+            @Override
+            public int write(byte[] a) throws BlobOverflowException {
+                return write(ByteBuffer.wrap(a));
+            }
+
+            @Override
+            public int write(ByteBuffer buffer) throws BlobOverflowException {
+                int length = buffer.remaining();
+                if (size + length > expectedSize) {
+                    throw new BlobOverflowException();
+                }
+
+                ByteBuffer part;
+                if (buffer.isDirect() && buffer.isReadOnly()) {
+                    part = buffer.slice();
+                    buffer.position(buffer.limit());
+                } else {
+                    part = ByteBuffer.allocate(length);
+                    part.put(buffer);
+                    part.flip();
+                }
+                parts.add(part);
+                size += length;
+                return length;
+            }
+
+            @Override
+            public int write(InputStream stream) throws IOException, BlobOverflowException {
+                int total = 0;
+                byte[] chunk = new byte[READ_SIZE];
+                int read;
+                while ((read = stream.read(chunk)) > 0) {
+                    total += write(ByteBuffer.wrap(chunk, 0, read));
+                }
+                return total;
+            }
+
+            @Override
+            public int write(InputStream stream, int size)
+                    throws IOException, BlobOverflowException {
+                byte[] chunk = new byte[Math.min(size, READ_SIZE)];
+                int total = 0;
+                while (total < size) {
+                    int read = stream.read(chunk, 0, Math.min(chunk.length, size - total));
+                    if (read <= 0) {
+                        throw new IOException("unexpected end of stream");
+                    }
+                    total += write(ByteBuffer.wrap(chunk, 0, read));
+                }
+                return total;
+            }
+
+            @Override
+            public void close() {
+                /* nothing to flush */
+            }
+        };
+    }
+
+    @Override
+    protected void deallocate() {
+        parts = new ArrayList<>();
+        size = 0;
+    }
+}
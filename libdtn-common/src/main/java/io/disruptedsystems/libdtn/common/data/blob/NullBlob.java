@@ -2,7 +2,6 @@ package io.disruptedsystems.libdtn.common.data.blob;
 
 import io.disruptedsystems.libdtn.common.utils.Function;
 import io.disruptedsystems.libdtn.common.utils.Supplier;
-import io.disruptedsystems.libdtn.common.data.Tag;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Flowable;
 
@@ -17,7 +16,7 @@ import java.nio.ByteBuffer;
  *
  * @author Lucien Loiseau on 04/09/18.
  */
-public class NullBlob extends Tag implements Blob {
+public class NullBlob extends RefCountedBlob {
 
     public NullBlob() {
     }
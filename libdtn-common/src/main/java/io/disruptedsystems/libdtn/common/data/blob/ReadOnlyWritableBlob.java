@@ -0,0 +1,53 @@
+package io.disruptedsystems.libdtn.common.data.blob;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * ReadOnlyWritableBlob is the {@link WritableBlob} of a Blob that can't be written, every write
+ * throws an IOException and clear does nothing.
+ */
+class ReadOnlyWritableBlob implements WritableBlob {
+
+    private final String reason;
+
+    ReadOnlyWritableBlob(String reason) {
+        this.reason = reason;
+    }
+
+    @Override
+    public void clear() {
+        /* read-only */
+    }
+
+    @Override
+    public int write(InputStream stream) throws IOException {
+        throw new IOException(reason);
+    }
+
+    @Override
+    public int write(InputStream stream, int size) throws IOException {
+        throw new IOException(reason);
+    }
+
+    @Override
+    public int write(byte b) throws IOException {
+        throw new IOException(reason);
+    }
+
+    @Override
+    public int write(byte[] a) throws IOException {
+        throw new IOException(reason);
+    }
+
+    @Override
+    public int write(ByteBuffer buffer) throws IOException {
+        throw new IOException(reason);
+    }
+
+    @Override
+    public void close() {
+        /* read-only */
+    }
+}
@@ -0,0 +1,68 @@
+package io.disruptedsystems.libdtn.common.data.blob;
+
+import io.disruptedsystems.libdtn.common.data.Tag;
+import io.reactivex.rxjava3.core.Flowable;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RefCountedBlob implements the reference counting of a {@link Blob}. A Blob is created with a
+ * single reference held by its creator, every other holder must {@link #retain()} the Blob and
+ * {@link #release()} it once done. The resources of the Blob are freed by {@link #deallocate()}
+ * when the last reference is released.
+ */
+public abstract class RefCountedBlob extends Tag implements Blob {
+
+    private final AtomicInteger refs = new AtomicInteger(1);
+    private final BlobLeakDetector.Track track = BlobLeakDetector.track(this, refs);
+
+    @Override
+    public Blob retain() {
+        int count;
+        do {
+            count = refs.get();
+            if (count <= 0) {
+                throw new IllegalStateException("blob already released");
+            }
+        } while (!refs.compareAndSet(count, count + 1));
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        int count;
+        do {
+            count = refs.get();
+            if (count <= 0) {
+                return false;
+            }
+        } while (!refs.compareAndSet(count, count - 1));
+
+        if (count > 1) {
+            return false;
+        }
+        if (track != null) {
+            track.close();
+        }
+        deallocate();
+        return true;
+    }
+
+    @Override
+    public int refCount() {
+        return refs.get();
+    }
+
+    @Override
+    public Flowable<ByteBuffer> observe(int chunkSize) {
+        return observe();
+    }
+
+    /**
+     * Free the resources held by the Blob, called once when the last reference is released.
+     * The default implementation does nothing.
+     */
+    protected void deallocate() {
+    }
+}
@@ -0,0 +1,114 @@
+package io.disruptedsystems.libdtn.common.data.blob;
+
+import io.disruptedsystems.libdtn.common.utils.Function;
+import io.disruptedsystems.libdtn.common.utils.Supplier;
+import io.reactivex.rxjava3.core.Flowable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * SliceBlob is a read-only view of a region of another Blob. Nothing is copied, the region is
+ * read from the source Blob when the SliceBlob is observed. A region of a {@link FileBlob} is
+ * read directly, the bytes before it are not read at all.
+ *
+ * <p>The SliceBlob holds a reference on its source for as long as it is not released itself.
+ * The source must not be modified while it is sliced.
+ */
+public class SliceBlob extends VolatileBlob {
+
+    private static final int READ_SIZE = 2048;
+
+    private final Blob source;
+    private final long offset;
+    private final long length;
+
+    /**
+     * Constructor. A slice of a SliceBlob refers to the original source directly.
+     *
+     * @param source Blob to slice
+     * @param offset of the first byte of the slice in the source
+     * @param length of the slice
+     * @throws IllegalArgumentException if the region is not within the source
+     */
+    public SliceBlob(Blob source, long offset, long length) {
+        if (offset < 0 || length < 0 || offset + length > source.size()) {
+            throw new IllegalArgumentException("slice is out of the blob");
+        }
+        if (source instanceof SliceBlob) {
+            offset += ((SliceBlob) source).offset;
+            source = ((SliceBlob) source).source;
+        }
+        this.source = source.retain();
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public long size() {
+        return length;
+    }
+
+    @Override
+    public Flowable<ByteBuffer> observe() {
+        return observe(READ_SIZE);
+    }
+
+    @Override
+    public Flowable<ByteBuffer> observe(int chunkSize) {
+        if (length == 0) {
+            return Flowable.empty();
+        }
+        if (source instanceof FileBlob) {
+            return ((FileBlob) source).observe(offset, length, chunkSize);
+        }
+        return trim(source.observe(chunkSize), offset, length);
+    }
+
+    /**
+     * Trim a stream of buffers to a region. The buffers that overlap the region are emitted as
+     * views of the original buffers and the stream is cancelled as soon as the region is read.
+     *
+     * @param buffers stream to trim
+     * @param offset  of the first byte of the region in the stream
+     * @param length  of the region
+     * @return Flowable of ByteBuffer
+     */
+    static Flowable<ByteBuffer> trim(Flowable<ByteBuffer> buffers, long offset, long length) {
+        final long end = offset + length;
+        return Flowable.defer(() -> {
+            /* position in the stream of the next buffer */
+            long[] cursor = {0};
+            return buffers
+                    .map(buffer -> {
+                        long start = cursor[0];
+                        cursor[0] += buffer.remaining();
+                        ByteBuffer view = buffer.duplicate();
+                        int from = (int) Math.min(buffer.remaining(), Math.max(0, offset - start));
+                        int to = (int) Math.min(buffer.remaining(), end - start);
+                        view.limit(view.position() + to);
+                        view.position(view.position() + from);
+                        return view;
+                    })
+                    .takeUntil(buffer -> cursor[0] >= end)
+                    .filter(ByteBuffer::hasRemaining);
+        });
+    }
+
+    @Override
+    public void map(Supplier<ByteBuffer> open,
+                    Function<ByteBuffer, ByteBuffer> update,
+                    Supplier<ByteBuffer> close) throws Exception {
+        throw new IOException("slice blob is read-only");
+    }
+
+    @Override
+    public WritableBlob getWritableBlob() {
+        return new ReadOnlyWritableBlob("slice blob is read-only");
+    }
+
+    @Override
+    protected void deallocate() {
+        source.release();
+    }
+}
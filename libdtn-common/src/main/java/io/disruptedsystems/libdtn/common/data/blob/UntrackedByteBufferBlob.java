@@ -11,12 +11,15 @@ import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 
 /**
- * UntrackedByteBuffer is a simple ByteBuffer Blob that doesn't "malloc" to {@link VolatileMemory}.
+ * UntrackedByteBuffer is a simple ByteBuffer Blob that doesn't "malloc" to {@link VolatileMemory},
+ * its buffer is left to the garbage collector.
  *
  * @author Lucien Loiseau on 30/10/18.
  */
 public class UntrackedByteBufferBlob extends VolatileBlob {
 
+    private static final int CHUNK_SIZE = 65536;
+
     ByteBuffer data;
 
     UntrackedByteBufferBlob() {
@@ -126,17 +129,12 @@ public class UntrackedByteBufferBlob extends VolatileBlob {
             @Override
             public int write(InputStream stream)
                     throws IOException, BlobOverflowException {
-                int read = data.remaining();
-                int size = read;
-                int b;
-                while (read > 0) {
-                    if ((b = stream.read()) == -1) {
-                        return (size - read);
-                    }
-                    data.put((byte) b);
-                    read--;
+                int size = data.remaining();
+                int read = fill(stream, size);
+                if (read == size && stream.read() != -1) {
+                    throw new BlobOverflowException();
                 }
-                throw new BlobOverflowException();
+                return read;
             }
 
             @Override
@@ -145,14 +143,42 @@ public class UntrackedByteBufferBlob extends VolatileBlob {
                 if (size > (data.remaining())) {
                     throw new BlobOverflowException();
                 }
-                int read = size;
-                while (read > 0) {
-                    data.put((byte) stream.read());
-                    read--;
+                if (fill(stream, size) != size) {
+                    throw new IOException("unexpected end of stream");
                 }
                 return size;
             }
 
+            /* read up to size bytes from the stream straight into the buffer */
+            private int fill(InputStream stream, int size) throws IOException {
+                byte[] array;
+                int offset;
+                if (data.hasArray()) {
+                    array = data.array();
+                    offset = data.arrayOffset();
+                } else {
+                    array = new byte[Math.min(size, CHUNK_SIZE)];
+                    offset = -1;
+                }
+
+                int total = 0;
+                while (total < size) {
+                    int count = (offset < 0)
+                            ? stream.read(array, 0, Math.min(array.length, size - total))
+                            : stream.read(array, offset + data.position(), size - total);
+                    if (count <= 0) {
+                        break;
+                    }
+                    if (offset < 0) {
+                        data.put(array, 0, count);
+                    } else {
+                        data.position(data.position() + count);
+                    }
+                    total += count;
+                }
+                return total;
+            }
+
             @Override
             public void close() {
                 data.flip();
@@ -4,7 +4,6 @@ import io.disruptedsystems.libdtn.common.utils.Function;
 import io.disruptedsystems.libdtn.common.utils.Supplier;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Flowable;
-import io.reactivex.rxjava3.core.Observable;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -15,15 +14,29 @@ import java.util.LinkedList;
  * VersatileGrowingBuffer is a growing Blob that uses volatile or persistent buffer to grow
  * depending on what is available everytime it needs to instantiate a new Blob to grow.
  *
+ * <p>Every new chunk is twice as large as the previous one, up to {@link #MAX_CHUNK_SIZE}, so
+ * that a large Blob of unknown size is held in a few chunks. If a factory for persistent chunks
+ * is given, the buffer grows into a file once its total size reaches a limit, the file then
+ * takes all the data that follows. The size is kept up to date as the buffer is written.
+ *
  * @author Lucien Loiseau on 01/11/18.
  */
 public class VersatileGrowingBuffer extends VolatileBlob {
 
+    public static final int MAX_CHUNK_SIZE = VolatileMemory.MAX_SLAB_SIZE;
     private static final int VOLATILE_BLOB_SIZE = 20000;
+    private static final int CHUNK_SIZE = 65536;
 
     private BlobFactory factory;
+    private BlobFactory fileFactory;
+    private long volatileLimit = Long.MAX_VALUE;
     private LinkedList<Blob> blobs;
     private int blobSizeUnit = VOLATILE_BLOB_SIZE;
+    /* size of the next chunk */
+    private int chunkSize;
+    /* room left in the last chunk, a file chunk has no fixed capacity */
+    private int space;
+    private long totalSize = 0;
 
     /**
      * Constructor requires a factory to instantiate new Blob chunk as it grows.
@@ -34,6 +47,7 @@ public class VersatileGrowingBuffer extends VolatileBlob {
     public VersatileGrowingBuffer(BlobFactory factory) throws BlobFactory.BlobFactoryException {
         this.factory = factory;
         blobs = new LinkedList<>();
+        chunkSize = blobSizeUnit;
         allocateBlob();
     }
 
@@ -49,23 +63,59 @@ public class VersatileGrowingBuffer extends VolatileBlob {
         this.factory = factory;
         this.blobSizeUnit = blobSize;
         blobs = new LinkedList<>();
+        chunkSize = blobSizeUnit;
+        allocateBlob();
+    }
+
+    /**
+     * Constructor for a buffer that grows in volatile chunks until its size reaches a limit
+     * and in a persistent chunk afterwards. If one of the factories fails, the other one is
+     * used instead.
+     *
+     * @param factory       to instantiate the volatile chunks.
+     * @param fileFactory   to instantiate the persistent chunk.
+     * @param volatileLimit size from which the buffer grows into a persistent chunk.
+     * @throws BlobFactory.BlobFactoryException if it cannot instantiate the first chunk.
+     */
+    public VersatileGrowingBuffer(BlobFactory factory, BlobFactory fileFactory,
+                                  long volatileLimit) throws BlobFactory.BlobFactoryException {
+        this.factory = factory;
+        this.fileFactory = fileFactory;
+        this.volatileLimit = volatileLimit;
+        blobs = new LinkedList<>();
+        chunkSize = blobSizeUnit;
         allocateBlob();
     }
 
     private Blob allocateBlob() throws BlobFactory.BlobFactoryException {
-        Blob blob = factory.createBlob(blobSizeUnit);
+        Blob blob;
+        if (fileFactory == null) {
+            blob = factory.createBlob(chunkSize);
+        } else if (totalSize < volatileLimit) {
+            blob = createBlob(factory, fileFactory);
+        } else {
+            blob = createBlob(fileFactory, factory);
+        }
         blobs.add(blob);
+        space = (blob instanceof UntrackedByteBufferBlob) ? chunkSize : Integer.MAX_VALUE;
+        if (chunkSize < MAX_CHUNK_SIZE) {
+            chunkSize = Math.max(chunkSize, Math.min(chunkSize * 2, MAX_CHUNK_SIZE));
+        }
         return blob;
     }
 
+    private Blob createBlob(BlobFactory first, BlobFactory second)
+            throws BlobFactory.BlobFactoryException {
+        try {
+            return first.createBlob(chunkSize);
+        } catch (BlobFactory.BlobFactoryException e) {
+            return second.createBlob(chunkSize);
+        }
+    }
+
     @Override
     public long size() {
-        return Observable.fromIterable(blobs)
-                .map(Blob::size)
-                .reduce(
-                        0L,
-                        (a, b) -> a + b)
-                .blockingGet();
+        return totalSize;
     }
 
     @Override
@@ -73,6 +123,11 @@ public class VersatileGrowingBuffer extends VolatileBlob {
         return Flowable.fromIterable(blobs).concatMap(Blob::observe, 1);
     }
 
+    @Override
+    public Flowable<ByteBuffer> observe(int chunkSize) {
+        return Flowable.fromIterable(blobs).concatMap(b -> b.observe(chunkSize), 1);
+    }
+
     @Override
     public void map(Supplier<ByteBuffer> open,
                     Function<ByteBuffer, ByteBuffer> update,
@@ -98,6 +153,12 @@ public class VersatileGrowingBuffer extends VolatileBlob {
                         () -> ByteBuffer.allocate(0));
             }
         }
+
+        /* open and close may have changed the size */
+        totalSize = 0;
+        for (Blob blob : blobs) {
+            totalSize += blob.size();
+        }
     }
 
     @Override
@@ -114,66 +175,92 @@ public class VersatileGrowingBuffer extends VolatileBlob {
             @Override
             public void clear() {
                 blobs.forEach(b -> b.getWritableBlob().clear());
+                blobs.forEach(Blob::release);
                 blobs.clear();
+                totalSize = 0;
+                space = 0;
+                chunkSize = blobSizeUnit;
             }
 
-            @Override
-            public int write(byte b) throws IOException, BlobOverflowException {
-                try {
-                    cur.write(b);
-                    return 1;
-                } catch (IOException | BlobOverflowException e) {
-                    cur.close();
-                    /* create new blob */
-                }
-
+            /* close the current chunk and continue on a new one */
+            private void nextChunk() throws IOException {
+                cur.close();
                 try {
                     allocateBlob();
-                    cur = blobs.getLast().getWritableBlob();
                 } catch (BlobFactory.BlobFactoryException e) {
                     throw new IOException(e);
                 }
+                cur = blobs.getLast().getWritableBlob();
+            }
 
-                cur.write(b);
+            @Override
+            public int write(byte b) throws IOException, BlobOverflowException {
+                if (space == 0) {
+                    nextChunk();
+                }
+                try {
+                    cur.write(b);
+                } catch (IOException | BlobOverflowException e) {
+                    nextChunk();
+                    cur.write(b);
+                }
+                space--;
+                totalSize++;
                 return 1;
             }
 
             @Override
             public int write(byte[] a) throws IOException, BlobOverflowException {
-                for (int i = 0; i < a.length; i++) {
-                    write(a[i]);
-                }
-                return a.length;
+                return write(ByteBuffer.wrap(a));
             }
 
+            /* copy the buffer chunk by chunk, moving to a new chunk whenever one is full */
             @Override
             public int write(ByteBuffer buffer) throws IOException, BlobOverflowException {
-                int size = buffer.remaining();
+                int count = buffer.remaining();
+                boolean fresh = false;
                 while (buffer.hasRemaining()) {
-                    write(buffer.get());
+                    if (space == 0) {
+                        nextChunk();
+                        fresh = true;
+                    }
+                    int length = Math.min(buffer.remaining(), space);
+                    ByteBuffer slice = buffer.duplicate();
+                    slice.limit(slice.position() + length);
+                    try {
+                        cur.write(slice);
+                    } catch (IOException | BlobOverflowException e) {
+                        if (fresh) {
+                            /* a brand new chunk can't take it, give up */
+                            throw e;
+                        }
+                        space = 0;
+                        continue;
+                    }
+                    buffer.position(buffer.position() + length);
+                    space -= length;
+                    totalSize += length;
+                    fresh = false;
                 }
-                return size;
+                return count;
             }
 
             @Override
             public int write(InputStream stream) throws IOException, BlobOverflowException {
-                int read = 0;
-                int b;
-                while ((b = stream.read()) != -1) {
-                    write((byte) b);
-                    read++;
-                }
-                return read;
+                return write(stream, Integer.MAX_VALUE);
             }
 
             @Override
             public int write(InputStream stream, int size)
                     throws IOException, BlobOverflowException {
+                byte[] chunk = new byte[Math.min(size, CHUNK_SIZE)];
                 int read = 0;
-                int b;
-                while (((b = stream.read()) != -1) && (read < size)) {
-                    write((byte) b);
-                    read++;
+                int count;
+                while (read < size
+                        && (count = stream.read(chunk, 0, Math.min(chunk.length, size - read)))
+                        > 0) {
+                    write(ByteBuffer.wrap(chunk, 0, count));
+                    read += count;
                 }
                 return read;
             }
@@ -185,6 +272,11 @@ public class VersatileGrowingBuffer extends VolatileBlob {
         };
     }
 
+    @Override
+    protected void deallocate() {
+        blobs.forEach(Blob::release);
+    }
+
     @Override
     public boolean isFileBlob() {
         return blobs.size() == 1 && blobs.getLast() instanceof FileBlob;
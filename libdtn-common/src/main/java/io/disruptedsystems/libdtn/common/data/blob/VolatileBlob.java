@@ -1,6 +1,5 @@
 package io.disruptedsystems.libdtn.common.data.blob;
 
-import io.disruptedsystems.libdtn.common.data.Tag;
 import io.reactivex.rxjava3.core.Completable;
 
 import java.io.BufferedOutputStream;
@@ -13,7 +12,7 @@ import java.io.IOException;
  *
  * @author Lucien Loiseau on 31/10/18.
  */
-public abstract class VolatileBlob extends Tag implements Blob {
+public abstract class VolatileBlob extends RefCountedBlob {
 
     @Override
     public boolean isFileBlob() {
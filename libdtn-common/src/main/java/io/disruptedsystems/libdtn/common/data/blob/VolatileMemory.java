@@ -2,89 +2,169 @@ package io.disruptedsystems.libdtn.common.data.blob;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * VolatileMemory is used to track the memory used by the various blob. It is not a real
- * memory manager as it does not perform the allocation and disallocation of memory itself
- * (that is managed by the JVM) but it does maintain a memory count and a limit and may
- * throw an exception if too much memory is requested.
+ * VolatileMemory is a pooled allocator for the volatile blobs. Buffers are served from
+ * size-class slabs, from {@link #MIN_SLAB_SIZE} up to {@link #MAX_SLAB_SIZE} by powers of two,
+ * so that a buffer released by a blob can be reused by the next blob of the same class instead
+ * of being left to the garbage collector. Larger requests are allocated to the exact size and
+ * are not pooled.
+ *
+ * <p>The memory in use is accounted atomically, a request that would exceed the limit throws
+ * an exception. Memory is given back explicitly with {@link #free(ByteBuffer)}. Released slabs
+ * are kept for reuse as long as the idle memory stays under a quarter of the limit. A buffer
+ * that is {@link #discard(ByteBuffer) discarded} instead is accounted for but never reused.
  *
  * @author Lucien Loiseau on 30/10/18.
  */
 public class VolatileMemory {
 
-    private int memoryLimit;
-    private int currentMemoryUsage = 0;
-
-    public VolatileMemory(int limit) {
-        memoryLimit = limit;
-    }
+    public static final int MIN_SLAB_SIZE = 4096;
+    public static final int MAX_SLAB_SIZE = 1048576;
+    private static final int CLASSES =
+            Integer.numberOfTrailingZeros(MAX_SLAB_SIZE / MIN_SLAB_SIZE) + 1;
 
+    private final long memoryLimit;
+    private final boolean direct;
+    private final List<Queue<ByteBuffer>> slabs;
+    private final AtomicLong used = new AtomicLong();
+    private final AtomicLong idle = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
 
     /**
-     * request to spend more volatile memory. Throws an exception if the array given as an
-     * argument is bigger than the authorized memory remaining. Otherwise it returns a
-     * ByteBuffer wrapping around the array.
+     * Constructor: creates a pool of heap buffers.
      *
-     * @param array requested
-     * @return ByteBuffer wrapping around the array.
-     * @throws IOException if memory limit is hit.
+     * @param limit maximum memory the blobs can use together
      */
-    public ByteBuffer malloc(byte[] array) throws IOException {
-        if (currentMemoryUsage + array.length > memoryLimit) {
-            throw new IOException();
-        }
-        currentMemoryUsage += array.length;
-        return ByteBuffer.wrap(array);
+    public VolatileMemory(int limit) {
+        this(limit, false);
     }
 
     /**
-     * request to spend more volatile memory. Throws an exception if the ByteBuffer given as an
-     * argument is bigger than the authorized memory remaining. Otherwise it returns a
-     * new ByteBuffer of same size as the remaining bytes from the buffer.
+     * Constructor.
      *
-     * @param buffer requested
-     * @return newly allocated ByteBuffer
-     * @throws IOException if memory limit is hit.
+     * @param limit  maximum memory the blobs can use together
+     * @param direct true to allocate direct buffers, false for heap buffers
      */
-    public ByteBuffer malloc(ByteBuffer buffer) throws IOException {
-        if (currentMemoryUsage + buffer.remaining() > memoryLimit) {
-            throw new IOException();
+    public VolatileMemory(int limit, boolean direct) {
+        this.memoryLimit = limit;
+        this.direct = direct;
+        this.slabs = new ArrayList<>(CLASSES);
+        for (int i = 0; i < CLASSES; i++) {
+            slabs.add(new ConcurrentLinkedQueue<>());
         }
-        currentMemoryUsage += buffer.remaining();
-        ByteBuffer ret = ByteBuffer.allocate(buffer.remaining());
-        ret.put(buffer);
-        ret.position(0);
-        return ret;
     }
 
     /**
      * request to spend more volatile memory. Throws an exception if the size given as an
      * argument is bigger than the authorized memory remaining. Otherwise it returns a
-     * new ByteBuffer of same size as the requested size.
+     * buffer whose capacity is at least the requested size, position is 0 and limit is the
+     * requested size. The buffer must be given back with {@link #free(ByteBuffer)}.
      *
      * @param size requested
-     * @return newly allocated ByteBuffer
+     * @return ByteBuffer from the pool
      * @throws IOException if memory limit is hit.
      */
     public ByteBuffer malloc(int size) throws IOException {
-        if (currentMemoryUsage + size > memoryLimit) {
-            throw new IOException();
+        int sizeClass = sizeClass(size);
+        int capacity = (sizeClass < 0) ? size : MIN_SLAB_SIZE << sizeClass;
+
+        long current;
+        do {
+            current = used.get();
+            if (current + capacity > memoryLimit) {
+                throw new IOException("volatile memory limit reached");
+            }
+        } while (!used.compareAndSet(current, current + capacity));
+
+        ByteBuffer buffer = (sizeClass < 0) ? null : slabs.get(sizeClass).poll();
+        if (buffer != null) {
+            idle.addAndGet(-capacity);
+            hits.incrementAndGet();
+            buffer.clear();
+        } else {
+            misses.incrementAndGet();
+            buffer = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
         }
-        currentMemoryUsage += size;
-        return ByteBuffer.allocate(size);
+        buffer.limit(size);
+        return buffer;
     }
 
     /**
-     * Instruct VolatileMemory that some memory was freed.
+     * Give a buffer back to VolatileMemory. The buffer must have been returned by
+     * {@link #malloc(int)} and must not be used afterwards.
      *
-     * @param size newly available memory
+     * @param buffer to release
      */
-    public void free(int size) {
-        currentMemoryUsage -= size;
-        if (currentMemoryUsage < 0) {
-            currentMemoryUsage = 0;
+    public void free(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        used.addAndGet(-capacity);
+
+        int sizeClass = sizeClass(capacity);
+        if (sizeClass < 0 || (MIN_SLAB_SIZE << sizeClass) != capacity) {
+            return;
         }
+        if (idle.addAndGet(capacity) > memoryLimit / 4) {
+            idle.addAndGet(-capacity);
+            return;
+        }
+        slabs.get(sizeClass).offer(buffer);
+    }
+
+    /**
+     * Account for a buffer that is no longer used by its blob but that may still be referenced
+     * elsewhere, the buffer is left to the garbage collector instead of being reused.
+     *
+     * @param buffer returned by {@link #malloc(int)}
+     */
+    public void discard(ByteBuffer buffer) {
+        used.addAndGet(-buffer.capacity());
     }
 
+    /**
+     * Memory currently handed out to the blobs.
+     *
+     * @return size in bytes
+     */
+    public long used() {
+        return used.get();
+    }
+
+    /**
+     * Memory held by the pool for reuse.
+     *
+     * @return size in bytes
+     */
+    public long idle() {
+        return idle.get();
+    }
+
+    /**
+     * Print the pool statistics.
+     *
+     * @return String
+     */
+    public String print() {
+        return "volatile memory: used=" + used.get() + "/" + memoryLimit
+                + " idle=" + idle.get()
+                + " hits=" + hits.get()
+                + " misses=" + misses.get();
+    }
+
+    /* smallest size class that fits, -1 if the size is not pooled */
+    private static int sizeClass(int size) {
+        if (size > MAX_SLAB_SIZE) {
+            return -1;
+        }
+        if (size <= MIN_SLAB_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros((size - 1) / MIN_SLAB_SIZE);
+    }
 }
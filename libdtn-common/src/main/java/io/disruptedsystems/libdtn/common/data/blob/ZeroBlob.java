@@ -2,7 +2,6 @@ package io.disruptedsystems.libdtn.common.data.blob;
 
 import io.disruptedsystems.libdtn.common.utils.Function;
 import io.disruptedsystems.libdtn.common.utils.Supplier;
-import io.disruptedsystems.libdtn.common.data.Tag;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Flowable;
 
@@ -18,7 +17,7 @@ import java.nio.ByteBuffer;
  *
  * @author Lucien Loiseau on 30/10/18.
  */
-public class ZeroBlob extends Tag implements Blob {
+public class ZeroBlob extends RefCountedBlob {
 
     public ZeroBlob() {
     }
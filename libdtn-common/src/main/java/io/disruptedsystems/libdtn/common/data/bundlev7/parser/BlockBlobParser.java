@@ -34,7 +34,6 @@ public class BlockBlobParser {
                         },
                         (p, chunk) -> {
                             logger.v(TAG, ".. blob_byte_chunk_size=" + chunk.remaining());
-                            logger.v(TAG, ".. chunk=" + new String(chunk.array()));
                             try {
                                 p.<WritableBlob>getReg(3).write(chunk);
                             } catch (WritableBlob.BlobOverflowException | IOException io) {
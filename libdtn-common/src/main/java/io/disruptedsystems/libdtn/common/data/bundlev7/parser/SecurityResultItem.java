@@ -35,11 +35,14 @@ public class SecurityResultItem implements CborParser.ParseableItem {
                                 /* size of the checksum */
                             },
                             (p, chunk) -> {
-                                securityResult = new IntegrityResult(chunk.array());
+                                /* the chunk may be a slice of a direct or mapped buffer */
+                                byte[] checksum = new byte[chunk.remaining()];
+                                chunk.duplicate().get(checksum);
+                                securityResult = new IntegrityResult(checksum);
                                 logger.v(BundleV7Item.TAG, ".... result_id="
                                         + securityResult.getResultId());
                                 logger.v(BundleV7Item.TAG, ".... result_value="
-                                        + new String(chunk.array()));
+                                        + new String(checksum));
                             },
                             (p) -> {
                             });
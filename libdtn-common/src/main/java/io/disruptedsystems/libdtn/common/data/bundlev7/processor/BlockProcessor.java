@@ -14,7 +14,9 @@ public interface BlockProcessor {
 
     /**
      * This is called just before being queued for transmission
-     * If it returns true, the whole bundle will be reprocess again.
+     * If it returns true, the whole bundle will be reprocess again and the block will be encoded
+     * again. A processor that modifies another block must call
+     * {@link Bundle#invalidateEncodedForm} for that block.
      *
      * @param block being processed
      * @param bundle being processed
@@ -37,4 +37,21 @@ public class AdministrativeRecordSerializer {
         return enc;
     }
 
+    /**
+     * size of a serialized AdministrativeRecord.
+     *
+     * @param record to serialize
+     * @return size in bytes of the Cbor-Encoded record.
+     */
+    public static long encodedSize(AdministrativeRecord record) {
+        long size = CborSize.array(2) + CborSize.integer(record.type);
+
+        switch (record.type) {
+            case StatusReport.STATUS_REPORT_ADM_TYPE:
+                return size + StatusReportSerializer.encodedSize((StatusReport) record);
+            default:
+                return size + CborSize.integer(0);
+        }
+    }
+
 }
@@ -12,16 +12,25 @@ import io.disruptedsystems.libdtn.common.data.AgeBlock;
 public class AgeBlockSerializer {
 
     /**
-     * serializes an {@link AgeBlock}.
+     * serializes an {@link AgeBlock}. The age is the one of the last time the block was stopped.
      *
      * @param block to serialize.
      * @return a Cbor-encoded serialized AgeBlock.
      */
     static CborEncoder encode(AgeBlock block) {
-        block.stop();
         long age = block.age + block.timeEnd - block.timeStart;
         return CBOR.encoder()
                 .cbor_encode_int(age);
     }
 
+    /**
+     * size of a serialized {@link AgeBlock}, the block is not stopped.
+     *
+     * @param block to serialize.
+     * @return size in bytes of the Cbor-encoded AgeBlock.
+     */
+    static long encodedSize(AgeBlock block) {
+        return CborSize.integer(block.age + block.timeEnd - block.timeStart);
+    }
+
 }
@@ -56,4 +56,38 @@ public class BaseBlockDataSerializerFactory implements BlockDataSerializerFactor
                 throw new UnknownBlockTypeException();
         }
     }
+
+    @Override
+    public long encodedSize(CanonicalBlock block) throws UnknownBlockTypeException {
+        switch (block.type) {
+            case PayloadBlock.PAYLOAD_BLOCK_TYPE:
+                return BlockBlobSerializer
+                        .encodedSize((BlockBlob) block);
+            case RoutingBlock.ROUTING_BLOCK_TYPE:
+                return RoutingBlockSerializer
+                        .encodedSize((RoutingBlock) block);
+            case ManifestBlock.MANIFEST_BLOCK_TYPE:
+                return ManifestBlockSerializer
+                        .encodedSize((ManifestBlock) block);
+            case FlowLabelBlock.FLOW_LABEL_BLOCK_TYPE:
+                return FlowLabelBlockSerializer
+                        .encodedSize((FlowLabelBlock) block);
+            case PreviousNodeBlock.PREVIOUS_NODE_BLOCK_TYPE:
+                return PreviousNodeBlockSerializer
+                        .encodedSize((PreviousNodeBlock) block);
+            case AgeBlock.AGE_BLOCK_TYPE:
+                return AgeBlockSerializer
+                        .encodedSize((AgeBlock) block);
+            case ScopeControlHopLimitBlock.SCOPE_CONTROL_HOP_LIMIT_BLOCK_TYPE:
+                return ScopeControlHopLimitBlockSerializer
+                        .encodedSize((ScopeControlHopLimitBlock) block);
+            case BlockConfidentialityBlock.BLOCK_CONFIDENTIALITY_BLOCK_TYPE:
+            case BlockIntegrityBlock.BLOCK_INTEGRITY_BLOCK_TYPE:
+            case BlockAuthenticationBlock.BLOCK_AUTHENTICATION_BLOCK_TYPE:
+                return SecurityBlockSerializer
+                        .encodedSize((AbstractSecurityBlock)block);
+            default:
+                throw new UnknownBlockTypeException();
+        }
+    }
 }
@@ -11,6 +11,9 @@ import io.disruptedsystems.libdtn.common.data.BlockBlob;
  */
 public class BlockBlobSerializer {
 
+    /* large reads so that a file payload is mapped rather than copied */
+    static final int CHUNK_SIZE = 65536;
+
     /**
      * serializes an {@link BlockBlob}.
      *
@@ -19,6 +22,16 @@ public class BlockBlobSerializer {
      */
     static CborEncoder encode(BlockBlob block) {
         return CBOR.encoder()
-                .cbor_encode_byte_string(block.data.observe());
+                .cbor_encode_byte_string(block.data.observe(CHUNK_SIZE));
+    }
+
+    /**
+     * size of a serialized {@link BlockBlob}.
+     *
+     * @param block to serialize.
+     * @return size in bytes of the Cbor-encoded BlockBlob.
+     */
+    static long encodedSize(BlockBlob block) {
+        return CborSize.byteString(block.data.size());
     }
 }
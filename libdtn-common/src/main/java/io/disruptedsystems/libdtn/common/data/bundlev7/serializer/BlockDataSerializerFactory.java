@@ -21,4 +21,13 @@ public interface BlockDataSerializerFactory {
      * @throws UnknownBlockTypeException if PAYLOAD_BLOCK_TYPE is unknown
      */
     CborEncoder create(CanonicalBlock block) throws UnknownBlockTypeException;
+
+    /**
+     * returns the size of the serialized data of the given ExtensionBlock.
+     *
+     * @param block extension block to serialize
+     * @return size in bytes of the Cbor-encoded block data
+     * @throws UnknownBlockTypeException if PAYLOAD_BLOCK_TYPE is unknown
+     */
+    long encodedSize(CanonicalBlock block) throws UnknownBlockTypeException;
 }
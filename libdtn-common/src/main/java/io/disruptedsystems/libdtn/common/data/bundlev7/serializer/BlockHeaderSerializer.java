@@ -27,6 +27,20 @@ public class BlockHeaderSerializer {
     }
 
 
+    /**
+     * size of a serialized {@link BlockHeader}.
+     *
+     * @param block to serialize.
+     * @return size in bytes of the Cbor-encoded BlockHeader.
+     */
+    public static long encodedSize(BlockHeader block) {
+        return CborSize.array(getItemCount(block))
+                + CborSize.integer(block.type)
+                + CborSize.integer(block.number)
+                + CborSize.integer(block.procV7flags)
+                + CborSize.integer(block.crcType.ordinal());
+    }
+
     private static int getItemCount(BlockHeader block) {
         int length = 5; // 6 in draft-BPbis v10, currently v11
         if (block.crcType != BlockHeader.CrcFieldType.NO_CRC) {
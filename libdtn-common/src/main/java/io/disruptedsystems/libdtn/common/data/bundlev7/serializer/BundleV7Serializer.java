@@ -2,8 +2,14 @@ package io.disruptedsystems.libdtn.common.data.bundlev7.serializer;
 
 import io.marlinski.libcbor.CBOR;
 import io.marlinski.libcbor.CborEncoder;
+import io.disruptedsystems.libdtn.common.data.AgeBlock;
 import io.disruptedsystems.libdtn.common.data.Bundle;
 import io.disruptedsystems.libdtn.common.data.CanonicalBlock;
+import io.reactivex.rxjava3.core.Flowable;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.List;
 
 /**
  * BundleV7Serializer serializes a {@link Bundle}.
@@ -14,9 +20,12 @@ public class BundleV7Serializer {
 
     public static final byte BUNDLE_VERSION_7 = 0x07;
 
+    /* stop code of an indefinite array */
+    private static final byte BREAK = (byte) 0xff;
+
     /**
      * Serialize a bundle into a cbor stream. If an ExtensionBlock is unknown, the block payload
-     * will be empty.
+     * will be empty. The age of the bundle is stopped first.
      *
      * @param bundle to serialize
      * @param  blockDataSerializerFactory block serializer
@@ -24,6 +33,7 @@ public class BundleV7Serializer {
      */
     public static CborEncoder encode(Bundle bundle,
                                      BlockDataSerializerFactory blockDataSerializerFactory) {
+        stopAge(bundle);
         CborEncoder enc = CBOR.encoder()
                 .cbor_start_indefinite_array()
                 .merge(PrimaryBlockSerializer.encode(bundle));
@@ -36,4 +46,64 @@ public class BundleV7Serializer {
         return enc;
     }
 
+    /**
+     * Serialize a bundle into a stream of buffers for transmission. The encoded form of the
+     * primary block and of the canonical blocks is kept in the bundle, sending the same bundle
+     * again only encodes the blocks that changed in between. The age is not stopped, the caller
+     * stops it with {@link #stopAge(Bundle)} before computing the size of the transmission.
+     *
+     * @param bundle to serialize
+     * @param  blockDataSerializerFactory block serializer
+     * @return cbor-encoded bundle
+     */
+    public static Flowable<ByteBuffer> encodeCached(Bundle bundle,
+                                                    BlockDataSerializerFactory
+                                                            blockDataSerializerFactory) {
+        return Flowable.defer(() -> {
+            List<Flowable<ByteBuffer>> encoded = new LinkedList<>();
+            encoded.add(CBOR.encoder().cbor_start_indefinite_array().observe());
+            encoded.add(EncodedBlock.primary(bundle));
+
+            for (CanonicalBlock block : bundle.getBlocks()) {
+                encoded.add(EncodedBlock.canonical(bundle, block, blockDataSerializerFactory));
+            }
+
+            encoded.add(Flowable.just(ByteBuffer.wrap(new byte[]{BREAK})));
+            return Flowable.concat(encoded);
+        });
+    }
+
+    /**
+     * Stop the age block of a bundle, if any, so that its size and its serialization agree until
+     * it is stopped again.
+     *
+     * @param bundle to stop
+     */
+    public static void stopAge(Bundle bundle) {
+        for (CanonicalBlock block : bundle.getBlocks()) {
+            if (block instanceof AgeBlock) {
+                ((AgeBlock) block).stop();
+            }
+        }
+    }
+
+    /**
+     * Compute the size of a serialized bundle from the value of its fields and the size of its
+     * blobs, without serializing it. The age block is not stopped.
+     *
+     * @param bundle to serialize
+     * @param  blockDataSerializerFactory block serializer
+     * @return size in bytes of the cbor-encoded bundle
+     */
+    public static long encodedSize(Bundle bundle,
+                                   BlockDataSerializerFactory blockDataSerializerFactory) {
+        long size = CborSize.INDEFINITE_ARRAY + PrimaryBlockSerializer.encodedSize(bundle);
+
+        for (CanonicalBlock block : bundle.getBlocks()) {
+            size += CanonicalBlockSerializer.encodedSize(block, blockDataSerializerFactory);
+        }
+
+        return size + CborSize.BREAK;
+    }
+
 }
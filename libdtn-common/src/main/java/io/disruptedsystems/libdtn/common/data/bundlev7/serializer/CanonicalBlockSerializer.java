@@ -41,6 +41,39 @@ public class CanonicalBlockSerializer {
     }
 
 
+    /**
+     * size of a serialized {@link CanonicalBlock}, computed without serializing it.
+     *
+     * @param block to serialize.
+     * @param factory to size the block-specific data
+     * @return size in bytes of the Cbor-encoded CanonicalBlock.
+     */
+    public static long encodedSize(CanonicalBlock block, BlockDataSerializerFactory factory) {
+        long size = BlockHeaderSerializer.encodedSize(block);
+
+        if (block.getV7Flag(BlockHeader.BlockV7Flags.BLOCK_IS_ENCRYPTED)) {
+            size += BlockBlobSerializer.encodedSize((BlockBlob) block);
+        } else {
+            try {
+                size += factory.encodedSize(block);
+            } catch (BlockDataSerializerFactory.UnknownBlockTypeException ubte) {
+                /* empty block data */
+            }
+        }
+
+        return size + crcSize(block.crcType);
+    }
+
+    static int crcSize(BlockHeader.CrcFieldType type) {
+        if (type == BlockHeader.CrcFieldType.CRC_16) {
+            return PrimaryBlockSerializer.crcSize(PrimaryBlock.CrcFieldType.CRC_16);
+        }
+        if (type == BlockHeader.CrcFieldType.CRC_32) {
+            return PrimaryBlockSerializer.crcSize(PrimaryBlock.CrcFieldType.CRC_32);
+        }
+        return PrimaryBlockSerializer.crcSize(PrimaryBlock.CrcFieldType.NO_CRC);
+    }
+
     static CborEncoder encodeCrc(Flowable<ByteBuffer> source,
                                  BlockHeader.CrcFieldType type) {
         if (type == BlockHeader.CrcFieldType.CRC_16) {
@@ -0,0 +1,94 @@
+package io.disruptedsystems.libdtn.common.data.bundlev7.serializer;
+
+import io.marlinski.libcbor.CborEncoder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CborSize computes the length of CBOR items from their value without encoding them. Integers
+ * and lengths are encoded in their shortest form and byte strings with a definite length, as
+ * the {@link CborEncoder} does.
+ */
+public class CborSize {
+
+    public static final int BOOLEAN = 1;
+    public static final int INDEFINITE_ARRAY = 1;
+    public static final int BREAK = 1;
+
+    /**
+     * size of the head of an item, major type and argument.
+     *
+     * @param argument value or length of the item
+     * @return size in bytes
+     */
+    public static int head(long argument) {
+        if (argument < 24) {
+            return 1;
+        }
+        if (argument <= 0xffL) {
+            return 2;
+        }
+        if (argument <= 0xffffL) {
+            return 3;
+        }
+        if (argument <= 0xffffffffL) {
+            return 5;
+        }
+        return 9;
+    }
+
+    /**
+     * size of an integer, positive or negative.
+     *
+     * @param value of the integer
+     * @return size in bytes
+     */
+    public static int integer(long value) {
+        return head(value < 0 ? -1 - value : value);
+    }
+
+    /**
+     * size of the head of an array.
+     *
+     * @param items number of items in the array
+     * @return size in bytes
+     */
+    public static int array(long items) {
+        return head(items);
+    }
+
+    /**
+     * size of a byte string.
+     *
+     * @param length of the byte string
+     * @return size in bytes
+     */
+    public static long byteString(long length) {
+        return head(length) + length;
+    }
+
+    /**
+     * size of a text string.
+     *
+     * @param text string
+     * @return size in bytes
+     */
+    public static long textString(String text) {
+        return byteString(text.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    /**
+     * size of an opaque encoder, it is encoded to count its bytes. Only for items whose
+     * structure is not known, such as extension blocks.
+     *
+     * @param enc encoder to measure
+     * @return size in bytes
+     */
+    public static long of(CborEncoder enc) {
+        return enc.observe()
+                .map(ByteBuffer::remaining)
+                .reduce(0L, (a, b) -> a + b)
+                .blockingGet();
+    }
+}
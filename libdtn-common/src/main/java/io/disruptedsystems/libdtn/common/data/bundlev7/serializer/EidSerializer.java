@@ -42,4 +42,24 @@ public class EidSerializer {
                 .cbor_encode_text_string(eid.getSsp());
     }
 
+    /**
+     * size of a serialized {@link Eid}.
+     *
+     * @param eid to serialize.
+     * @return size in bytes of the Cbor-encoded Eid.
+     */
+    public static long encodedSize(Eid eid) {
+        long size = CborSize.array(2) + CborSize.integer(eid.ianaNumber());
+        if (eid.equals(DtnEid.nullEid())) {
+            return size + CborSize.integer(0);
+        }
+        if (eid.ianaNumber() == EID_IPN_IANA_VALUE) {
+            return size
+                    + CborSize.array(2)
+                    + CborSize.integer(((EidIpn) eid).nodeNumber)
+                    + CborSize.integer(((EidIpn) eid).serviceNumber);
+        }
+        return size + CborSize.textString(eid.getSsp());
+    }
+
 }
@@ -0,0 +1,140 @@
+package io.disruptedsystems.libdtn.common.data.bundlev7.serializer;
+
+import io.disruptedsystems.libdtn.common.data.AgeBlock;
+import io.disruptedsystems.libdtn.common.data.BlockBlob;
+import io.disruptedsystems.libdtn.common.data.BlockHeader;
+import io.disruptedsystems.libdtn.common.data.Bundle;
+import io.disruptedsystems.libdtn.common.data.CanonicalBlock;
+import io.disruptedsystems.libdtn.common.data.PayloadBlock;
+import io.disruptedsystems.libdtn.common.data.blob.Blob;
+import io.reactivex.rxjava3.core.Flowable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * EncodedBlock is the encoded form of a block that is kept in its {@link Bundle} so that the
+ * block is not serialized again, nor its crc computed again, the next time the bundle is sent.
+ *
+ * <p>The data of a block that holds a Blob is not copied, only the bytes before and after it
+ * are kept and the Blob is read again. The encoded form is only used if the header of the block
+ * and its Blob are still the same as when it was encoded, the content of the other blocks is
+ * covered by {@link Bundle#invalidateEncodedForm}.
+ */
+class EncodedBlock {
+
+    private final int number;
+    private final long procV7flags;
+    private final BlockHeader.CrcFieldType crcType;
+    private final Blob data;
+    private final long dataSize;
+    private final ByteBuffer head;
+    private final ByteBuffer tail;
+
+    private EncodedBlock(CanonicalBlock block, Blob data, ByteBuffer head, ByteBuffer tail) {
+        this.number = block.number;
+        this.procV7flags = block.procV7flags;
+        this.crcType = block.crcType;
+        this.data = data;
+        this.dataSize = (data == null) ? 0 : data.size();
+        this.head = head;
+        this.tail = tail;
+    }
+
+    private EncodedBlock(ByteBuffer head) {
+        this.number = 0;
+        this.procV7flags = 0;
+        this.crcType = null;
+        this.data = null;
+        this.dataSize = 0;
+        this.head = head;
+        this.tail = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * encoded form of the primary block of a bundle.
+     *
+     * @param bundle to serialize
+     * @return the encoded primary block
+     */
+    static Flowable<ByteBuffer> primary(Bundle bundle) {
+        EncodedBlock encoded = (EncodedBlock) bundle.getEncodedForm(bundle);
+        if (encoded == null) {
+            encoded = new EncodedBlock(collect(PrimaryBlockSerializer.encode(bundle).observe()));
+            bundle.setEncodedForm(bundle, encoded);
+        }
+        return encoded.observe();
+    }
+
+    /**
+     * encoded form of a canonical block of a bundle. The age block is encoded at every
+     * transmission since its value is the time spent in this node.
+     *
+     * @param bundle  to serialize
+     * @param block   canonical block of this bundle
+     * @param factory to create a block-specific data serializer
+     * @return the encoded canonical block
+     */
+    static Flowable<ByteBuffer> canonical(Bundle bundle,
+                                          CanonicalBlock block,
+                                          BlockDataSerializerFactory factory) {
+        boolean encrypted = block.getV7Flag(BlockHeader.BlockV7Flags.BLOCK_IS_ENCRYPTED);
+        if (!encrypted && block.type == AgeBlock.AGE_BLOCK_TYPE) {
+            return CanonicalBlockSerializer.encode(block, factory).observe();
+        }
+
+        EncodedBlock encoded = (EncodedBlock) bundle.getEncodedForm(block);
+        if (encoded == null || !encoded.matches(block)) {
+            if (encrypted || block.type == PayloadBlock.PAYLOAD_BLOCK_TYPE) {
+                encoded = encodeBlob((BlockBlob) block);
+            } else {
+                encoded = new EncodedBlock(block, null,
+                        collect(CanonicalBlockSerializer.encode(block, factory).observe()),
+                        ByteBuffer.allocate(0));
+            }
+            bundle.setEncodedForm(block, encoded);
+        }
+        return encoded.observe();
+    }
+
+    /* the blob is read once to compute the crc, if any */
+    private static EncodedBlock encodeBlob(BlockBlob block) {
+        ByteBuffer head = collect(BlockHeaderSerializer.encode(block)
+                .cbor_start_byte_string(block.data.size())
+                .observe());
+        ByteBuffer tail = collect(CanonicalBlockSerializer.encodeCrc(
+                Flowable.just(head.duplicate())
+                        .concatWith(block.data.observe(BlockBlobSerializer.CHUNK_SIZE)),
+                block.crcType).observe());
+        return new EncodedBlock(block, block.data, head, tail);
+    }
+
+    private boolean matches(CanonicalBlock block) {
+        return number == block.number
+                && procV7flags == block.procV7flags
+                && crcType == block.crcType
+                && (data == null
+                || (data == ((BlockBlob) block).data && dataSize == data.size()));
+    }
+
+    private Flowable<ByteBuffer> observe() {
+        Flowable<ByteBuffer> encoded = Flowable.just(head.duplicate());
+        if (data != null) {
+            encoded = encoded.concatWith(data.observe(BlockBlobSerializer.CHUNK_SIZE));
+        }
+        if (tail.hasRemaining()) {
+            encoded = encoded.concatWith(Flowable.just(tail.duplicate()));
+        }
+        return encoded;
+    }
+
+    private static ByteBuffer collect(Flowable<ByteBuffer> source) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        source.blockingForEach(buffer -> {
+            byte[] chunk = new byte[buffer.remaining()];
+            buffer.get(chunk);
+            out.write(chunk, 0, chunk.length);
+        });
+        return ByteBuffer.wrap(out.toByteArray()).asReadOnlyBuffer();
+    }
+}
@@ -21,4 +21,14 @@ public class FlowLabelBlockSerializer {
         return CBOR.encoder();
     }
 
+    /**
+     * size of a serialized {@link FlowLabelBlock}.
+     *
+     * @param block to serialize.
+     * @return size in bytes of the Cbor-encoded FlowLabelBlock.
+     */
+    static long encodedSize(FlowLabelBlock block) {
+        return 0;
+    }
+
 }
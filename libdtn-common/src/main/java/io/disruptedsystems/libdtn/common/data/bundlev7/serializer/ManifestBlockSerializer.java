@@ -21,4 +21,14 @@ public class ManifestBlockSerializer {
         return CBOR.encoder();
     }
 
+    /**
+     * size of a serialized {@link ManifestBlock}.
+     *
+     * @param block to serialize.
+     * @return size in bytes of the Cbor-encoded ManifestBlock.
+     */
+    static long encodedSize(ManifestBlock block) {
+        return 0;
+    }
+
 }
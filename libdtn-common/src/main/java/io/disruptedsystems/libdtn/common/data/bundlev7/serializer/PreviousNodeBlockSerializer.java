@@ -20,4 +20,14 @@ public class PreviousNodeBlockSerializer {
         return EidSerializer.encode(block.previous);
     }
 
+    /**
+     * size of a serialized {@link PreviousNodeBlock}.
+     *
+     * @param block to serialize.
+     * @return size in bytes of the Cbor-encoded PreviousNodeBlock.
+     */
+    static long encodedSize(PreviousNodeBlock block) {
+        return EidSerializer.encodedSize(block.previous);
+    }
+
 }
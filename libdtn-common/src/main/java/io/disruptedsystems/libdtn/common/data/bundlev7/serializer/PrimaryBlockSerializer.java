@@ -42,6 +42,32 @@ public class PrimaryBlockSerializer {
         return enc.merge(encodeCrc(enc.observe(1000), block.getCrcType()));
     }
 
+    /**
+     * size of a serialized {@link PrimaryBlock}, computed without serializing it.
+     *
+     * @param block to serialize
+     * @return size in bytes of the Cbor-encoded PrimaryBlock.
+     */
+    static long encodedSize(PrimaryBlock block) {
+        long size = CborSize.array(getItemCount(block))
+                + CborSize.integer(BundleV7Serializer.BUNDLE_VERSION_7)
+                + CborSize.integer(block.getProcV7Flags())
+                + CborSize.integer(block.getCrcType().ordinal())
+                + EidSerializer.encodedSize(block.getDestination())
+                + EidSerializer.encodedSize(block.getSource())
+                + EidSerializer.encodedSize(block.getReportto())
+                + CborSize.array(2)
+                + CborSize.integer(block.getCreationTimestamp())
+                + CborSize.integer(block.getSequenceNumber())
+                + CborSize.integer(block.getLifetime());
+
+        if (block.getV7Flag(PrimaryBlock.BundleV7Flags.FRAGMENT)) {
+            size += CborSize.integer(block.getFragmentOffset());
+        }
+
+        return size + crcSize(block.getCrcType());
+    }
+
     static int getItemCount(PrimaryBlock block) {
         int length = 8;
         if (block.getCrcType() != PrimaryBlock.CrcFieldType.NO_CRC) {
@@ -53,6 +79,17 @@ public class PrimaryBlockSerializer {
         return length;
     }
 
+    // size of the encoded Crc
+    static int crcSize(PrimaryBlock.CrcFieldType type) {
+        if (type == PrimaryBlock.CrcFieldType.CRC_16) {
+            return 3;
+        }
+        if (type == PrimaryBlock.CrcFieldType.CRC_32) {
+            return 5;
+        }
+        return 0;
+    }
+
     // encode PrimaryBlock Crc
     static CborEncoder encodeCrc(Flowable<ByteBuffer> source, PrimaryBlock.CrcFieldType type) {
         if (type == PrimaryBlock.CrcFieldType.CRC_16) {
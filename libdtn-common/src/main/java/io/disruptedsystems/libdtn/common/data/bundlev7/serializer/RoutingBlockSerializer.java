@@ -20,4 +20,14 @@ public class RoutingBlockSerializer {
         return CBOR.encoder();
     }
 
+    /**
+     * size of a serialized {@link RoutingBlock}.
+     *
+     * @param block to serialize.
+     * @return size in bytes of the Cbor-encoded RoutingBlock.
+     */
+    static long encodedSize(RoutingBlock block) {
+        return 0;
+    }
+
 }
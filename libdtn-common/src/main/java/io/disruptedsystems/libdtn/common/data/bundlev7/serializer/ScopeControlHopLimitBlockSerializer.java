@@ -24,4 +24,16 @@ public class ScopeControlHopLimitBlockSerializer {
                 .cbor_encode_int(block.limit);
     }
 
+    /**
+     * size of a serialized {@link ScopeControlHopLimitBlock}.
+     *
+     * @param block to serialize.
+     * @return size in bytes of the Cbor-encoded ScopeControlHopLimitBlock.
+     */
+    static long encodedSize(ScopeControlHopLimitBlock block) {
+        return CborSize.array(2)
+                + CborSize.integer(block.count)
+                + CborSize.integer(block.limit);
+    }
+
 }
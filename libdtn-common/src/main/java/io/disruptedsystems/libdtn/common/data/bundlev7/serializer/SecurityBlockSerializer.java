@@ -50,4 +50,36 @@ public class SecurityBlockSerializer {
         return enc;
     }
 
+    /**
+     * size of a serialized {@link AbstractSecurityBlock}.
+     *
+     * @param block to serialize.
+     * @return size in bytes of the Cbor-encoded AbstractSecurityBlock.
+     */
+    static long encodedSize(AbstractSecurityBlock block) {
+        long size = CborSize.array(5)
+                + CborSize.array(block.securityTargets.size());
+
+        for (Integer i : block.securityTargets) {
+            size += CborSize.integer(i);
+        }
+
+        size += CborSize.integer(block.getCipherSuiteId())
+                + CborSize.integer(block.securityBlockFlag);
+
+        if (block.getSaFlag(SecurityBlock.SecurityBlockFlags.SECURITY_SOURCE_PRESENT)) {
+            size += EidSerializer.encodedSize(block.securitySource);
+        }
+
+        size += CborSize.array(block.securityResults.size());
+        for (List<SecurityResult> lsr : block.securityResults) {
+            size += CborSize.array(lsr.size());
+            for (SecurityResult sr : lsr) {
+                size += sr.getValueEncodedSize();
+            }
+        }
+
+        return size;
+    }
+
 }
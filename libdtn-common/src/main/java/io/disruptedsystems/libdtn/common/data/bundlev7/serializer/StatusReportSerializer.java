@@ -49,4 +49,30 @@ public class StatusReportSerializer {
         return enc;
     }
 
+    /**
+     * size of a serialized {@link StatusReport}.
+     *
+     * @param report to serialize.
+     * @return size in bytes of the Cbor-encoded StatusReport.
+     */
+    static long encodedSize(StatusReport report) {
+        long size = CborSize.array(report.subjectBundleIsFragment ? 6 : 4)
+                + CborSize.array(StatusReport.StatusAssertion.values().length);
+        for (StatusReport.StatusAssertion assertion : StatusReport.StatusAssertion.values()) {
+            if (report.statusInformation.containsKey(assertion)) {
+                size += CborSize.array(2)
+                        + CborSize.BOOLEAN
+                        + CborSize.integer(report.statusInformation.get(assertion));
+            } else {
+                size += CborSize.array(1)
+                        + CborSize.BOOLEAN;
+            }
+        }
+
+        return size
+                + CborSize.integer(report.code.ordinal())
+                + EidSerializer.encodedSize(report.source)
+                + CborSize.integer(report.creationTimestamp);
+    }
+
 }
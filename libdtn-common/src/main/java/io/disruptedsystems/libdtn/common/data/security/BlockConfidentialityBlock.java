@@ -14,6 +14,7 @@ import io.disruptedsystems.libdtn.common.data.blob.WritableBlob;
 import io.disruptedsystems.libdtn.common.data.bundlev7.parser.CanonicalBlockItem;
 import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.BlockDataSerializerFactory;
 import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.BlockHeaderSerializer;
+import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.CborSize;
 
 import java.nio.ByteBuffer;
 import java.security.NoSuchAlgorithmException;
@@ -121,9 +122,7 @@ public class BlockConfidentialityBlock extends AbstractSecurityBlock {
                     // start byte string flag.
                     long blockDataSize = ((BlockBlob) block).data.size();
                     CborEncoder enc = CBOR.encoder().cbor_start_byte_string(blockDataSize);
-                    int headersize = enc.observe().map(ByteBuffer::remaining)
-                            .reduce(0, (a, b) -> a + b).blockingGet();
-                    ByteBuffer cborHeader = ByteBuffer.allocate(headersize);
+                    ByteBuffer cborHeader = ByteBuffer.allocate(CborSize.head(blockDataSize));
                     enc.observe().subscribe(cborHeader::put);
                     cborHeader.flip();
 
@@ -148,17 +147,14 @@ public class BlockConfidentialityBlock extends AbstractSecurityBlock {
 
                     // prepare block serializer
                     CborEncoder encoder;
+                    int encodedSize;
                     try {
                         encoder = serializerFactory.create(block);
+                        encodedSize = (int) serializerFactory.encodedSize(block);
                     } catch (BlockDataSerializerFactory.UnknownBlockTypeException ubte) {
                         throw new SecurityOperationException("target block serializer not found");
                     }
 
-                    int encodedSize = encoder.observe(1024)
-                            .map(ByteBuffer::remaining)
-                            .reduce(0, (a, b) -> a + b)
-                            .blockingGet();
-
                     // malloc space for the new encrypted block
                     encryptedBlock.data = new UntrackedByteBufferBlob(
                             cipher.getOutputSize(encodedSize) + cipher.getBlockSize());
@@ -1,5 +1,6 @@
 package io.disruptedsystems.libdtn.common.data.security;
 
+import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.CborSize;
 import io.marlinski.libcbor.CBOR;
 import io.marlinski.libcbor.CborEncoder;
 
@@ -37,4 +38,9 @@ public class IntegrityResult implements SecurityResult {
         return CBOR.encoder()
                 .cbor_encode_byte_string(getChecksum());
     }
+
+    @Override
+    public long getValueEncodedSize() {
+        return CborSize.byteString(getChecksum().length);
+    }
 }
@@ -14,4 +14,6 @@ public interface SecurityResult {
 
     CborEncoder getValueEncoder();
 
+    long getValueEncodedSize();
+
 }
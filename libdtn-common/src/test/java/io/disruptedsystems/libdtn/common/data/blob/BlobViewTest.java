@@ -0,0 +1,179 @@
+package io.disruptedsystems.libdtn.common.data.blob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test class for the SliceBlob, the CompositeBlob and the MappedBlob.
+ */
+public class BlobViewTest {
+
+    private File dir = new File(System.getProperty("path", System.getProperty("java.io.tmpdir")),
+            "blobviewtest");
+
+    private static byte[] read(Blob blob, int chunkSize) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        blob.observe(chunkSize).blockingForEach(buffer -> {
+            byte[] chunk = new byte[buffer.remaining()];
+            buffer.get(chunk);
+            out.write(chunk, 0, chunk.length);
+        });
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testSliceBlob() throws Exception {
+        System.out.println("[+] Blob: slice");
+        byte[] data = new byte[200000];
+        new Random(42).nextBytes(data);
+        UntrackedByteBufferBlob memory = new UntrackedByteBufferBlob(data);
+
+        System.out.println("[.] a slice reads its region only");
+        SliceBlob slice = new SliceBlob(memory, 1000, 150000);
+        assertEquals(150000, slice.size());
+        assertEquals(2, memory.refCount());
+        assertArrayEquals(Arrays.copyOfRange(data, 1000, 151000), read(slice, 2048));
+        assertArrayEquals(Arrays.copyOfRange(data, 1000, 151000), read(slice, 3000));
+
+        System.out.println("[.] a slice of a slice refers to the source");
+        SliceBlob inner = new SliceBlob(slice, 10, 20);
+        assertArrayEquals(Arrays.copyOfRange(data, 1010, 1030), read(inner, 7));
+        assertEquals(3, memory.refCount());
+
+        System.out.println("[.] a slice of a file reads the region directly");
+        dir.mkdirs();
+        File file = new File(dir, "slice.blob");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        FileBlob fblob = new FileBlob(file);
+        assertArrayEquals(Arrays.copyOfRange(data, 5, 100005),
+                read(new SliceBlob(fblob, 5, 100000), 65536));
+        assertArrayEquals(Arrays.copyOfRange(data, 199990, 200000),
+                read(new SliceBlob(fblob, 199990, 10), 65536));
+        file.delete();
+
+        System.out.println("[.] a slice is read-only and bounded");
+        try {
+            slice.getWritableBlob().write((byte) 0);
+            fail();
+        } catch (IOException io) {
+            /* expected */
+        }
+        try {
+            new SliceBlob(memory, 100000, 100001);
+            fail();
+        } catch (IllegalArgumentException iae) {
+            /* expected */
+        }
+        SliceBlob empty = new SliceBlob(memory, 200000, 0);
+        assertEquals(0, empty.observe().count().blockingGet().longValue());
+        empty.release();
+
+        System.out.println("[.] releasing the slices releases the source");
+        inner.release();
+        slice.release();
+        assertEquals(1, memory.refCount());
+    }
+
+    @Test
+    public void testCompositeBlob() throws Exception {
+        System.out.println("[+] Blob: composite");
+        UntrackedByteBufferBlob head = new UntrackedByteBufferBlob("head-".getBytes());
+        UntrackedByteBufferBlob body = new UntrackedByteBufferBlob("body-".getBytes());
+        UntrackedByteBufferBlob tail = new UntrackedByteBufferBlob("tail".getBytes());
+
+        System.out.println("[.] parts are read in order");
+        CompositeBlob composite = new CompositeBlob(Arrays.asList(head, body, tail));
+        assertEquals(14, composite.size());
+        assertArrayEquals("head-body-tail".getBytes(), read(composite, 2048));
+        assertEquals(2, body.refCount());
+
+        System.out.println("[.] a composite can be sliced across its parts");
+        SliceBlob slice = new SliceBlob(composite, 3, 8);
+        assertArrayEquals("d-body-t".getBytes(), read(slice, 2048));
+
+        System.out.println("[.] releasing the composite releases its parts");
+        slice.release();
+        assertTrue(composite.release());
+        assertEquals(1, head.refCount());
+        assertEquals(1, body.refCount());
+        assertEquals(1, tail.refCount());
+    }
+
+    @Test
+    public void testMappedBlob() throws Exception {
+        System.out.println("[+] Blob: mapped");
+        byte[] data = new byte[200000];
+        new Random(42).nextBytes(data);
+        dir.mkdirs();
+        File file = new File(dir, "mapped.blob");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+
+        System.out.println("[.] slices of a mapping are kept as views");
+        MappedBlob blob = new MappedBlob(data.length + 3);
+        WritableBlob wblob = blob.getWritableBlob();
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, data.length);
+            mapped.limit(150000);
+            assertEquals(150000, wblob.write(mapped));
+            assertFalse(mapped.hasRemaining());
+            mapped.limit(data.length);
+            assertEquals(50000, wblob.write(mapped.slice()));
+        }
+
+        System.out.println("[.] other buffers are copied");
+        ByteBuffer heap = ByteBuffer.wrap("abc".getBytes());
+        wblob.write(heap);
+        heap.put(0, (byte) 'z');
+        wblob.close();
+        assertEquals(data.length + 3, blob.size());
+        byte[] expected = Arrays.copyOf(data, data.length + 3);
+        System.arraycopy("abc".getBytes(), 0, expected, data.length, 3);
+        assertArrayEquals(expected, read(blob, 2048));
+        assertArrayEquals(expected, read(blob, 65536));
+        blob.observe(65536).blockingForEach(buffer -> assertTrue(buffer.remaining() <= 65536));
+
+        System.out.println("[.] a mapped blob is bounded");
+        try {
+            wblob.write((byte) 0);
+            fail();
+        } catch (WritableBlob.BlobOverflowException boe) {
+            /* expected */
+        }
+
+        System.out.println("[.] the views outlive the file");
+        file.delete();
+        assertArrayEquals(expected, read(blob, 4096));
+
+        System.out.println("[.] mapping a function copies the data");
+        blob.map(
+                () -> ByteBuffer.wrap("<".getBytes()),
+                buffer -> buffer,
+                () -> ByteBuffer.wrap(">".getBytes()));
+        assertEquals(data.length + 5, blob.size());
+        byte[] framed = read(blob, 2048);
+        assertEquals('<', framed[0]);
+        assertEquals('>', framed[framed.length - 1]);
+        assertArrayEquals(expected, Arrays.copyOfRange(framed, 1, framed.length - 1));
+        assertTrue(blob.release());
+    }
+}
@@ -0,0 +1,73 @@
+package io.disruptedsystems.libdtn.common.data.blob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test class for the read modes of the FileBlob.
+ */
+public class FileBlobTest {
+
+    private File dir = new File(System.getProperty("path", System.getProperty("java.io.tmpdir")),
+            "fileblobtest");
+
+    private FileBlob create(String name, byte[] data) throws Exception {
+        dir.mkdirs();
+        File file = new File(dir, name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        return new FileBlob(file);
+    }
+
+    private static void append(ByteArrayOutputStream out, ByteBuffer buffer) {
+        byte[] chunk = new byte[buffer.remaining()];
+        buffer.get(chunk);
+        out.write(chunk, 0, chunk.length);
+    }
+
+    @Test
+    public void testReadModes() throws Exception {
+        System.out.println("[+] FileBlob: read modes");
+        byte[] data = new byte[300001];
+        new Random(42).nextBytes(data);
+        FileBlob blob = create("large.blob", data);
+
+        System.out.println("[.] mapped reads emit read-only slices");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        blob.observe(65536).blockingForEach(buffer -> {
+            assertTrue(buffer.isReadOnly());
+            assertTrue(buffer.remaining() <= 65536);
+            append(out, buffer);
+        });
+        assertArrayEquals(data, out.toByteArray());
+
+        System.out.println("[.] shared reads reuse the caller buffer");
+        ByteBuffer shared = ByteBuffer.allocateDirect(32768);
+        ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+        blob.observeShared(shared).subscribe(buffer -> {
+            assertSame(shared, buffer);
+            append(out2, buffer);
+        });
+        assertArrayEquals(data, out2.toByteArray());
+        new File(blob.getFilePath()).delete();
+
+        System.out.println("[.] small files are copied");
+        FileBlob small = create("small.blob", "hello".getBytes());
+        ByteBuffer buffer = small.observe(65536).blockingFirst();
+        assertFalse(buffer.isReadOnly());
+        assertEquals(5, buffer.remaining());
+        new File(small.getFilePath()).delete();
+    }
+}
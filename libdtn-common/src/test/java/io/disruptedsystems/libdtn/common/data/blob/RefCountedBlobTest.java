@@ -0,0 +1,94 @@
+package io.disruptedsystems.libdtn.common.data.blob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.disruptedsystems.libdtn.common.data.Bundle;
+import io.disruptedsystems.libdtn.common.data.PayloadBlock;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test class for the reference counting of the Blob.
+ */
+public class RefCountedBlobTest {
+
+    @Test
+    public void testRetainRelease() throws Exception {
+        System.out.println("[+] Blob: retain and release");
+        VolatileMemory memory = new VolatileMemory(100000);
+        ByteBufferBlob blob = new ByteBufferBlob(memory, "hello".getBytes());
+        assertEquals(1, blob.refCount());
+
+        System.out.println("[.] memory is freed on the last release only");
+        blob.retain();
+        assertEquals(2, blob.refCount());
+        assertFalse(blob.release());
+        assertEquals(5, blob.size());
+        assertEquals(VolatileMemory.MIN_SLAB_SIZE, memory.used());
+        assertTrue(blob.release());
+        assertEquals(0, memory.used());
+        assertFalse(blob.release());
+
+        System.out.println("[.] a deallocated blob cannot be retained");
+        try {
+            blob.retain();
+            fail();
+        } catch (IllegalStateException ise) {
+            /* expected */
+        }
+
+        System.out.println("[.] clearing a block keeps a blob that is shared");
+        ByteBufferBlob shared = new ByteBufferBlob(memory, "world".getBytes());
+        shared.retain();
+        new PayloadBlock(shared).clearBlock();
+        assertEquals(1, shared.refCount());
+        assertEquals(5, shared.size());
+        new PayloadBlock(shared).clearBlock();
+        assertEquals(0, shared.refCount());
+        assertEquals(0, memory.used());
+
+        System.out.println("[.] blobs retained from a bundle outlive clearing the bundle");
+        Bundle bundle = new Bundle();
+        bundle.addBlock(new PayloadBlock(new ByteBufferBlob(memory, "hello".getBytes())));
+        List<Blob> retained = bundle.retainBlobs();
+        assertEquals(1, retained.size());
+        bundle.clearBundle();
+        assertEquals(1, retained.get(0).refCount());
+        assertEquals(5, retained.get(0).size());
+        retained.forEach(Blob::release);
+        assertEquals(0, memory.used());
+
+        System.out.println("[.] releasing the last reference on a FileBlob keeps the file");
+        File file = File.createTempFile("refcount", ".blob");
+        file.deleteOnExit();
+        new PayloadBlock(new FileBlob(file)).clearBlock();
+        assertTrue(file.exists());
+        file.delete();
+    }
+
+    @Test
+    public void testLeakDetector() throws Exception {
+        System.out.println("[+] Blob: leak detector");
+        VolatileMemory memory = new VolatileMemory(100000);
+        BlobLeakDetector.setEnabled(true);
+        try {
+            long before = BlobLeakDetector.leaks();
+            new ByteBufferBlob(memory, 100).release();
+            new ByteBufferBlob(memory, 100);
+            for (int i = 0; i < 50 && BlobLeakDetector.leaks() == before; i++) {
+                System.gc();
+                Thread.sleep(20);
+                new NullBlob().release();
+            }
+            assertEquals(before + 1, BlobLeakDetector.leaks());
+        } finally {
+            BlobLeakDetector.setEnabled(false);
+        }
+    }
+}
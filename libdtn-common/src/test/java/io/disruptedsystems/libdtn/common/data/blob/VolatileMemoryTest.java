@@ -0,0 +1,90 @@
+package io.disruptedsystems.libdtn.common.data.blob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test class for the VolatileMemory pool.
+ */
+public class VolatileMemoryTest {
+
+    @Test
+    public void testSlabs() throws Exception {
+        System.out.println("[+] VolatileMemory: size classes and reuse");
+        VolatileMemory memory = new VolatileMemory(1000000);
+
+        System.out.println("[.] requests are rounded up to their size class");
+        ByteBuffer small = memory.malloc(100);
+        assertEquals(VolatileMemory.MIN_SLAB_SIZE, small.capacity());
+        assertEquals(100, small.limit());
+        ByteBuffer medium = memory.malloc(5000);
+        assertEquals(8192, medium.capacity());
+        assertEquals(4096 + 8192, memory.used());
+
+        System.out.println("[.] released slabs are reused");
+        memory.free(medium);
+        assertEquals(4096, memory.used());
+        assertEquals(8192, memory.idle());
+        assertSame(medium, memory.malloc(6000));
+        assertEquals(0, memory.idle());
+
+        System.out.println("[.] limit is enforced");
+        try {
+            memory.malloc(990000);
+            fail();
+        } catch (IOException io) {
+            /* expected */
+        }
+
+        System.out.println("[.] blobs give their buffer back when released");
+        ByteBufferBlob blob = new ByteBufferBlob(memory, "hello".getBytes());
+        assertEquals(5, blob.size());
+        long used = memory.used();
+        blob.release();
+        blob.release();
+        assertEquals(0, blob.size());
+        assertEquals(used - VolatileMemory.MIN_SLAB_SIZE, memory.used());
+    }
+
+    @Test
+    public void testConcurrency() throws Exception {
+        System.out.println("[+] VolatileMemory: concurrent accounting");
+        VolatileMemory memory = new VolatileMemory(64 * 4096);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            pool.execute(() -> {
+                try {
+                    for (int i = 0; i < 1000; i++) {
+                        List<ByteBuffer> held = new ArrayList<>();
+                        for (int j = 0; j < 8; j++) {
+                            held.add(memory.malloc(1 + (i * j) % 4096));
+                        }
+                        held.forEach(memory::free);
+                    }
+                } catch (IOException io) {
+                    fail();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdown();
+        assertEquals(0, memory.used());
+        assertTrue(memory.idle() <= 64 * 4096 / 4);
+    }
+}
@@ -0,0 +1,141 @@
+package io.disruptedsystems.libdtn.common.data.blob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test class for the bulk write paths of the WritableBlob.
+ */
+public class WritableBlobTest {
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] read(Blob blob) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        blob.observe().blockingForEach(buffer -> {
+            byte[] chunk = new byte[buffer.remaining()];
+            buffer.get(chunk);
+            out.write(chunk, 0, chunk.length);
+        });
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testGrowingBuffer() throws Exception {
+        System.out.println("[+] WritableBlob: VersatileGrowingBuffer");
+        BaseBlobFactory factory = new BaseBlobFactory().enableVolatile(10000000);
+        byte[] data = random(250000);
+
+        System.out.println("[.] a buffer spanning several chunks is written in one call");
+        VersatileGrowingBuffer blob = new VersatileGrowingBuffer(factory, 4096);
+        WritableBlob wblob = blob.getWritableBlob();
+        wblob.write(data[0]);
+        assertEquals(data.length - 1, wblob.write(ByteBuffer.wrap(data, 1, data.length - 1)));
+        wblob.close();
+        assertEquals(data.length, blob.size());
+        assertArrayEquals(data, read(blob));
+
+        System.out.println("[.] a stream spanning several chunks is written in one call");
+        blob = new VersatileGrowingBuffer(factory, 4096);
+        wblob = blob.getWritableBlob();
+        assertEquals(100000, wblob.write(new ByteArrayInputStream(data), 100000));
+        wblob.close();
+        byte[] expected = new byte[100000];
+        System.arraycopy(data, 0, expected, 0, expected.length);
+        assertArrayEquals(expected, read(blob));
+
+        System.out.println("[.] chunks grow geometrically");
+        VolatileMemory memory = factory.getVolatileMemory();
+        blob.getWritableBlob().clear();
+        assertEquals(0, blob.size());
+        blob.release();
+        long used = memory.used();
+        blob = new VersatileGrowingBuffer(factory, 4096);
+        wblob = blob.getWritableBlob();
+        wblob.write(data);
+        wblob.close();
+        assertEquals(data.length, blob.size());
+        /* 4096 + 8192 + ... + 131072 */
+        assertEquals(258048, memory.used() - used);
+        assertArrayEquals(data, read(blob));
+        blob.release();
+    }
+
+    @Test
+    public void testGrowingBufferIntoFile() throws Exception {
+        System.out.println("[+] WritableBlob: VersatileGrowingBuffer into a file");
+        File dir = new File(System.getProperty("path", System.getProperty("java.io.tmpdir")),
+                "growingblobtest");
+        dir.mkdirs();
+        BaseBlobFactory factory = new BaseBlobFactory()
+                .enableVolatile(10000000)
+                .enablePersistent(dir.getAbsolutePath() + "/")
+                .setGrowingVolatileLimit(50000);
+        byte[] data = random(300000);
+
+        System.out.println("[.] the buffer switches to a file past the volatile limit");
+        Blob blob = factory.createBlob(-1);
+        WritableBlob wblob = blob.getWritableBlob();
+        for (int i = 0; i < data.length; i += 10000) {
+            wblob.write(ByteBuffer.wrap(data, i, 10000));
+        }
+        wblob.close();
+        assertEquals(data.length, blob.size());
+        assertArrayEquals(data, read(blob));
+        File[] files = dir.listFiles();
+        assertEquals(1, files.length);
+        assertEquals(data.length - 60000, files[0].length());
+        assertTrue(factory.getVolatileMemory().used() < 100000);
+        blob.release();
+        files[0].delete();
+    }
+
+    @Test
+    public void testFileBlob() throws Exception {
+        System.out.println("[+] WritableBlob: FileBlob");
+        File dir = new File(System.getProperty("path", System.getProperty("java.io.tmpdir")),
+                "writableblobtest");
+        dir.mkdirs();
+        byte[] data = random(300000);
+
+        System.out.println("[.] small and large buffers are appended in order");
+        File file = new File(dir, "bulk.blob");
+        file.delete();
+        file.createNewFile();
+        FileBlob blob = new FileBlob(file);
+        WritableBlob wblob = blob.getWritableBlob();
+        wblob.write(data[0]);
+        wblob.write(ByteBuffer.wrap(data, 1, 99));
+        wblob.write(ByteBuffer.wrap(data, 100, 199900));
+        wblob.write(new ByteArrayInputStream(data, 200000, 50000), 50000);
+
+        System.out.println("[.] a file stream is transferred channel to channel");
+        File source = new File(dir, "source.blob");
+        try (FileOutputStream out = new FileOutputStream(source)) {
+            out.write(data, 250000, 50000);
+        }
+        try (FileInputStream in = new FileInputStream(source)) {
+            assertEquals(50000, wblob.write(in));
+            assertEquals(-1, in.read());
+        }
+        wblob.close();
+        assertArrayEquals(data, read(blob));
+        file.delete();
+        source.delete();
+    }
+}
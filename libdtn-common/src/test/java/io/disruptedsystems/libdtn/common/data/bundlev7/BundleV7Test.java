@@ -1,5 +1,6 @@
 package io.disruptedsystems.libdtn.common.data.bundlev7;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
@@ -21,10 +22,16 @@ import io.disruptedsystems.libdtn.common.data.blob.BaseBlobFactory;
 import io.disruptedsystems.libdtn.common.data.bundlev7.parser.BundleV7Item;
 import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.BaseBlockDataSerializerFactory;
 import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.BundleV7Serializer;
+import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.CborSize;
 import io.disruptedsystems.libdtn.common.data.eid.DtnEid;
 import io.disruptedsystems.libdtn.common.data.eid.EidIpn;
 import io.disruptedsystems.libdtn.common.utils.NullLogger;
 
+import io.reactivex.rxjava3.core.Flowable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
 import org.junit.Test;
 
 /**
@@ -217,4 +224,91 @@ public class BundleV7Test {
             assertEquals(testPayload, payload[0]);
         }
     }
+
+    @Test
+    public void testEncodedSize() {
+        System.out.println("[+] bundle: testing encoded size with 7 test bundles");
+
+        Bundle[] bundles = {
+                testBundle0(),
+                testBundle1(),
+                testBundle2(),
+                testBundle3(),
+                testBundle4(),
+                testBundle5(),
+                testBundle6()
+        };
+
+        BaseBlockDataSerializerFactory factory = new BaseBlockDataSerializerFactory();
+        for (Bundle bundle : bundles) {
+            long encoded = CborSize.of(BundleV7Serializer.encode(bundle, factory));
+            long computed = BundleV7Serializer.encodedSize(bundle, factory);
+            assertEquals(encoded, computed);
+            bundle.clearBundle();
+        }
+    }
+
+    private static byte[] bytes(Flowable<ByteBuffer> encoded) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoded.blockingForEach(buffer -> {
+            byte[] chunk = new byte[buffer.remaining()];
+            buffer.get(chunk);
+            out.write(chunk, 0, chunk.length);
+        });
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testCachedEncoding() {
+        System.out.println("[+] bundle: testing cached encoding");
+        BaseBlockDataSerializerFactory factory = new BaseBlockDataSerializerFactory();
+
+        Bundle bundle = testBundle1();
+        bundle.setCrcType(PrimaryBlock.CrcFieldType.CRC_32);
+        bundle.getPayloadBlock().crcType = BlockHeader.CrcFieldType.CRC_16;
+        ScopeControlHopLimitBlock scope = new ScopeControlHopLimitBlock();
+        scope.crcType = BlockHeader.CrcFieldType.CRC_32;
+        bundle.addBlock(scope);
+        bundle.addBlock(new PreviousNodeBlock(DtnEid.generate()));
+
+        System.out.println("[.] the cached encoding is the same as the encoding");
+        byte[] first = bytes(BundleV7Serializer.encodeCached(bundle, factory));
+        assertArrayEquals(bytes(BundleV7Serializer.encode(bundle, factory).observe()), first);
+        assertArrayEquals(first, bytes(BundleV7Serializer.encodeCached(bundle, factory)));
+
+        System.out.println("[.] a modified block is encoded again");
+        scope.increment(1);
+        bundle.invalidateEncodedForm(scope);
+        bundle.setLifetime(bundle.getLifetime() + 1000);
+        byte[] second = bytes(BundleV7Serializer.encodeCached(bundle, factory));
+        assertArrayEquals(bytes(BundleV7Serializer.encode(bundle, factory).observe()), second);
+
+        System.out.println("[.] an added block is encoded");
+        bundle.delBlock(scope);
+        bundle.addBlock(new ScopeControlHopLimitBlock());
+        assertArrayEquals(bytes(BundleV7Serializer.encode(bundle, factory).observe()),
+                bytes(BundleV7Serializer.encodeCached(bundle, factory)));
+        bundle.clearBundle();
+    }
+
+    @Test
+    public void testAgeEncodedSize() {
+        System.out.println("[+] bundle: testing encoded size of an ageing bundle");
+        BaseBlockDataSerializerFactory factory = new BaseBlockDataSerializerFactory();
+        Bundle bundle = testBundle1();
+        AgeBlock age = new AgeBlock();
+        age.age = 23;
+        bundle.addBlock(age);
+
+        System.out.println("[.] computing the size does not stop the age");
+        BundleV7Serializer.stopAge(bundle);
+        long timeEnd = age.timeEnd;
+        long size = BundleV7Serializer.encodedSize(bundle, factory);
+        assertEquals(timeEnd, age.timeEnd);
+
+        System.out.println("[.] the cached encoding has the size of the stopped age");
+        assertEquals(size, bytes(BundleV7Serializer.encodeCached(bundle, factory)).length);
+        assertEquals(timeEnd, age.timeEnd);
+        bundle.clearBundle();
+    }
 }
@@ -107,10 +107,39 @@ public interface ConfigurationApi {
         COMPONENT_ENABLE_SMART_ROUTING("component_enable_smart_routing"),
         STATIC_ROUTE_CONFIGURATION("static_routes_configuration"),
         COMPONENT_ENABLE_STORAGE("component_enable_storage"),
+        STORAGE_BACKEND("storage_backend"),
         COMPONENT_ENABLE_VOLATILE_STORAGE("component_enable_volatile_storage"),
         VOLATILE_BLOB_STORAGE_MAX_CAPACITY("volatile_blob_storage_max_capacity"),
+        VOLATILE_STORAGE_HIGH_WATERMARK("volatile_storage_high_watermark"),
+        VOLATILE_STORAGE_LOW_WATERMARK("volatile_storage_low_watermark"),
+        BLOB_LEAK_DETECTION("blob_leak_detection"),
         COMPONENT_ENABLE_SIMPLE_STORAGE("component_enable_simple_storage"),
         SIMPLE_STORAGE_PATH("simple_storage_paths"),
+        SIMPLE_STORAGE_SEGMENT_LOG("simple_storage_segment_log"),
+        SIMPLE_STORAGE_SEGMENT_SIZE("simple_storage_segment_size"),
+        SIMPLE_STORAGE_INDEXING_THREADS("simple_storage_indexing_threads"),
+        SIMPLE_STORAGE_DURABILITY("simple_storage_durability"),
+        SIMPLE_STORAGE_GROUP_COMMIT_WINDOW("simple_storage_group_commit_window"),
+        SIMPLE_STORAGE_GROUP_COMMIT_SIZE("simple_storage_group_commit_size"),
+        SIMPLE_STORAGE_QUOTA_BYTES("simple_storage_quota_bytes"),
+        SIMPLE_STORAGE_QUOTA_COUNT("simple_storage_quota_count"),
+        SIMPLE_STORAGE_EVICTION_POLICY("simple_storage_eviction_policy"),
+        SIMPLE_STORAGE_BULK_THRESHOLD("simple_storage_bulk_threshold"),
+        SIMPLE_STORAGE_DEDUPLICATION("simple_storage_deduplication"),
+        SIMPLE_STORAGE_IO_THREADS("simple_storage_io_threads"),
+        SIMPLE_STORAGE_IO_QUEUE_SIZE("simple_storage_io_queue_size"),
+        SIMPLE_STORAGE_IO_DEVICE_THREADS("simple_storage_io_device_threads"),
+        SIMPLE_STORAGE_PLACEMENT("simple_storage_placement"),
+        SIMPLE_STORAGE_SPACE_REFRESH_PERIOD("simple_storage_space_refresh_period"),
+        SIMPLE_STORAGE_COMPRESSION("simple_storage_compression"),
+        SIMPLE_STORAGE_COMPRESSION_MIN_SIZE("simple_storage_compression_min_size"),
+        SIMPLE_STORAGE_PAYLOAD_FILE_THRESHOLD("simple_storage_payload_file_threshold"),
+        SIMPLE_STORAGE_COMPRESSION_PATHS("simple_storage_compression_paths"),
+        SIMPLE_STORAGE_GC_PERIOD("simple_storage_gc_period"),
+        SIMPLE_STORAGE_GC_GRACE("simple_storage_gc_grace"),
+        SIMPLE_STORAGE_GC_RATE("simple_storage_gc_rate"),
+        SIMPLE_STORAGE_GC_QUARANTINE("simple_storage_gc_quarantine"),
+        STORAGE_INDEXED_DISPATCH_RATE("storage_indexed_dispatch_rate"),
         LIMIT_BLOCKSIZE("limit_blocksize"),
         COMPONENT_ENABLE_LOGGING("component_enable_logging"),
         LOG_LEVEL("log_level"),
@@ -3,7 +3,10 @@ package io.disruptedsystems.libdtn.core.api;
 import io.disruptedsystems.libdtn.common.data.Bundle;
 import io.disruptedsystems.libdtn.common.data.BundleId;
 import io.disruptedsystems.libdtn.common.data.blob.BlobFactory;
+import io.disruptedsystems.libdtn.common.data.eid.Eid;
+import io.disruptedsystems.libdtn.core.spi.StorageBackendSpi;
 import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Single;
 
 /**
@@ -13,6 +16,34 @@ import io.reactivex.rxjava3.core.Single;
  */
 public interface StorageApi extends CoreComponentApi {
 
+    /**
+     * Durability of the persistent storage, that is, when a stored bundle is flushed to disk.
+     */
+    enum Durability {
+        NONE,            /* leave it to the operating system */
+        GROUP_COMMIT,    /* flush concurrent stores together within a time/size window */
+        SYNC_PER_BUNDLE  /* flush every bundle before reporting the store */
+    }
+
+    /**
+     * Which bundles are evicted first when the persistent storage runs out of room.
+     */
+    enum EvictionPolicy {
+        NONE,                /* never evict, new bundles are rejected */
+        SOONEST_EXPIRY,      /* bundles that expire first */
+        LOWEST_PRIORITY,     /* bundles with the lowest priority, oldest first */
+        LEAST_RECENTLY_USED, /* bundles that were not pulled from storage for the longest */
+        OLDEST_FIRST         /* bundles with the oldest creation timestamp */
+    }
+
+    /**
+     * How new bundles are spread over the storage paths of the persistent storage.
+     */
+    enum Placement {
+        ORDERED, /* the first path in configuration order that has room */
+        STRIPED  /* round-robin over all the paths, weighted by their free space */
+    }
+
     class StorageException extends Exception {
         public StorageException(String msg) {
             super(msg);
@@ -74,6 +105,15 @@ public interface StorageApi extends CoreComponentApi {
      */
     BlobFactory getBlobFactory();
 
+    /**
+     * Register a persistent storage backend provided by a module. The backend replaces the
+     * default persistent storage if it is the one selected by the configuration, otherwise it
+     * is ignored.
+     *
+     * @param backend persistent storage backend
+     */
+    void registerBackend(StorageBackendSpi backend);
+
     /**
      * count the total number of bundle indexed, whether in persistant or volatile storage.
      *
@@ -89,6 +129,38 @@ public interface StorageApi extends CoreComponentApi {
      */
     boolean contains(BundleId bid);
 
+    /**
+     * List the bundles in storage that are addressed to a given destination.
+     *
+     * @param destination Eid of the destination
+     * @return Observable of BundleId, empty if there is none
+     */
+    Observable<BundleId> findByDestination(Eid destination);
+
+    /**
+     * List the bundles in storage that were sent by a given source.
+     *
+     * @param source Eid of the source
+     * @return Observable of BundleId, empty if there is none
+     */
+    Observable<BundleId> findBySource(Eid source);
+
+    /**
+     * List the bundles in storage that are waiting for a given local delivery sink.
+     *
+     * @param sink delivery sink
+     * @return Observable of BundleId, empty if there is none
+     */
+    Observable<BundleId> findBySink(String sink);
+
+    /**
+     * List the bundles in storage whose lifetime ends before a given time, soonest first.
+     *
+     * @param timestamp in milliseconds, same reference as the bundle creation timestamp
+     * @return Observable of BundleId, empty if there is none
+     */
+    Observable<BundleId> findExpiringBefore(long timestamp);
+
     /**
      * Try to store in volatile storage first and then copy in persistent storage whatever happens
      * If Volatile Storage is enabled, it will return the whole Bundle, otherwise it returns
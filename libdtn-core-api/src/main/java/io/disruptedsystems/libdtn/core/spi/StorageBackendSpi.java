@@ -0,0 +1,67 @@
+package io.disruptedsystems.libdtn.core.spi;
+
+import io.disruptedsystems.libdtn.common.data.Bundle;
+import io.disruptedsystems.libdtn.common.data.BundleId;
+import io.disruptedsystems.libdtn.common.data.blob.Blob;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+
+import java.io.IOException;
+
+/**
+ * Contract to be fulfilled by a persistent storage backend. A backend is provided by a core
+ * module that registers it with {@link io.disruptedsystems.libdtn.core.api.StorageApi}. It
+ * replaces the default persistent storage if its name is the one selected by the
+ * STORAGE_BACKEND configuration entry.
+ *
+ * <p>A backend only persists bundles: the Storage keeps the index of all the bundles and their
+ * metadata, calls the block processors and decides when a bundle must be stored or removed.
+ */
+public interface StorageBackendSpi extends ModuleSpi {
+
+    /**
+     * Open the backend and list the bundles it already holds.
+     *
+     * @return Observable of the MetaBundle of every stored bundle
+     */
+    Observable<Bundle> open();
+
+    /**
+     * Close the backend.
+     */
+    void close();
+
+    /**
+     * Create a file-based Blob, for instance to receive a large payload.
+     *
+     * @param expectedSize of the Blob
+     * @return a new Blob
+     * @throws IOException if the Blob could not be created
+     */
+    Blob createFileBlob(int expectedSize) throws IOException;
+
+    /**
+     * Persist a bundle.
+     *
+     * @param bundle to persist
+     * @return Single of the MetaBundle once the bundle is persisted
+     */
+    Single<Bundle> store(Bundle bundle);
+
+    /**
+     * Pull a bundle from the backend.
+     *
+     * @param id of the bundle
+     * @return Single of the Bundle
+     */
+    Single<Bundle> get(BundleId id);
+
+    /**
+     * Delete a bundle and its payload from the backend.
+     *
+     * @param id of the bundle
+     * @return Completable that completes once the bundle is deleted
+     */
+    Completable remove(BundleId id);
+}
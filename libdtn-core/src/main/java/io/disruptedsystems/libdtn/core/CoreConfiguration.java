@@ -1,6 +1,7 @@
 package io.disruptedsystems.libdtn.core;
 
 import io.disruptedsystems.libdtn.core.api.ConfigurationApi;
+import io.disruptedsystems.libdtn.core.api.StorageApi;
 import io.disruptedsystems.libdtn.common.data.eid.DtnEid;
 import io.disruptedsystems.libdtn.common.data.eid.Eid;
 import io.disruptedsystems.libdtn.common.utils.Log;
@@ -215,10 +216,42 @@ public class CoreConfiguration implements ConfigurationApi {
         this.createCoreEntry(CoreEntry.COMPONENT_ENABLE_SMART_ROUTING, false);
         this.<Eid, Eid>createCoreEntryMap(CoreEntry.STATIC_ROUTE_CONFIGURATION);
         this.createCoreEntry(CoreEntry.COMPONENT_ENABLE_STORAGE, true);
+        this.createCoreEntry(CoreEntry.STORAGE_BACKEND, "simple");
         this.createCoreEntry(CoreEntry.COMPONENT_ENABLE_VOLATILE_STORAGE, true);
         this.createCoreEntry(CoreEntry.VOLATILE_BLOB_STORAGE_MAX_CAPACITY, 10000000);
+        this.createCoreEntry(CoreEntry.VOLATILE_STORAGE_HIGH_WATERMARK, 90);
+        this.createCoreEntry(CoreEntry.VOLATILE_STORAGE_LOW_WATERMARK, 70);
+        this.createCoreEntry(CoreEntry.BLOB_LEAK_DETECTION, false);
         this.createCoreEntry(CoreEntry.COMPONENT_ENABLE_SIMPLE_STORAGE, false);
         this.<String>createCoreEntrySet(CoreEntry.SIMPLE_STORAGE_PATH);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_SEGMENT_LOG, false);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_SEGMENT_SIZE, (long) 64000000);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_INDEXING_THREADS, 4);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_DURABILITY,
+                StorageApi.Durability.GROUP_COMMIT);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_GROUP_COMMIT_WINDOW, (long) 20);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_GROUP_COMMIT_SIZE, 32);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_QUOTA_BYTES, (long) 0);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_QUOTA_COUNT, 0);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_EVICTION_POLICY,
+                StorageApi.EvictionPolicy.NONE);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_BULK_THRESHOLD, (long) 10000000);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_DEDUPLICATION, true);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_IO_THREADS, 4);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_IO_QUEUE_SIZE, 256);
+        this.<String>createCoreEntrySet(CoreEntry.SIMPLE_STORAGE_IO_DEVICE_THREADS);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_PLACEMENT,
+                StorageApi.Placement.STRIPED);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_SPACE_REFRESH_PERIOD, 10);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_COMPRESSION, false);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_COMPRESSION_MIN_SIZE, (long) 4096);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_PAYLOAD_FILE_THRESHOLD, (long) 65536);
+        this.<String>createCoreEntrySet(CoreEntry.SIMPLE_STORAGE_COMPRESSION_PATHS);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_GC_PERIOD, 3600);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_GC_GRACE, 3600);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_GC_RATE, 100);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_GC_QUARANTINE, false);
+        this.createCoreEntry(CoreEntry.STORAGE_INDEXED_DISPATCH_RATE, 1000);
         this.createCoreEntry(CoreEntry.LIMIT_BLOCKSIZE, (long) 1000000000);
         this.createCoreEntry(CoreEntry.COMPONENT_ENABLE_LOGGING, true);
         this.createCoreEntry(CoreEntry.LOG_LEVEL, Log.LogLevel.VERBOSE);
@@ -31,9 +31,16 @@ import io.disruptedsystems.libdtn.core.storage.Storage;
 import io.disruptedsystems.libdtn.common.utils.Log;
 import io.disruptedsystems.libdtn.core.aa.Registrar;
 import io.disruptedsystems.libdtn.core.utils.Logger;
+import io.disruptedsystems.libdtn.common.data.Bundle;
 import io.marlinski.librxbus.RxBus;
 import io.marlinski.librxbus.RxThread;
 import io.marlinski.librxbus.Subscribe;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.processors.FlowableProcessor;
+import io.reactivex.rxjava3.processors.PublishProcessor;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * DtnCore registers all the DtnEid Core CoreComponent.
@@ -58,6 +65,8 @@ public class DtnCore implements CoreApi {
     private BundleProtocolApi bundleProcessor;
     private ClaManagerApi claManager;
     private ModuleLoaderApi moduleLoader;
+    private FlowableProcessor<Bundle> indexedBundles = PublishProcessor.<Bundle>create()
+            .toSerialized();
 
     /**
      * Constructor.
@@ -97,6 +106,27 @@ public class DtnCore implements CoreApi {
 
     @Override
     public void init() {
+        /*
+         * bundles indexed from storage are queued and dispatched at a bounded rate so that a
+         * large backlog does not flood the routing engine at startup. They are dispatched in
+         * batches, a tenth of the rate at a time, rather than one timer per bundle.
+         */
+        int rate = Math.max(1, conf.<Integer>get(
+                ConfigurationApi.CoreEntry.STORAGE_INDEXED_DISPATCH_RATE).value());
+        int batch = Math.max(1, rate / 10);
+        long period = TimeUnit.SECONDS.toMillis(1) * batch / rate;
+        indexedBundles
+                .onBackpressureBuffer()
+                .buffer(period, TimeUnit.MILLISECONDS, Schedulers.io(), batch)
+                .filter(bundles -> !bundles.isEmpty())
+                .onBackpressureBuffer()
+                .concatMap(bundles -> Flowable.just(bundles)
+                        .delay(period, TimeUnit.MILLISECONDS, Schedulers.io()))
+                .subscribe(
+                        bundles -> bundles.forEach(bundleProcessor::bundleDispatching),
+                        e -> logger.e(TAG, "indexed bundle dispatching stopped: "
+                                + e.getMessage()));
+
         RxBus.register(this);
         linkLocalRouting.initComponent(getConf(), ConfigurationApi.CoreEntry.COMPONENT_ENABLE_LINKLOCAL_ROUTING, getLogger());
         routingTable.initComponent(getConf(), ConfigurationApi.CoreEntry.COMPONENT_ENABLE_ROUTING, getLogger());
@@ -176,6 +206,6 @@ public class DtnCore implements CoreApi {
 
     @Subscribe(thread = RxThread.IO)
     public void onEvent(BundleIndexed event) {
-        bundleProcessor.bundleDispatching(event.bundle);
+        indexedBundles.onNext(event.bundle);
     }
 }
@@ -8,6 +8,7 @@ import io.disruptedsystems.libdtn.core.spi.ActiveRegistrationCallback;
 import io.disruptedsystems.libdtn.core.storage.EventListener;
 import io.disruptedsystems.libdtn.common.data.Bundle;
 import io.disruptedsystems.libdtn.common.data.BundleId;
+import io.disruptedsystems.libdtn.common.data.blob.Blob;
 import io.disruptedsystems.libdtn.common.data.eid.ApiEid;
 import io.disruptedsystems.libdtn.common.data.eid.EidFormatException;
 import io.disruptedsystems.libdtn.core.CoreComponent;
@@ -314,7 +315,7 @@ public class Registrar extends CoreComponent implements RegistrarApi, DeliveryAp
                         /* retrieve the bundle */
                         core.getStorage().get(bundleID).subscribe(
                                 /* deliver it */
-                                bundle -> event.cb.recv(bundle).subscribe(
+                                bundle -> recv(event.cb, bundle).subscribe(
                                         () -> {
                                             listener.unwatch(event.sink, bundle.bid);
                                             core.getBundleProtocol()
@@ -352,12 +353,20 @@ public class Registrar extends CoreComponent implements RegistrarApi, DeliveryAp
                     return Completable.error(new PassiveRegistration());
                 }
 
-                return registration.cb.recv(bundle);
+                return recv(registration.cb, bundle);
             }
         }
         return Completable.error(new UnregisteredSink());
     }
 
+    /* the blobs of the bundle are retained until the application agent is done with it */
+    private static Completable recv(ActiveRegistrationCallback cb, Bundle bundle) {
+        return Completable.using(
+                bundle::retainBlobs,
+                retained -> cb.recv(bundle),
+                retained -> retained.forEach(Blob::release));
+    }
+
     public void deliverLater(String sink, final Bundle bundle) {
         listener.watch(sink, bundle.bid);
     }
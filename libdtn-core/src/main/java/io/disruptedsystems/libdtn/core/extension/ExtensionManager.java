@@ -14,6 +14,7 @@ import io.disruptedsystems.libdtn.common.data.bundlev7.processor.BlockProcessor;
 import io.disruptedsystems.libdtn.common.data.bundlev7.processor.BlockProcessorFactory;
 import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.BaseBlockDataSerializerFactory;
 import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.BlockDataSerializerFactory;
+import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.CborSize;
 import io.disruptedsystems.libdtn.common.data.eid.BaseEidFactory;
 import io.disruptedsystems.libdtn.common.data.eid.ClaEid;
 import io.disruptedsystems.libdtn.common.data.eid.ClaEidParser;
@@ -105,6 +106,19 @@ public class ExtensionManager implements ExtensionManagerApi {
             }
             throw new UnknownBlockTypeException();
         }
+
+        @Override
+        public long encodedSize(CanonicalBlock block) throws UnknownBlockTypeException {
+            try {
+                return baseSerializerFactory.encodedSize(block);
+            } catch (UnknownBlockTypeException ubte) {
+                if (extensionBlockSerializerFactory.containsKey(block.type)) {
+                    /* the structure of an extension block is unknown, it is encoded to be sized */
+                    return CborSize.of(extensionBlockSerializerFactory.get(block.type).get());
+                }
+            }
+            throw new UnknownBlockTypeException();
+        }
     };
 
     private BlockProcessorFactory coreProcessorFactory = new BlockProcessorFactory() {
@@ -18,7 +18,6 @@ import static io.disruptedsystems.libdtn.common.data.StatusReport.StatusAssertio
 import io.disruptedsystems.libdtn.core.api.BundleProtocolApi;
 import io.disruptedsystems.libdtn.core.api.ConfigurationApi;
 import io.disruptedsystems.libdtn.core.api.CoreApi;
-import io.marlinski.libcbor.CborEncoder;
 import io.disruptedsystems.libdtn.common.data.Bundle;
 import io.disruptedsystems.libdtn.common.data.CanonicalBlock;
 import io.disruptedsystems.libdtn.common.data.PayloadBlock;
@@ -33,7 +32,6 @@ import io.disruptedsystems.libdtn.common.data.eid.DtnEid;
 import io.disruptedsystems.libdtn.common.data.eid.Eid;
 import io.disruptedsystems.libdtn.core.utils.ClockUtil;
 
-import java.nio.ByteBuffer;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -349,16 +347,12 @@ public class BundleProtocol implements BundleProtocolApi {
         Bundle report = new Bundle(bundle.getReportto());
 
         /* get size of status report for the payload */
-        CborEncoder enc = AdministrativeRecordSerializer.encode(statusReport);
-        long size = enc.observe()
-                .map(ByteBuffer::remaining)
-                .reduce(0, (a, b) -> a + b)
-                .blockingGet();
+        long size = AdministrativeRecordSerializer.encodedSize(statusReport);
 
         /* serialize the status report into the bundle payload */
         UntrackedByteBufferBlob blobReport = new UntrackedByteBufferBlob((int) size);
         final WritableBlob wblob = blobReport.getWritableBlob();
-        enc.observe()
+        AdministrativeRecordSerializer.encode(statusReport).observe()
                 .map(wblob::write)
                 .doOnComplete(wblob::close)
                 .subscribe();
@@ -80,16 +80,18 @@ public class DirectRoutingStrategy implements DirectRoutingStrategyApi {
                 + bundle.bid.getBidString() + " -> "
                 + claChannel.channelEid().getEidString());
 
-        /* call block-specific routine for transmission */
+        /* call block-specific routine for transmission, a modified block is encoded again */
         for (CanonicalBlock block : bundle.getBlocks()) {
             try {
-                core.getExtensionManager()
+                if (core.getExtensionManager()
                         .getBlockProcessorFactory()
                         .create(block.type)
                         .onPrepareForTransmission(
                                 block,
                                 bundle,
-                                core.getLogger());
+                                core.getLogger())) {
+                    bundle.invalidateEncodedForm(block);
+                }
             } catch (ProcessingException | BlockProcessorFactory.ProcessorNotFoundException pe) {
                 /* ignore */
             }
@@ -0,0 +1,146 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import io.disruptedsystems.libdtn.common.data.blob.CompressedFileBlob;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * BlobStore keeps the payload blobs of the persistent storage content-addressed. A blob file is
+ * renamed after the SHA-256 digest of its content so that bundles carrying the same payload share
+ * a single file. Every blob has a reference count, which is not persisted but rebuilt from the
+ * index when the storage is opened. A blob file is deleted only when its last reference goes.
+ *
+ * <p>Once interned, a blob may be shared and must not be modified anymore. A compressed blob
+ * keeps the {@link CompressedFileBlob#SUFFIX} in its content address.
+ */
+class BlobStore {
+
+    static final String PREFIX = "sha256-";
+    static final String SUFFIX = ".blob";
+    private static final int BUFFER_SIZE = 65536;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Map<String, Integer> refs = new HashMap<>();
+
+    /**
+     * Move a blob file to its content address and take a reference on it. If a blob with the same
+     * content is already present, the file is deleted and the existing blob is referenced instead.
+     * A file that is already referenced under its current name is only referenced once more.
+     *
+     * @param path of the blob file
+     * @return path of the blob to reference
+     * @throws IOException if the blob could not be read or moved
+     */
+    String intern(String path) throws IOException {
+        File file = new File(path).getAbsoluteFile();
+        String suffix = file.getName().endsWith(CompressedFileBlob.SUFFIX)
+                ? SUFFIX + CompressedFileBlob.SUFFIX
+                : SUFFIX;
+        File target = new File(file.getParentFile(), PREFIX + digest(file) + suffix);
+
+        synchronized (this) {
+            if (!target.equals(file) && !refs.containsKey(file.getPath())) {
+                if (target.exists()) {
+                    file.delete();
+                } else {
+                    Files.move(file.toPath(), target.toPath(),
+                            StandardCopyOption.ATOMIC_MOVE);
+                }
+                file = target;
+            }
+            /* a blob that was just referenced is not an orphan, see OrphanCollector */
+            file.setLastModified(System.currentTimeMillis());
+            refs.merge(file.getPath(), 1, Integer::sum);
+            return file.getPath();
+        }
+    }
+
+    /**
+     * Take a reference on a blob without moving it.
+     *
+     * @param path of the blob file
+     */
+    synchronized void acquire(String path) {
+        refs.merge(new File(path).getAbsolutePath(), 1, Integer::sum);
+    }
+
+    /**
+     * Release a reference on a blob and delete the file if it was the last one. A blob that
+     * was never referenced is deleted as well.
+     *
+     * @param path of the blob file
+     * @return true if the file was deleted, false if it is still referenced
+     * @throws IOException if the file had to be deleted but could not be
+     */
+    synchronized boolean release(String path) throws IOException {
+        String key = new File(path).getAbsolutePath();
+        Integer count = refs.get(key);
+        if (count != null && count > 1) {
+            refs.put(key, count - 1);
+            return false;
+        }
+        refs.remove(key);
+
+        File file = new File(key);
+        if (file.exists() && (!file.canWrite() || !file.delete())) {
+            throw new IOException("can't access payload blob file for deletion");
+        }
+        return true;
+    }
+
+    /**
+     * Drop the references of all the blobs under a folder, without deleting any file.
+     *
+     * @param folder whose blobs are no longer managed
+     */
+    synchronized void forget(String folder) {
+        String prefix = new File(folder).getAbsolutePath() + File.separator;
+        refs.keySet().removeIf(p -> p.startsWith(prefix));
+    }
+
+    /**
+     * Number of references on a blob.
+     *
+     * @param path of the blob file
+     * @return reference count, 0 if the blob is not referenced
+     */
+    synchronized int count(String path) {
+        return refs.getOrDefault(new File(path).getAbsolutePath(), 0);
+    }
+
+    private static String digest(File file) throws IOException {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IOException("SHA-256 not available");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel in = new FileInputStream(file).getChannel()) {
+            while (in.read(buffer) > 0) {
+                buffer.flip();
+                sha.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        byte[] hash = sha.digest();
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = HEX[hash[i] & 0x0f];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,237 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import io.disruptedsystems.libdtn.core.api.StorageApi;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.CompletableEmitter;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Committer flushes to disk what SimpleStorage has written, according to the configured
+ * {@link StorageApi.Durability}. With group commit, the flushes requested by concurrent stores
+ * are collected for a short time window (or until enough of them are pending) and performed
+ * together, a file or segment that is shared by several stores being flushed only once.
+ *
+ * <p>The Committer also keeps track of the commit latency, measured from the moment a commit is
+ * requested until the data is on disk.
+ */
+class Committer {
+
+    /**
+     * Something that can be flushed to disk.
+     */
+    interface Syncable {
+        /**
+         * Syncables sharing the same key are flushed only once per group.
+         *
+         * @return the key of this Syncable
+         */
+        String key();
+
+        void sync() throws IOException;
+    }
+
+    private static class Pending {
+        Syncable[] targets;
+        CompletableEmitter emitter;
+        long start;
+
+        Pending(Syncable[] targets, CompletableEmitter emitter) {
+            this.targets = targets;
+            this.emitter = emitter;
+            this.start = System.nanoTime();
+        }
+    }
+
+    private final StorageApi.Durability mode;
+    private final long window;
+    private final int batchSize;
+    private LinkedList<Pending> pending = new LinkedList<>();
+    private Disposable timer;
+
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param mode      durability mode
+     * @param window    group commit window in milliseconds
+     * @param batchSize number of pending commits that triggers a group commit before the
+     *                  window elapses
+     */
+    Committer(StorageApi.Durability mode, long window, int batchSize) {
+        this.mode = mode;
+        this.window = window;
+        this.batchSize = batchSize;
+    }
+
+    StorageApi.Durability getMode() {
+        return mode;
+    }
+
+    /**
+     * Flush some targets according to the durability mode. With
+     * {@link StorageApi.Durability#NONE} nothing is flushed but the commit is still counted in
+     * the latency statistics.
+     *
+     * @param targets to flush
+     * @return Completable that completes once the targets are on disk
+     */
+    Completable commit(Syncable... targets) {
+        switch (mode) {
+            case SYNC_PER_BUNDLE:
+                return Completable.fromAction(() -> {
+                    long start = System.nanoTime();
+                    for (Syncable target : targets) {
+                        target.sync();
+                    }
+                    recordLatency(start);
+                });
+            case GROUP_COMMIT:
+                return Completable.create(s -> enqueue(new Pending(targets, s)));
+            case NONE:
+            default:
+                return Completable.fromAction(() -> recordLatency(System.nanoTime()));
+        }
+    }
+
+    private synchronized void enqueue(Pending p) {
+        pending.add(p);
+        if (pending.size() >= batchSize) {
+            if (timer != null) {
+                timer.dispose();
+            }
+            timer = Schedulers.io().scheduleDirect(this::flush);
+        } else if (timer == null) {
+            timer = Schedulers.io().scheduleDirect(this::flush, window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        List<Pending> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new LinkedList<>();
+            timer = null;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        /* flush every distinct target once */
+        Map<String, IOException> results = new LinkedHashMap<>();
+        for (Pending p : batch) {
+            for (Syncable target : p.targets) {
+                if (!results.containsKey(target.key())) {
+                    try {
+                        target.sync();
+                        results.put(target.key(), null);
+                    } catch (IOException io) {
+                        results.put(target.key(), io);
+                    }
+                }
+            }
+        }
+
+        for (Pending p : batch) {
+            IOException io = null;
+            for (Syncable target : p.targets) {
+                if (io == null) {
+                    io = results.get(target.key());
+                }
+            }
+            if (io == null) {
+                recordLatency(p.start);
+                p.emitter.onComplete();
+            } else {
+                p.emitter.onError(io);
+            }
+        }
+    }
+
+    /**
+     * Syncable for a regular file.
+     *
+     * @param file to flush
+     * @return Syncable
+     */
+    static Syncable file(File file) {
+        return new Syncable() {
+            @Override
+            public String key() {
+                return file.getAbsolutePath();
+            }
+
+            @Override
+            public void sync() throws IOException {
+                try (FileChannel channel = FileChannel.open(file.toPath(),
+                        StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+        };
+    }
+
+    /**
+     * Syncable for a directory, so that newly created files are not lost. Not every platform
+     * can flush a directory so this is done on a best effort basis.
+     *
+     * @param dir to flush
+     * @return Syncable
+     */
+    static Syncable directory(File dir) {
+        return new Syncable() {
+            @Override
+            public String key() {
+                return dir.getAbsolutePath();
+            }
+
+            @Override
+            public void sync() {
+                syncDirectory(dir);
+            }
+        };
+    }
+
+    static void syncDirectory(File dir) {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException io) {
+            /* not supported */
+        }
+    }
+
+    private void recordLatency(long start) {
+        long latency = System.nanoTime() - start;
+        commits.incrementAndGet();
+        totalLatency.addAndGet(latency);
+        maxLatency.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * Print the commit latency statistics.
+     *
+     * @return String describing the durability mode and the commit latency
+     */
+    String print() {
+        long count = commits.get();
+        long avg = (count == 0) ? 0 : TimeUnit.NANOSECONDS.toMicros(totalLatency.get() / count);
+        return "durability: " + mode
+                + " - commits=" + count
+                + " avg=" + avg + "us"
+                + " max=" + TimeUnit.NANOSECONDS.toMicros(maxLatency.get()) + "us";
+    }
+}
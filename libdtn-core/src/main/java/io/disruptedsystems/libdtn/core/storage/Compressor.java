@@ -0,0 +1,184 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import io.disruptedsystems.libdtn.common.data.blob.CompressedFileBlob;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * Compressor deflates the bundle and blob files of the persistent storage. Before compressing,
+ * a sample of the data is deflated and the data is left as is if the sample does not shrink
+ * enough, for instance if the payload is already compressed.
+ *
+ * <p>The Compressor keeps track of the compression ratio and of the time spent compressing and
+ * inflating.
+ */
+class Compressor {
+
+    private static final int SAMPLE_SIZE = 65536;
+    private static final double MAX_SAMPLE_RATIO = 0.9;
+    private static final int CHUNK_SIZE = 65536;
+
+    private final AtomicLong compressed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong deflateNanos = new AtomicLong();
+    private final AtomicLong inflateNanos = new AtomicLong();
+
+    /**
+     * Deflate a sample of some serialized data to estimate whether it is worth compressing.
+     *
+     * @param buffers data to sample, left untouched
+     * @return true if the sample shrinks enough
+     */
+    boolean worthCompressing(List<ByteBuffer> buffers) {
+        byte[] sample = new byte[SAMPLE_SIZE];
+        int length = 0;
+        for (ByteBuffer buffer : buffers) {
+            ByteBuffer dup = buffer.duplicate();
+            int n = Math.min(dup.remaining(), SAMPLE_SIZE - length);
+            dup.get(sample, length, n);
+            length += n;
+            if (length == SAMPLE_SIZE) {
+                break;
+            }
+        }
+        return sample(sample, length);
+    }
+
+    /**
+     * Deflate a sample of a file to estimate whether it is worth compressing.
+     *
+     * @param file to sample
+     * @return true if the sample shrinks enough
+     * @throws IOException if the file could not be read
+     */
+    boolean worthCompressing(File file) throws IOException {
+        byte[] sample = new byte[SAMPLE_SIZE];
+        int length = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while (length < SAMPLE_SIZE
+                    && (read = in.read(sample, length, SAMPLE_SIZE - length)) > 0) {
+                length += read;
+            }
+        }
+        return sample(sample, length);
+    }
+
+    /**
+     * Write serialized data into a compressed file.
+     *
+     * @param buffers data to compress, left untouched
+     * @param size    total size of the data
+     * @param target  compressed file
+     * @throws IOException if the file could not be written
+     */
+    void compress(List<ByteBuffer> buffers, long size, File target) throws IOException {
+        long start = System.nanoTime();
+        byte[] chunk = new byte[CHUNK_SIZE];
+        try (OutputStream out = CompressedFileBlob.compressTo(target, size)) {
+            for (ByteBuffer buffer : buffers) {
+                ByteBuffer dup = buffer.duplicate();
+                while (dup.hasRemaining()) {
+                    int n = Math.min(dup.remaining(), chunk.length);
+                    dup.get(chunk, 0, n);
+                    out.write(chunk, 0, n);
+                }
+            }
+        }
+        record(start, size, target.length());
+    }
+
+    /**
+     * Compress a file into a new file named after the original with the
+     * {@link CompressedFileBlob#SUFFIX}. The original file is deleted.
+     *
+     * @param source file to compress
+     * @return the compressed file
+     * @throws IOException if the file could not be compressed, the original is kept
+     */
+    File compress(File source) throws IOException {
+        long start = System.nanoTime();
+        File target = new File(source.getPath() + CompressedFileBlob.SUFFIX);
+        byte[] chunk = new byte[CHUNK_SIZE];
+        try (InputStream in = new FileInputStream(source);
+             OutputStream out = CompressedFileBlob.compressTo(target, source.length())) {
+            int read;
+            while ((read = in.read(chunk)) > 0) {
+                out.write(chunk, 0, read);
+            }
+        } catch (IOException io) {
+            target.delete();
+            throw io;
+        }
+        record(start, source.length(), target.length());
+        source.delete();
+        return target;
+    }
+
+    /**
+     * Account for the time spent inflating a compressed file.
+     *
+     * @param start System.nanoTime() when inflating started
+     */
+    void inflated(long start) {
+        inflateNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * Print the compression statistics.
+     *
+     * @return String describing the compression ratio and CPU time
+     */
+    String print() {
+        long in = bytesIn.get();
+        long ratio = (in == 0) ? 100 : bytesOut.get() * 100 / in;
+        return "compression: files=" + compressed.get()
+                + " skipped=" + skipped.get()
+                + " ratio=" + ratio + "%"
+                + " deflate=" + TimeUnit.NANOSECONDS.toMillis(deflateNanos.get()) + "ms"
+                + " inflate=" + TimeUnit.NANOSECONDS.toMillis(inflateNanos.get()) + "ms";
+    }
+
+    private boolean sample(byte[] sample, int length) {
+        if (length == 0) {
+            return false;
+        }
+        long start = System.nanoTime();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(sample, 0, length);
+            deflater.finish();
+            byte[] out = new byte[length];
+            int deflated = 0;
+            while (!deflater.finished() && deflated < length) {
+                deflated += deflater.deflate(out, deflated, length - deflated);
+            }
+            boolean worth = deflater.finished() && deflated < length * MAX_SAMPLE_RATIO;
+            if (!worth) {
+                skipped.incrementAndGet();
+            }
+            return worth;
+        } finally {
+            deflater.end();
+            deflateNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private void record(long start, long in, long out) {
+        deflateNanos.addAndGet(System.nanoTime() - start);
+        compressed.incrementAndGet();
+        bytesIn.addAndGet(in);
+        bytesOut.addAndGet(out);
+    }
+}
@@ -0,0 +1,126 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import io.reactivex.rxjava3.core.Flowable;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * DirectBufferPool recycles fixed-size direct ByteBuffer. A serialized bundle is gathered into
+ * a list of such buffers that can then be handed over to a FileChannel in a single gathering
+ * write, without going through the java heap and without allocating new direct memory for
+ * every bundle.
+ *
+ * <p>The pool never hands out more than a fixed number of buffers at a time. A bundle that does
+ * not fit in the buffers left is not gathered, the caller streams it instead.
+ */
+class DirectBufferPool {
+
+    private final int chunkSize;
+    private final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+    private final Semaphore available;
+
+    /**
+     * Constructor.
+     *
+     * @param chunkSize  size of a single buffer
+     * @param maxBuffers maximum number of buffers handed out at the same time
+     */
+    DirectBufferPool(int chunkSize, int maxBuffers) {
+        this.chunkSize = chunkSize;
+        this.available = new Semaphore(maxBuffers);
+    }
+
+    /* a permit must be held for every buffer taken from the pool */
+    private ByteBuffer acquire() {
+        ByteBuffer buffer = pool.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(chunkSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Give a buffer back to the pool. The buffer must not be used afterward.
+     *
+     * @param buffer to release
+     */
+    void release(ByteBuffer buffer) {
+        if (!buffer.isDirect() || buffer.capacity() != chunkSize) {
+            return;
+        }
+        pool.offer(buffer);
+        available.release();
+    }
+
+    /**
+     * Give a list of buffers back to the pool.
+     *
+     * @param buffers to release
+     */
+    void release(Collection<ByteBuffer> buffers) {
+        for (ByteBuffer buffer : buffers) {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Copy a stream of ByteBuffer into pooled buffers. Every buffer of the returned list is ready
+     * to be read and must be released once consumed. The buffers are reserved from the expected
+     * size before anything is copied. Nothing is gathered if not enough of them are left, or if
+     * the stream turns out to be larger than expected and the pool is exhausted.
+     *
+     * @param data         stream to copy
+     * @param expectedSize size of the stream
+     * @return list of buffers holding the data, or null if the pool can't hold it
+     */
+    List<ByteBuffer> gather(Flowable<ByteBuffer> data, long expectedSize) {
+        long count = Math.max(1, (expectedSize + chunkSize - 1) / chunkSize);
+        if (count > Integer.MAX_VALUE || !available.tryAcquire((int) count)) {
+            return null;
+        }
+
+        LinkedList<ByteBuffer> buffers = new LinkedList<>();
+        int reserved = (int) count;
+        try {
+            ByteBuffer current = acquire();
+            buffers.add(current);
+            for (ByteBuffer src : data.blockingIterable()) {
+                while (src.hasRemaining()) {
+                    if (!current.hasRemaining()) {
+                        if (buffers.size() == reserved) {
+                            if (!available.tryAcquire()) {
+                                release(buffers);
+                                available.release(reserved - buffers.size());
+                                return null;
+                            }
+                            reserved++;
+                        }
+                        current.flip();
+                        current = acquire();
+                        buffers.add(current);
+                    }
+                    int length = Math.min(src.remaining(), current.remaining());
+                    ByteBuffer part = src.duplicate();
+                    part.limit(part.position() + length);
+                    current.put(part);
+                    src.position(src.position() + length);
+                }
+            }
+            current.flip();
+        } catch (RuntimeException re) {
+            available.release(reserved - buffers.size());
+            release(buffers);
+            throw re;
+        }
+
+        /* the expected size was an over-estimate */
+        available.release(reserved - buffers.size());
+        return buffers;
+    }
+}
@@ -0,0 +1,216 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import io.disruptedsystems.libdtn.common.data.Bundle;
+import io.disruptedsystems.libdtn.common.data.BundleId;
+import io.disruptedsystems.libdtn.common.data.PrimaryBlock;
+import io.disruptedsystems.libdtn.core.api.StorageApi;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * EvictionEngine keeps track of the space used by the persistent bundles of every storage path
+ * and orders them according to the configured {@link StorageApi.EvictionPolicy} so that the
+ * bundles to evict can be selected without scanning the whole index.
+ *
+ * <p>A bundle is never evicted to make room for a bundle of lower priority.
+ */
+class EvictionEngine {
+
+    private static class Candidate {
+        final BundleId bid;
+        final String path;
+        final long size;
+        final PrimaryBlock.Priority priority;
+        final long creation;
+        final long expiry;
+        long lastAccess;
+        long rank;
+        long secondary;
+
+        Candidate(BundleId bid, String path, long size, Bundle bundle, long lastAccess) {
+            this.bid = bid;
+            this.path = path;
+            this.size = size;
+            this.priority = bundle.getPriority();
+            this.creation = bundle.getCreationTimestamp();
+            this.expiry = bundle.getCreationTimestamp() + bundle.getLifetime();
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private static class PathUsage {
+        TreeSet<Candidate> ordered = new TreeSet<>(ORDER);
+        long bytes;
+        int count;
+    }
+
+    /* lastAccess is unique and makes the order total */
+    private static final Comparator<Candidate> ORDER = Comparator
+            .<Candidate>comparingLong(c -> c.rank)
+            .thenComparingLong(c -> c.secondary)
+            .thenComparingLong(c -> c.lastAccess);
+
+    private StorageApi.EvictionPolicy policy = StorageApi.EvictionPolicy.NONE;
+    private Map<BundleId, Candidate> candidates = new HashMap<>();
+    private Map<String, PathUsage> usage = new HashMap<>();
+    private long clock = 0;
+
+    /**
+     * Change the eviction policy. All the candidates are reordered.
+     *
+     * @param policy new eviction policy
+     */
+    synchronized void setPolicy(StorageApi.EvictionPolicy policy) {
+        this.policy = policy;
+        for (PathUsage pathUsage : usage.values()) {
+            pathUsage.ordered.clear();
+        }
+        for (Candidate candidate : candidates.values()) {
+            rank(candidate);
+            usage.get(candidate.path).ordered.add(candidate);
+        }
+    }
+
+    /**
+     * Account for a new persistent bundle.
+     *
+     * @param path   storage path holding the bundle
+     * @param bundle the bundle or its MetaBundle
+     * @param size   space used by the bundle, including its payload blob
+     */
+    synchronized void add(String path, Bundle bundle, long size) {
+        remove(bundle.bid);
+        Candidate candidate = new Candidate(bundle.bid, path, size, bundle, ++clock);
+        rank(candidate);
+        PathUsage pathUsage = usage.computeIfAbsent(path, p -> new PathUsage());
+        pathUsage.ordered.add(candidate);
+        pathUsage.bytes += size;
+        pathUsage.count++;
+        candidates.put(bundle.bid, candidate);
+    }
+
+    /**
+     * Stop accounting for a bundle.
+     *
+     * @param bid of the bundle
+     */
+    synchronized void remove(BundleId bid) {
+        Candidate candidate = candidates.remove(bid);
+        if (candidate != null) {
+            PathUsage pathUsage = usage.get(candidate.path);
+            pathUsage.ordered.remove(candidate);
+            pathUsage.bytes -= candidate.size;
+            pathUsage.count--;
+        }
+    }
+
+    /**
+     * Stop accounting for all the bundles of a storage path.
+     *
+     * @param path storage path
+     */
+    synchronized void removePath(String path) {
+        PathUsage pathUsage = usage.remove(path);
+        if (pathUsage != null) {
+            for (Candidate candidate : pathUsage.ordered) {
+                candidates.remove(candidate.bid);
+            }
+        }
+    }
+
+    /**
+     * Mark a bundle as accessed.
+     *
+     * @param bid of the bundle
+     */
+    synchronized void touch(BundleId bid) {
+        Candidate candidate = candidates.get(bid);
+        if (candidate != null) {
+            PathUsage pathUsage = usage.get(candidate.path);
+            pathUsage.ordered.remove(candidate);
+            candidate.lastAccess = ++clock;
+            rank(candidate);
+            pathUsage.ordered.add(candidate);
+        }
+    }
+
+    synchronized long bytes(String path) {
+        PathUsage pathUsage = usage.get(path);
+        return pathUsage == null ? 0 : pathUsage.bytes;
+    }
+
+    synchronized int count() {
+        return candidates.size();
+    }
+
+    synchronized int count(String path) {
+        PathUsage pathUsage = usage.get(path);
+        return pathUsage == null ? 0 : pathUsage.count;
+    }
+
+    /**
+     * Select the bundles to evict from a storage path in order to free some space. Bundles with
+     * a higher priority than the incoming bundle are never selected.
+     *
+     * @param path     storage path
+     * @param bytes    number of bytes to free
+     * @param count    number of bundles to free
+     * @param incoming priority of the bundle that needs room
+     * @return the bundles to evict, or an empty list if not enough room can be made
+     */
+    synchronized List<BundleId> victims(String path, long bytes, int count,
+                                        PrimaryBlock.Priority incoming) {
+        LinkedList<BundleId> victims = new LinkedList<>();
+        PathUsage pathUsage = usage.get(path);
+        if (policy == StorageApi.EvictionPolicy.NONE || pathUsage == null) {
+            return victims;
+        }
+
+        long freedBytes = 0;
+        int freedCount = 0;
+        for (Candidate candidate : pathUsage.ordered) {
+            if (freedBytes >= bytes && freedCount >= count) {
+                break;
+            }
+            if (candidate.priority.compareTo(incoming) > 0) {
+                continue;
+            }
+            victims.add(candidate.bid);
+            freedBytes += candidate.size;
+            freedCount++;
+        }
+
+        if (freedBytes < bytes || freedCount < count) {
+            victims.clear();
+        }
+        return victims;
+    }
+
+    private void rank(Candidate candidate) {
+        switch (policy) {
+            case SOONEST_EXPIRY:
+                candidate.rank = candidate.expiry;
+                candidate.secondary = 0;
+                break;
+            case LOWEST_PRIORITY:
+                candidate.rank = candidate.priority.ordinal();
+                candidate.secondary = candidate.creation;
+                break;
+            case OLDEST_FIRST:
+                candidate.rank = candidate.creation;
+                candidate.secondary = 0;
+                break;
+            case LEAST_RECENTLY_USED:
+            case NONE:
+            default:
+                candidate.rank = 0;
+                candidate.secondary = 0;
+                break;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import io.disruptedsystems.libdtn.common.data.BundleId;
+import io.disruptedsystems.libdtn.core.utils.ClockUtil;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.disposables.Disposable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExpiryScheduler fires an event for every indexed bundle when its lifetime ends. It relies on
+ * the expiry table of the {@link SecondaryIndex} and only ever arms a single timer, set to the
+ * earliest expiration time, so that its cost does not depend on the number of pending bundles:
+ * indexing a bundle is a sorted insert and every expiration is a single removal.
+ */
+class ExpiryScheduler {
+
+    interface ExpiryListener {
+        /**
+         * Called once when the lifetime of an indexed bundle ends.
+         *
+         * @param bid of the expired bundle
+         */
+        void onExpired(BundleId bid);
+    }
+
+    private final SecondaryIndex index;
+    private final Scheduler scheduler;
+    private final ExpiryListener listener;
+    private Disposable timer;
+    private long deadline = Long.MAX_VALUE;
+    private boolean started = false;
+
+    /**
+     * Constructor.
+     *
+     * @param index     secondary index holding the expiry table
+     * @param scheduler scheduler to arm the timer on
+     * @param listener  to notify of every expiration
+     */
+    ExpiryScheduler(SecondaryIndex index, Scheduler scheduler, ExpiryListener listener) {
+        this.index = index;
+        this.scheduler = scheduler;
+        this.listener = listener;
+    }
+
+    /**
+     * Start firing expirations, including the ones that are already due.
+     */
+    synchronized void start() {
+        started = true;
+        arm(index.nextExpiry());
+    }
+
+    /**
+     * Stop firing expirations. Bundles that expire while stopped are fired upon restart.
+     */
+    synchronized void stop() {
+        started = false;
+        disarm();
+    }
+
+    /**
+     * Notify the scheduler that a bundle with the given expiration time was indexed.
+     *
+     * @param expiry expiration time in milliseconds
+     */
+    synchronized void onIndexed(long expiry) {
+        if (started && expiry < deadline) {
+            arm(expiry);
+        }
+    }
+
+    private void arm(long expiry) {
+        disarm();
+        if (expiry == Long.MAX_VALUE) {
+            return;
+        }
+        deadline = expiry;
+        long delay = Math.max(0, expiry - ClockUtil.getCurrentTime());
+        timer = scheduler.scheduleDirect(this::fire, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void disarm() {
+        if (timer != null) {
+            timer.dispose();
+            timer = null;
+        }
+        deadline = Long.MAX_VALUE;
+    }
+
+    private void fire() {
+        synchronized (this) {
+            if (!started) {
+                return;
+            }
+            timer = null;
+            deadline = Long.MAX_VALUE;
+        }
+
+        for (BundleId bid : index.pollExpired(ClockUtil.getCurrentTime())) {
+            listener.onExpired(bid);
+        }
+
+        synchronized (this) {
+            if (started) {
+                long next = index.nextExpiry();
+                if (next < deadline) {
+                    arm(next);
+                }
+            }
+        }
+    }
+}
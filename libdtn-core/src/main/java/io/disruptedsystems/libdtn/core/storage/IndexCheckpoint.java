@@ -0,0 +1,242 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * IndexCheckpoint keeps an on-disk copy of the part of the index that belongs to a storage path
+ * so that the index can be rebuilt after a restart with a single sequential read instead of
+ * opening and parsing every bundle file.
+ *
+ * <p>The checkpoint is a journal: a snapshot of all the entries followed by the PUT and DEL
+ * records appended as bundles are stored and removed. It is rewritten as a fresh snapshot
+ * whenever too many records have been cancelled. Every record carries the location of the
+ * bundle (file, or segment and offset) and the serialized file header and primary block.
+ *
+ * <p>The checkpoint is only a hint. On startup, SimpleStorage compares it against the content
+ * of the storage path and falls back to a full rescan if it is missing or stale.
+ */
+class IndexCheckpoint {
+
+    static final String CHECKPOINT_FILE = "index.checkpoint";
+
+    private static final int CHECKPOINT_MAGIC = 0x44544e49;
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_DEL = 2;
+    private static final int SNAPSHOT_MIN_RECORDS = 1000;
+
+    /**
+     * A checkpointed index entry.
+     */
+    static class Record {
+        final String bundlePath; /* path to the bundle file or segment */
+        final long offset;       /* offset of the bundle within the segment, 0 for a file */
+        final long length;       /* length of the bundle within the segment, -1 for a file */
+        final byte[] meta;       /* serialized file header and metabundle */
+
+        Record(String bundlePath, long offset, long length, byte[] meta) {
+            this.bundlePath = bundlePath;
+            this.offset = offset;
+            this.length = length;
+            this.meta = meta;
+        }
+
+        boolean inSegment() {
+            return length >= 0;
+        }
+
+        String key() {
+            return IndexCheckpoint.key(bundlePath, offset);
+        }
+    }
+
+    static String key(String bundlePath, long offset) {
+        return bundlePath + "@" + offset;
+    }
+
+    private final File file;
+    private DataOutputStream out;
+    private int liveRecords;
+    private int deadRecords;
+
+    /**
+     * Constructor.
+     *
+     * @param folder storage path that holds the checkpoint
+     */
+    IndexCheckpoint(File folder) {
+        this.file = new File(folder, CHECKPOINT_FILE);
+    }
+
+    /**
+     * Read the checkpoint. Records that were cancelled are dropped and a truncated record at the
+     * end of the journal is ignored, it is up to the caller to validate the result.
+     *
+     * @return the checkpointed records indexed by {@link Record#key()}, null if there is no
+     *     usable checkpoint
+     */
+    synchronized Map<String, Record> load() {
+        if (!file.exists()) {
+            return null;
+        }
+
+        Map<String, Record> records = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != CHECKPOINT_MAGIC) {
+                return null;
+            }
+
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException eof) {
+                    break;
+                }
+
+                if (type == RECORD_PUT) {
+                    String path = in.readUTF();
+                    long offset = in.readLong();
+                    long length = in.readLong();
+                    byte[] meta = new byte[in.readInt()];
+                    in.readFully(meta);
+                    Record record = new Record(path, offset, length, meta);
+                    records.put(record.key(), record);
+                } else if (type == RECORD_DEL) {
+                    String path = in.readUTF();
+                    long offset = in.readLong();
+                    records.remove(key(path, offset));
+                } else {
+                    return null;
+                }
+            }
+        } catch (EOFException eof) {
+            /* truncated record, validation will tell whether the checkpoint is usable */
+        } catch (IOException io) {
+            return null;
+        }
+        return records;
+    }
+
+    /**
+     * Replace the checkpoint with a snapshot of the given records. The snapshot is first written
+     * into a temporary file which is then renamed so that a crash never leaves a partial
+     * snapshot behind.
+     *
+     * @param records every live entry of the storage path
+     * @throws IOException if the snapshot could not be written
+     */
+    synchronized void snapshot(Collection<Record> records) throws IOException {
+        close();
+        File tmp = new File(file.getParentFile(), CHECKPOINT_FILE + ".tmp");
+        try (DataOutputStream snapshot = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            snapshot.writeInt(CHECKPOINT_MAGIC);
+            for (Record record : records) {
+                writePut(snapshot, record);
+            }
+        } catch (IOException io) {
+            tmp.delete();
+            invalidate();
+            throw io;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            invalidate();
+            throw new IOException("could not replace checkpoint");
+        }
+        liveRecords = records.size();
+        deadRecords = 0;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+
+    /**
+     * Append an entry to the checkpoint.
+     *
+     * @param record to append
+     */
+    synchronized void put(Record record) {
+        if (out == null) {
+            return;
+        }
+        try {
+            writePut(out, record);
+            out.flush();
+            liveRecords++;
+        } catch (IOException io) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Cancel an entry from the checkpoint.
+     *
+     * @param bundlePath path of the bundle file or segment
+     * @param offset     offset of the bundle within the segment, 0 for a file
+     */
+    synchronized void remove(String bundlePath, long offset) {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.writeByte(RECORD_DEL);
+            out.writeUTF(bundlePath);
+            out.writeLong(offset);
+            out.flush();
+            liveRecords--;
+            deadRecords++;
+        } catch (IOException io) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Check whether the journal holds so many cancelled records that it should be replaced by
+     * a fresh snapshot.
+     *
+     * @return true if a snapshot is needed, false otherwise
+     */
+    synchronized boolean needsSnapshot() {
+        return out != null && deadRecords > SNAPSHOT_MIN_RECORDS && deadRecords > liveRecords;
+    }
+
+    /**
+     * Stop updating the checkpoint. The checkpoint remains on disk for the next startup.
+     */
+    synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException io) {
+                /* ignore */
+            }
+            out = null;
+        }
+    }
+
+    /* a checkpoint that missed an update must not be trusted */
+    private void invalidate() {
+        close();
+        file.delete();
+    }
+
+    private static void writePut(DataOutputStream out, Record record) throws IOException {
+        out.writeByte(RECORD_PUT);
+        out.writeUTF(record.bundlePath);
+        out.writeLong(record.offset);
+        out.writeLong(record.length);
+        out.writeInt(record.meta.length);
+        out.write(record.meta);
+    }
+}
@@ -0,0 +1,213 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IoSchedulers runs the disk operations of the persistent storage on a bounded pool of worker
+ * threads per storage device, instead of the unbounded {@link Schedulers#io()}. Storage paths
+ * that share the same device share the same pool so that the disk concurrency is set by the
+ * hardware and not by the number of pending operations.
+ *
+ * <p>Every pool has a bounded queue. Once the queue is full, the caller runs the operation
+ * itself which slows down the producer. Each pool reports its queue depth and the time spent
+ * by an operation waiting for a worker.
+ */
+class IoSchedulers {
+
+    private static final String DEFAULT_DEVICE = "default";
+
+    static class Device {
+        final String name;
+        final ThreadPoolExecutor executor;
+        final Scheduler scheduler;
+
+        private final AtomicInteger maxDepth = new AtomicInteger();
+        private final AtomicLong tasks = new AtomicLong();
+        private final AtomicLong totalWait = new AtomicLong();
+        private final AtomicLong maxWait = new AtomicLong();
+
+        Device(String name, int threads, int queueSize) {
+            this.name = name;
+            AtomicInteger count = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(
+                    threads,
+                    threads,
+                    60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueSize),
+                    r -> {
+                        Thread t = new Thread(r, "storage-io-" + name + "-"
+                                + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    },
+                    new ThreadPoolExecutor.CallerRunsPolicy()) {
+                @Override
+                public void execute(Runnable command) {
+                    long queued = System.nanoTime();
+                    super.execute(() -> {
+                        recordWait(queued);
+                        command.run();
+                    });
+                    maxDepth.accumulateAndGet(getQueue().size(), Math::max);
+                }
+            };
+            this.executor.allowCoreThreadTimeOut(true);
+            this.scheduler = Schedulers.from(executor);
+        }
+
+        void setThreads(int threads) {
+            if (threads > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(threads);
+                executor.setCorePoolSize(threads);
+            } else {
+                executor.setCorePoolSize(threads);
+                executor.setMaximumPoolSize(threads);
+            }
+        }
+
+        /**
+         * Number of operations waiting for a worker.
+         *
+         * @return queue depth
+         */
+        int depth() {
+            return executor.getQueue().size();
+        }
+
+        private void recordWait(long queued) {
+            long wait = System.nanoTime() - queued;
+            tasks.incrementAndGet();
+            totalWait.addAndGet(wait);
+            maxWait.accumulateAndGet(wait, Math::max);
+        }
+
+        String print() {
+            long count = tasks.get();
+            long avg = (count == 0) ? 0 : TimeUnit.NANOSECONDS.toMicros(totalWait.get() / count);
+            return "io " + name + ": threads=" + executor.getMaximumPoolSize()
+                    + " active=" + executor.getActiveCount()
+                    + " queued=" + depth()
+                    + " max_queued=" + maxDepth.get()
+                    + " tasks=" + count
+                    + " avg_wait=" + avg + "us"
+                    + " max_wait=" + TimeUnit.NANOSECONDS.toMicros(maxWait.get()) + "us";
+        }
+    }
+
+    private final Map<String, Device> devices = new HashMap<>();
+    private final Map<String, Integer> deviceThreads = new HashMap<>();
+    private final Map<String, String> pathDevices = new HashMap<>();
+    private int threads;
+    private int queueSize;
+
+    /**
+     * Constructor.
+     *
+     * @param threads   default number of worker threads per device
+     * @param queueSize maximum number of operations waiting for a worker, per device
+     */
+    IoSchedulers(int threads, int queueSize) {
+        this.threads = Math.max(1, threads);
+        this.queueSize = Math.max(1, queueSize);
+    }
+
+    /**
+     * Update the default number of worker threads per device.
+     *
+     * @param threads number of worker threads
+     */
+    synchronized void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+        devices.forEach((name, device) -> device.setThreads(threadsOf(name)));
+    }
+
+    /**
+     * Override the number of worker threads of some devices. Every override is a String of the
+     * form "path=threads" that applies to the device holding that path.
+     *
+     * @param overrides set of overrides
+     */
+    synchronized void setDeviceThreads(Set<String> overrides) {
+        deviceThreads.clear();
+        for (String override : overrides) {
+            int sep = override.lastIndexOf('=');
+            if (sep <= 0) {
+                continue;
+            }
+            try {
+                deviceThreads.put(deviceOf(override.substring(0, sep)),
+                        Math.max(1, Integer.parseInt(override.substring(sep + 1).trim())));
+            } catch (NumberFormatException nfe) {
+                /* ignore this override */
+            }
+        }
+        devices.forEach((name, device) -> device.setThreads(threadsOf(name)));
+    }
+
+    /**
+     * Return the scheduler of the device holding a storage path. The device of a path is only
+     * looked up once.
+     *
+     * @param path storage path, may be null
+     * @return Scheduler
+     */
+    synchronized Scheduler scheduler(String path) {
+        String name = (path == null || path.isEmpty())
+                ? DEFAULT_DEVICE
+                : pathDevices.computeIfAbsent(path, IoSchedulers::deviceOf);
+        return devices.computeIfAbsent(name,
+                n -> new Device(n, threadsOf(n), queueSize)).scheduler;
+    }
+
+    /**
+     * Stop all the worker threads. Operations already queued are still performed.
+     */
+    synchronized void shutdown() {
+        devices.values().forEach(device -> device.executor.shutdown());
+        devices.clear();
+    }
+
+    /**
+     * Print the queue depth and wait time of every device.
+     *
+     * @return String
+     */
+    synchronized String print() {
+        StringBuilder sb = new StringBuilder();
+        devices.values().forEach(device -> sb.append(device.print()).append("\n"));
+        return sb.toString();
+    }
+
+    private int threadsOf(String device) {
+        return deviceThreads.getOrDefault(device, threads);
+    }
+
+    /* find the device of a path, or its closest existing parent */
+    private static String deviceOf(String path) {
+        File file = new File(path).getAbsoluteFile();
+        while (file != null && !file.exists()) {
+            file = file.getParentFile();
+        }
+        if (file == null) {
+            return DEFAULT_DEVICE;
+        }
+        try {
+            return Files.getFileStore(file.toPath()).name();
+        } catch (IOException io) {
+            return file.getPath();
+        }
+    }
+}
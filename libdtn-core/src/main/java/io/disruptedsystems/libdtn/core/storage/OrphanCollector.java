@@ -0,0 +1,158 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * OrphanCollector reclaims the files of a storage folder that no bundle references anymore, for
+ * instance a blob or a bundle file left behind by a store that failed or by a crash that occurred
+ * before the index was updated.
+ *
+ * <p>A file is only collected if it is older than a grace period so that a file that is being
+ * written and is not indexed yet is left alone. Collected files are either deleted or moved to
+ * a quarantine folder where they are deleted after another grace period. The collector
+ * throttles itself to a maximum number of files per second so that it does not compete with
+ * the forwarding for the disk.
+ */
+class OrphanCollector {
+
+    static final String QUARANTINE_FOLDER = "quarantine";
+
+    private volatile long grace;
+    private volatile int rate;
+    private volatile boolean quarantine;
+
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong quarantined = new AtomicLong();
+    private final AtomicLong reclaimed = new AtomicLong();
+
+    private long start;
+    private long operations;
+
+    /**
+     * Constructor.
+     *
+     * @param grace      minimum age in milliseconds of a file before it can be collected
+     * @param rate       maximum number of files examined per second, 0 for no limit
+     * @param quarantine move orphans to a quarantine folder instead of deleting them
+     */
+    OrphanCollector(long grace, int rate, boolean quarantine) {
+        configure(grace, rate, quarantine);
+    }
+
+    /**
+     * Update the settings of the collector, they apply from the next pass.
+     *
+     * @param grace      minimum age in milliseconds of a file before it can be collected
+     * @param rate       maximum number of files examined per second, 0 for no limit
+     * @param quarantine move orphans to a quarantine folder instead of deleting them
+     */
+    void configure(long grace, int rate, boolean quarantine) {
+        this.grace = grace;
+        this.rate = rate;
+        this.quarantine = quarantine;
+    }
+
+    /**
+     * Collect the orphan files of some folders of a storage path. This call blocks until all the
+     * folders are scanned.
+     *
+     * @param root       storage path
+     * @param folders    folders of the storage path to scan
+     * @param referenced tells whether a file, given by its absolute path, is still in use
+     * @throws InterruptedException if interrupted while throttling
+     */
+    synchronized void collect(String root, String[] folders, Predicate<String> referenced)
+            throws InterruptedException {
+        start = System.nanoTime();
+        operations = 0;
+        long now = System.currentTimeMillis();
+        File quarantineFolder = new File(root, QUARANTINE_FOLDER);
+
+        for (String folder : folders) {
+            File dir = new File(root + folder);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.toPath())) {
+                for (Path path : stream) {
+                    throttle();
+                    scanned.incrementAndGet();
+                    File file = path.toFile().getAbsoluteFile();
+                    if (!file.isFile()
+                            || now - file.lastModified() < grace
+                            || referenced.test(file.getPath())) {
+                        continue;
+                    }
+                    if (quarantine) {
+                        moveToQuarantine(file, quarantineFolder);
+                    } else {
+                        delete(file);
+                    }
+                }
+            } catch (IOException io) {
+                /* folder is unavailable, try next one */
+            }
+        }
+
+        /* quarantined files are deleted once they stayed a grace period in quarantine */
+        File[] expired = quarantineFolder.listFiles(f -> now - f.lastModified() >= grace);
+        if (expired != null) {
+            for (File file : expired) {
+                throttle();
+                delete(file);
+            }
+        }
+    }
+
+    /**
+     * Print the collector statistics.
+     *
+     * @return String
+     */
+    String print() {
+        return "gc: scanned=" + scanned.get()
+                + " deleted=" + deleted.get()
+                + " quarantined=" + quarantined.get()
+                + " reclaimed=" + reclaimed.get() + "B";
+    }
+
+    private void delete(File file) {
+        long length = file.length();
+        if (file.delete()) {
+            deleted.incrementAndGet();
+            reclaimed.addAndGet(length);
+        }
+    }
+
+    private void moveToQuarantine(File file, File quarantineFolder) {
+        if (!quarantineFolder.exists() && !quarantineFolder.mkdir()) {
+            return;
+        }
+        File target = new File(quarantineFolder, file.getName());
+        try {
+            Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            target.setLastModified(System.currentTimeMillis());
+            quarantined.incrementAndGet();
+        } catch (IOException io) {
+            /* leave it for the next pass */
+        }
+    }
+
+    /* sleep if the collector is ahead of its allowed rate */
+    private void throttle() throws InterruptedException {
+        operations++;
+        if (rate <= 0) {
+            return;
+        }
+        long ahead = TimeUnit.SECONDS.toNanos(operations) / rate - (System.nanoTime() - start);
+        if (ahead > 0) {
+            TimeUnit.NANOSECONDS.sleep(ahead);
+        }
+    }
+}
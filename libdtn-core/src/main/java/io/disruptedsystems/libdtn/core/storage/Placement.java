@@ -0,0 +1,150 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import io.disruptedsystems.libdtn.core.api.StorageApi;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Placement decides on which storage path a new bundle or blob is written. It keeps a cache of
+ * the free space of every path so that placing a bundle does not cost a statfs per path. The
+ * cache is debited as bundles are placed and refreshed periodically from the filesystem.
+ *
+ * <p>With {@link StorageApi.Placement#STRIPED}, paths are picked by a smooth weighted
+ * round-robin where the weight of a path is its free space, so that consecutive writes are
+ * spread over all the disks in proportion of the space they have left. With
+ * {@link StorageApi.Placement#ORDERED}, the paths are tried in the configuration order.
+ */
+class Placement {
+
+    private static final int WEIGHT_SHIFT = 20; /* weights are counted in MiB */
+
+    private static class Slot {
+        long free;
+        long current;
+    }
+
+    private final ToLongFunction<String> statfs;
+    private final Map<String, Slot> slots = new LinkedHashMap<>();
+    private StorageApi.Placement mode = StorageApi.Placement.STRIPED;
+
+    /**
+     * Constructor.
+     *
+     * @param statfs returns the free space of a path
+     */
+    Placement(ToLongFunction<String> statfs) {
+        this.statfs = statfs;
+    }
+
+    synchronized void setMode(StorageApi.Placement mode) {
+        this.mode = mode;
+    }
+
+    synchronized void add(String path) {
+        Slot slot = new Slot();
+        slot.free = statfs.applyAsLong(path);
+        slots.put(path, slot);
+    }
+
+    synchronized void remove(String path) {
+        slots.remove(path);
+    }
+
+    /**
+     * Read the free space of every path from the filesystem.
+     */
+    void refresh() {
+        List<String> paths;
+        synchronized (this) {
+            paths = new LinkedList<>(slots.keySet());
+        }
+        paths.forEach(this::refresh);
+    }
+
+    /**
+     * Read the free space of a path from the filesystem.
+     *
+     * @param path storage path
+     */
+    void refresh(String path) {
+        long free = statfs.applyAsLong(path);
+        synchronized (this) {
+            Slot slot = slots.get(path);
+            if (slot != null) {
+                slot.free = free;
+            }
+        }
+    }
+
+    /**
+     * Cached free space of a path.
+     *
+     * @param path storage path
+     * @return free space in bytes, 0 if the path is unknown
+     */
+    synchronized long free(String path) {
+        Slot slot = slots.get(path);
+        return (slot == null) ? 0 : slot.free;
+    }
+
+    /**
+     * Debit the cached free space of a path once some bytes were written to it.
+     *
+     * @param path  storage path
+     * @param bytes written
+     */
+    synchronized void consume(String path, long bytes) {
+        Slot slot = slots.get(path);
+        if (slot != null) {
+            slot.free -= bytes;
+        }
+    }
+
+    /**
+     * Order in which the paths should be tried for the next write. The first path is the one
+     * elected by the placement policy, the others are fallbacks.
+     *
+     * @return list of storage paths
+     */
+    synchronized List<String> order() {
+        List<String> order = new LinkedList<>(slots.keySet());
+        if (mode == StorageApi.Placement.ORDERED || order.size() < 2) {
+            return order;
+        }
+
+        /* smooth weighted round-robin */
+        long total = 0;
+        Slot best = null;
+        String elected = null;
+        for (Map.Entry<String, Slot> e : slots.entrySet()) {
+            Slot slot = e.getValue();
+            long weight = weight(slot);
+            slot.current += weight;
+            total += weight;
+            if (weight > 0 && (best == null || slot.current > best.current)) {
+                best = slot;
+                elected = e.getKey();
+            }
+        }
+        if (best != null) {
+            best.current -= total;
+        }
+
+        /* fallbacks are the paths with the most space left */
+        order.sort(Comparator.comparingLong((String p) -> slots.get(p).free).reversed());
+        if (elected != null) {
+            order.remove(elected);
+            order.add(0, elected);
+        }
+        return order;
+    }
+
+    private static long weight(Slot slot) {
+        return (slot.free <= 0) ? 0 : Math.max(1, slot.free >> WEIGHT_SHIFT);
+    }
+}
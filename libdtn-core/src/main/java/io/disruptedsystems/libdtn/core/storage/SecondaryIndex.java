@@ -0,0 +1,154 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import io.disruptedsystems.libdtn.common.data.Bundle;
+import io.disruptedsystems.libdtn.common.data.BundleId;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * SecondaryIndex maintains lookup tables over the storage index so that the bundles addressed
+ * to a given destination, sent by a given source, expiring before a given time or waiting for
+ * a given delivery sink can be listed without scanning every entry of the storage.
+ *
+ * <p>Eids are keyed by their string representation because not every Eid implementation
+ * overrides equals and hashCode. Bundles without a creation timestamp have no known expiration
+ * time and are left out of the expiry table.
+ */
+class SecondaryIndex {
+
+    private static class Keys {
+        final String destination;
+        final String source;
+        final long expiry;
+        final String sink;
+
+        Keys(Bundle bundle, String sink) {
+            this.destination = bundle.getDestination().getEidString();
+            this.source = bundle.getSource().getEidString();
+            this.expiry = bundle.getCreationTimestamp() + bundle.getLifetime();
+            this.sink = sink;
+        }
+    }
+
+    private Map<BundleId, Keys> keys = new HashMap<>();
+    private Map<String, Set<BundleId>> byDestination = new HashMap<>();
+    private Map<String, Set<BundleId>> bySource = new HashMap<>();
+    private Map<String, Set<BundleId>> bySink = new HashMap<>();
+    private TreeMap<Long, Set<BundleId>> byExpiry = new TreeMap<>();
+
+    /**
+     * Index a bundle. If the bundle was already indexed, its previous keys are replaced.
+     *
+     * @param bid    of the bundle
+     * @param bundle the bundle or its MetaBundle
+     * @param sink   local delivery sink of the bundle, null if the bundle is not local
+     */
+    synchronized void add(BundleId bid, Bundle bundle, String sink) {
+        remove(bid);
+        Keys k = new Keys(bundle, sink);
+        keys.put(bid, k);
+        put(byDestination, k.destination, bid);
+        put(bySource, k.source, bid);
+        if (bundle.getCreationTimestamp() != 0) {
+            put(byExpiry, k.expiry, bid);
+        }
+        if (sink != null) {
+            put(bySink, sink, bid);
+        }
+    }
+
+    /**
+     * Remove a bundle from every lookup table.
+     *
+     * @param bid of the bundle
+     */
+    synchronized void remove(BundleId bid) {
+        Keys k = keys.remove(bid);
+        if (k == null) {
+            return;
+        }
+        drop(byDestination, k.destination, bid);
+        drop(bySource, k.source, bid);
+        drop(byExpiry, k.expiry, bid);
+        if (k.sink != null) {
+            drop(bySink, k.sink, bid);
+        }
+    }
+
+    synchronized List<BundleId> destination(String eid) {
+        return copy(byDestination.get(eid));
+    }
+
+    synchronized List<BundleId> source(String eid) {
+        return copy(bySource.get(eid));
+    }
+
+    synchronized List<BundleId> sink(String sink) {
+        return copy(bySink.get(sink));
+    }
+
+    /**
+     * Remove from the expiry table the bundles whose lifetime ends at or before a given time.
+     * Such bundles remain in the other tables until they are removed from the index.
+     *
+     * @param timestamp in milliseconds, same reference as the bundle creation timestamp
+     * @return the expired bundles, soonest first
+     */
+    synchronized List<BundleId> pollExpired(long timestamp) {
+        List<BundleId> ret = new LinkedList<>();
+        Map<Long, Set<BundleId>> expired = byExpiry.headMap(timestamp, true);
+        for (Set<BundleId> bids : expired.values()) {
+            ret.addAll(bids);
+        }
+        expired.clear();
+        return ret;
+    }
+
+    /**
+     * Return the earliest expiration time in the expiry table.
+     *
+     * @return a timestamp in milliseconds, Long.MAX_VALUE if the table is empty
+     */
+    synchronized long nextExpiry() {
+        return byExpiry.isEmpty() ? Long.MAX_VALUE : byExpiry.firstKey();
+    }
+
+    /**
+     * List the bundles whose lifetime ends strictly before a given time, soonest first.
+     *
+     * @param timestamp in milliseconds, same reference as the bundle creation timestamp
+     * @return list of bundle id
+     */
+    synchronized List<BundleId> expiringBefore(long timestamp) {
+        List<BundleId> ret = new LinkedList<>();
+        for (Set<BundleId> bids : byExpiry.headMap(timestamp).values()) {
+            ret.addAll(bids);
+        }
+        return ret;
+    }
+
+    private static <K> void put(Map<K, Set<BundleId>> table, K key, BundleId bid) {
+        table.computeIfAbsent(key, x -> new LinkedHashSet<>()).add(bid);
+    }
+
+    private static <K> void drop(Map<K, Set<BundleId>> table, K key, BundleId bid) {
+        Set<BundleId> bids = table.get(key);
+        if (bids != null) {
+            bids.remove(bid);
+            if (bids.isEmpty()) {
+                table.remove(key);
+            }
+        }
+    }
+
+    private static List<BundleId> copy(Collection<BundleId> bids) {
+        return bids == null ? new LinkedList<>() : new LinkedList<>(bids);
+    }
+}
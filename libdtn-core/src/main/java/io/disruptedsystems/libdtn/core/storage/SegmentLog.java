@@ -0,0 +1,515 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import io.reactivex.rxjava3.core.Flowable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * SegmentLog is an append-only log of serialized bundles. Instead of creating one file per
+ * bundle, bundles are appended one after the other into large segment files and the index only
+ * keeps the offset of the record within its segment. Removing a bundle appends a tombstone, and
+ * segments that are mostly made of dead records are compacted by copying their live records at
+ * the end of the log and deleting the segment.
+ *
+ * <p>Every record starts with a small binary header followed by a record specific body:
+ *
+ * <pre>
+ *    +-------+------+--------+-----+-------------------------------------------+
+ *    | magic | type | bidlen | bid | PUT:       length (int) + data            |
+ *    | int   | byte | short  |     | TOMBSTONE: segment id (int) + offset (long)|
+ *    +-------+------+--------+-----+-------------------------------------------+
+ * </pre>
+ *
+ * <p>A tombstone only cancels the PUT record it points to, so a bundle that was removed and
+ * stored again is never shadowed by an older tombstone. Tombstones are carried over during
+ * compaction for as long as the segment they point to still exists.
+ */
+class SegmentLog {
+
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int RECORD_MAGIC = 0x44544e53;
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_TOMBSTONE = 2;
+    private static final int RECORD_HEADER_SIZE = 7; /* magic + type + bidlen */
+    private static final double COMPACTION_RATIO = 0.5;
+
+    /**
+     * Location of a bundle record within the log.
+     */
+    static class Record {
+        final String bid;
+        final String path;   /* absolute path to the segment */
+        final long offset;   /* offset of the serialized bundle within the segment */
+        final long length;   /* length of the serialized bundle */
+
+        Record(String bid, String path, long offset, long length) {
+            this.bid = bid;
+            this.path = path;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * During compaction, the log asks the index whether a record is still referenced and
+     * notifies the index when a record was moved to a new location.
+     */
+    interface LiveRecords {
+        boolean isLive(Record record);
+
+        void relocate(Record from, Record to);
+    }
+
+    private static class Segment {
+        final int id;
+        final File file;
+        long size;
+        long deadBytes;
+        FileChannel channel; /* only the active segment is kept open */
+
+        Segment(int id, File file) {
+            this.id = id;
+            this.file = file;
+            this.size = file.length();
+        }
+    }
+
+    private static class RecordHeader {
+        byte type;
+        String bid;
+        long start;
+        long dataOffset;
+        long dataLength;
+        int targetSegment;
+        long targetOffset;
+        long end;
+    }
+
+    private final File folder;
+    private final long maxSegmentSize;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private Segment active;
+
+    /**
+     * Constructor.
+     *
+     * @param folder         directory that holds the segment files
+     * @param maxSegmentSize size after which a new segment is started
+     */
+    SegmentLog(File folder, long maxSegmentSize) {
+        this.folder = folder;
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    /**
+     * Open the log and replay all the segments in order to find the live records.
+     * A record that is truncated (for instance after a crash) ends the segment, and the
+     * segment is truncated back to the last valid record.
+     *
+     * @return the list of all the bundle records that are still alive
+     * @throws IOException if the segments could not be read
+     */
+    synchronized List<Record> open() throws IOException {
+        File[] files = folder.listFiles(
+                (dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                try {
+                    int id = Integer.parseInt(file.getName().substring(
+                            SEGMENT_PREFIX.length(),
+                            file.getName().length() - SEGMENT_SUFFIX.length()));
+                    segments.put(id, new Segment(id, file));
+                } catch (NumberFormatException nfe) {
+                    /* not a segment, ignore */
+                }
+            }
+        }
+
+        Map<String, RecordHeader> live = new HashMap<>();
+        Map<String, Segment> liveSegment = new HashMap<>();
+        for (Segment segment : segments.values()) {
+            try (FileChannel in = FileChannel.open(segment.file.toPath(),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long pos = 0;
+                RecordHeader header;
+                while ((header = readHeader(in, pos, segment.size)) != null) {
+                    if (header.type == RECORD_PUT) {
+                        RecordHeader previous = live.put(header.bid, header);
+                        if (previous != null) {
+                            liveSegment.get(header.bid).deadBytes += previous.end - previous.start;
+                        }
+                        liveSegment.put(header.bid, segment);
+                    } else {
+                        RecordHeader target = live.get(header.bid);
+                        if (target != null
+                                && liveSegment.get(header.bid).id == header.targetSegment
+                                && target.dataOffset == header.targetOffset) {
+                            live.remove(header.bid);
+                            liveSegment.remove(header.bid).deadBytes += target.end - target.start;
+                        }
+                        segment.deadBytes += header.end - header.start;
+                    }
+                    pos = header.end;
+                }
+                if (pos < segment.size) {
+                    in.truncate(pos);
+                    segment.size = pos;
+                }
+            }
+        }
+
+        List<Record> ret = new LinkedList<>();
+        live.forEach((bid, header) -> ret.add(new Record(
+                bid,
+                liveSegment.get(bid).file.getAbsolutePath(),
+                header.dataOffset,
+                header.dataLength)));
+        return ret;
+    }
+
+    /**
+     * Close the log.
+     */
+    synchronized void close() {
+        if (active != null) {
+            closeSilently(active.channel);
+            active.channel = null;
+            active = null;
+        }
+        segments.clear();
+    }
+
+    /**
+     * Append a serialized bundle at the end of the log.
+     *
+     * @param bid  bundle id of the serialized bundle
+     * @param data serialized bundle
+     * @return the location of the record
+     * @throws IOException if the record could not be written
+     */
+    synchronized Record append(String bid, Flowable<ByteBuffer> data) throws IOException {
+        Segment segment = activeSegment();
+        byte[] bidBytes = bid.getBytes(StandardCharsets.UTF_8);
+        long start = segment.size;
+        long dataOffset = start + RECORD_HEADER_SIZE + bidBytes.length + 4;
+
+        ByteBuffer header = ByteBuffer.allocate((int) (dataOffset - start));
+        header.putInt(RECORD_MAGIC)
+                .put(RECORD_PUT)
+                .putShort((short) bidBytes.length)
+                .put(bidBytes)
+                .putInt(0); /* length is written once the data is in */
+        header.flip();
+
+        long pos = dataOffset;
+        try {
+            writeFully(segment.channel, header, start);
+            for (ByteBuffer buffer : data.blockingIterable()) {
+                pos += writeFully(segment.channel, buffer, pos);
+            }
+            if (pos - dataOffset > Integer.MAX_VALUE) {
+                throw new IOException("record too large for a segment");
+            }
+            ByteBuffer length = ByteBuffer.allocate(4).putInt((int) (pos - dataOffset));
+            length.flip();
+            writeFully(segment.channel, length, dataOffset - 4);
+        } catch (IOException | RuntimeException e) {
+            segment.channel.truncate(start);
+            throw (e instanceof IOException) ? (IOException) e : new IOException(e);
+        }
+
+        segment.size = pos;
+        return new Record(bid, segment.file.getAbsolutePath(), dataOffset, pos - dataOffset);
+    }
+
+    /**
+     * Mark a record as removed by appending a tombstone at the end of the log.
+     *
+     * @param record to remove
+     * @throws IOException if the tombstone could not be written
+     */
+    synchronized void remove(Record record) throws IOException {
+        Segment target = segmentOf(record.path);
+        if (target == null) {
+            return;
+        }
+
+        byte[] bidBytes = record.bid.getBytes(StandardCharsets.UTF_8);
+        target.deadBytes += RECORD_HEADER_SIZE + bidBytes.length + 4 + record.length;
+        appendTombstone(bidBytes, target.id, record.offset);
+    }
+
+    /**
+     * Flush a record to disk. Only the active segment may hold unflushed records as a segment
+     * is flushed when it is sealed.
+     *
+     * @param record to flush
+     * @throws IOException if the segment could not be flushed
+     */
+    synchronized void sync(Record record) throws IOException {
+        if (active != null && active.file.getAbsolutePath().equals(record.path)) {
+            active.channel.force(false);
+        }
+    }
+
+    /**
+     * Open a read-only channel on the segment holding a given record. Once opened, the channel
+     * remains readable even if the segment is deleted by the compaction.
+     *
+     * @param record to read
+     * @return a FileChannel
+     * @throws IOException if the segment could not be opened
+     */
+    synchronized FileChannel openForRead(Record record) throws IOException {
+        if (segmentOf(record.path) == null) {
+            throw new IOException("segment not found: " + record.path);
+        }
+        return FileChannel.open(new File(record.path).toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * Compact every sealed segment whose proportion of dead records exceeds the compaction
+     * ratio. Live records are copied at the end of the log one at a time so that concurrent
+     * append and remove operations are only blocked for the duration of a single copy.
+     *
+     * @param live callback to the index
+     * @throws IOException if a segment could not be compacted
+     */
+    void compact(LiveRecords live) throws IOException {
+        List<Segment> candidates = new LinkedList<>();
+        synchronized (this) {
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.deadBytes >= segment.size * COMPACTION_RATIO) {
+                    candidates.add(segment);
+                }
+            }
+        }
+
+        for (Segment segment : candidates) {
+            compactSegment(segment, live);
+        }
+    }
+
+    private void compactSegment(Segment segment, LiveRecords live) throws IOException {
+        String path = segment.file.getAbsolutePath();
+        try (FileChannel in = FileChannel.open(segment.file.toPath(), StandardOpenOption.READ)) {
+            long pos = 0;
+            RecordHeader header;
+            while ((header = readHeader(in, pos, segment.size)) != null) {
+                synchronized (this) {
+                    if (header.type == RECORD_PUT) {
+                        Record from = new Record(header.bid, path,
+                                header.dataOffset, header.dataLength);
+                        if (live.isLive(from)) {
+                            live.relocate(from, copy(in, header));
+                        }
+                    } else if (header.targetSegment != segment.id
+                            && segments.containsKey(header.targetSegment)) {
+                        appendTombstone(header.bid.getBytes(StandardCharsets.UTF_8),
+                                header.targetSegment, header.targetOffset);
+                    }
+                }
+                pos = header.end;
+            }
+        }
+
+        synchronized (this) {
+            /* the copied records must be on disk before the old segment disappears */
+            if (active != null) {
+                active.channel.force(false);
+            }
+            segments.remove(segment.id);
+            if (!segment.file.delete()) {
+                throw new IOException("could not delete segment: " + path);
+            }
+        }
+    }
+
+    private Record copy(FileChannel in, RecordHeader header) throws IOException {
+        Segment segment = activeSegment();
+        byte[] bidBytes = header.bid.getBytes(StandardCharsets.UTF_8);
+        long start = segment.size;
+        long dataOffset = start + RECORD_HEADER_SIZE + bidBytes.length + 4;
+
+        ByteBuffer head = ByteBuffer.allocate((int) (dataOffset - start));
+        head.putInt(RECORD_MAGIC)
+                .put(RECORD_PUT)
+                .putShort((short) bidBytes.length)
+                .put(bidBytes)
+                .putInt((int) header.dataLength);
+        head.flip();
+
+        try {
+            writeFully(segment.channel, head, start);
+            long copied = 0;
+            while (copied < header.dataLength) {
+                segment.channel.position(dataOffset + copied);
+                long n = in.transferTo(header.dataOffset + copied,
+                        header.dataLength - copied, segment.channel);
+                if (n <= 0) {
+                    throw new IOException("unexpected end of segment");
+                }
+                copied += n;
+            }
+        } catch (IOException io) {
+            segment.channel.truncate(start);
+            throw io;
+        }
+
+        segment.size = dataOffset + header.dataLength;
+        return new Record(header.bid, segment.file.getAbsolutePath(),
+                dataOffset, header.dataLength);
+    }
+
+    private void appendTombstone(byte[] bidBytes, int targetSegment, long targetOffset)
+            throws IOException {
+        Segment segment = activeSegment();
+        ByteBuffer tombstone = ByteBuffer.allocate(RECORD_HEADER_SIZE + bidBytes.length + 12);
+        tombstone.putInt(RECORD_MAGIC)
+                .put(RECORD_TOMBSTONE)
+                .putShort((short) bidBytes.length)
+                .put(bidBytes)
+                .putInt(targetSegment)
+                .putLong(targetOffset);
+        tombstone.flip();
+        long start = segment.size;
+        try {
+            segment.size += writeFully(segment.channel, tombstone, start);
+        } catch (IOException io) {
+            segment.channel.truncate(start);
+            segment.size = start;
+            throw io;
+        }
+        segment.deadBytes += tombstone.capacity();
+    }
+
+    private Segment activeSegment() throws IOException {
+        if (active != null && active.size < maxSegmentSize) {
+            return active;
+        }
+
+        if (active != null) {
+            active.channel.force(false);
+            closeSilently(active.channel);
+            active.channel = null;
+        } else if (!segments.isEmpty() && segments.lastEntry().getValue().size < maxSegmentSize) {
+            /* reopen the last segment after a restart */
+            active = segments.lastEntry().getValue();
+            active.channel = FileChannel.open(active.file.toPath(), StandardOpenOption.WRITE);
+            return active;
+        }
+
+        int id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        File file = new File(folder,
+                SEGMENT_PREFIX + String.format("%08d", id) + SEGMENT_SUFFIX);
+        active = new Segment(id, file);
+        active.channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        active.size = 0;
+        segments.put(id, active);
+        Committer.syncDirectory(folder);
+        return active;
+    }
+
+    private Segment segmentOf(String path) {
+        for (Segment segment : segments.values()) {
+            if (segment.file.getAbsolutePath().equals(path)) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    /* read a record header, returns null if there is no valid record at this position */
+    private static RecordHeader readHeader(FileChannel in, long pos, long size) throws IOException {
+        if (size - pos < RECORD_HEADER_SIZE) {
+            return null;
+        }
+
+        ByteBuffer head = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        if (readFully(in, head, pos) < RECORD_HEADER_SIZE) {
+            return null;
+        }
+        head.flip();
+        if (head.getInt() != RECORD_MAGIC) {
+            return null;
+        }
+
+        RecordHeader header = new RecordHeader();
+        header.start = pos;
+        header.type = head.get();
+        int bidLength = head.getShort();
+        int bodyLength = (header.type == RECORD_PUT) ? 4 : 12;
+        if ((header.type != RECORD_PUT && header.type != RECORD_TOMBSTONE)
+                || bidLength <= 0
+                || pos + RECORD_HEADER_SIZE + bidLength + bodyLength > size) {
+            return null;
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(bidLength + bodyLength);
+        if (readFully(in, body, pos + RECORD_HEADER_SIZE) < body.capacity()) {
+            return null;
+        }
+        body.flip();
+        byte[] bidBytes = new byte[bidLength];
+        body.get(bidBytes);
+        header.bid = new String(bidBytes, StandardCharsets.UTF_8);
+        header.dataOffset = pos + RECORD_HEADER_SIZE + bidLength + bodyLength;
+
+        if (header.type == RECORD_PUT) {
+            header.dataLength = body.getInt();
+            if (header.dataLength <= 0 || header.dataOffset + header.dataLength > size) {
+                return null;
+            }
+            header.end = header.dataOffset + header.dataLength;
+        } else {
+            header.targetSegment = body.getInt();
+            header.targetOffset = body.getLong();
+            header.end = header.dataOffset;
+        }
+        return header;
+    }
+
+    private static int readFully(FileChannel in, ByteBuffer buffer, long pos) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = in.read(buffer, pos + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static int writeFully(FileChannel out, ByteBuffer buffer, long pos)
+            throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            total += out.write(buffer, pos + total);
+        }
+        return total;
+    }
+
+    private static void closeSilently(FileChannel channel) {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException io) {
+            /* ignore */
+        }
+    }
+}
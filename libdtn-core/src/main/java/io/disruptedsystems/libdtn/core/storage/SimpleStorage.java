@@ -12,40 +12,58 @@ import io.marlinski.libcbor.CBOR;
 import io.marlinski.libcbor.CborEncoder;
 import io.marlinski.libcbor.CborParser;
 import io.marlinski.libcbor.rxparser.RxParserException;
+import io.disruptedsystems.libdtn.common.data.BlockBlob;
 import io.disruptedsystems.libdtn.common.data.Bundle;
 import io.disruptedsystems.libdtn.common.data.BundleId;
 import io.disruptedsystems.libdtn.common.data.CanonicalBlock;
 import io.disruptedsystems.libdtn.common.data.MetaBundle;
+import io.disruptedsystems.libdtn.common.data.PrimaryBlock;
 import io.disruptedsystems.libdtn.common.data.blob.Blob;
+import io.disruptedsystems.libdtn.common.data.blob.BlobFactory;
+import io.disruptedsystems.libdtn.common.data.blob.CompressedFileBlob;
 import io.disruptedsystems.libdtn.common.data.blob.FileBlob;
+import io.disruptedsystems.libdtn.common.data.blob.MappedBlob;
 import io.disruptedsystems.libdtn.common.data.blob.NullBlob;
+import io.disruptedsystems.libdtn.common.data.blob.WritableBlob;
 import io.disruptedsystems.libdtn.common.data.bundlev7.parser.BundleV7Item;
 import io.disruptedsystems.libdtn.common.data.bundlev7.parser.PrimaryBlockItem;
 import io.disruptedsystems.libdtn.common.data.bundlev7.processor.BlockProcessorFactory;
 import io.disruptedsystems.libdtn.common.data.bundlev7.processor.ProcessingException;
+import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.BlockDataSerializerFactory;
 import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.BundleV7Serializer;
+import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.CborSize;
 import io.disruptedsystems.libdtn.common.utils.Log;
 import io.disruptedsystems.libdtn.core.CoreComponent;
 import io.marlinski.librxbus.RxBus;
 import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Single;
-import io.reactivex.rxjava3.observers.DisposableObserver;
+import io.reactivex.rxjava3.core.SingleEmitter;
+import io.reactivex.rxjava3.disposables.Disposable;
 import io.reactivex.rxjava3.schedulers.Schedulers;
 
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * SimpleStorage stores bundle in files but keep an index in memory of all the bundles in storage.
@@ -55,15 +73,38 @@ import java.util.concurrent.atomic.AtomicLong;
  *
  * <p>If the payload of the Bundle is already store in a FileBlob, the index will keep a reference
  * to it and will not serialize it within the bundle file. By so doing, a payload FileBlob need not
- * be copied multiple time.
+ * be copied multiple time. A volatile payload larger than SIMPLE_STORAGE_PAYLOAD_FILE_THRESHOLD
+ * is written raw in its own blob file as well so that a bundle pulled from storage to be
+ * forwarded carries a payload that can be mapped and sent as is rather than parsed back in
+ * memory.
  *
  * <p>The SimpleStorage is configurable through {@link ConfigurationApi} by updating two values:
  * <ul>
  * <li>COMPONENT_ENABLE_SIMPLE_STORAGE: enable/disable SimpleStorage</li>
- * <li>SIMPLE_STORAGE_PATH: update the list of path to be used as storage.
- * StorageApi priority follows the list order</li>
+ * <li>SIMPLE_STORAGE_PATH: update the list of path to be used as storage.</li>
+ * <li>SIMPLE_STORAGE_PLACEMENT: new bundles are either striped across all the paths or written
+ * to the first path of the list that has room, see {@link Placement}</li>
+ * <li>SIMPLE_STORAGE_SEGMENT_LOG: append new bundles to a {@link SegmentLog} instead of
+ * creating one file per bundle</li>
+ * <li>SIMPLE_STORAGE_SEGMENT_SIZE: size of a segment before a new one is started</li>
+ * <li>SIMPLE_STORAGE_EVICTION_POLICY and SIMPLE_STORAGE_BULK_THRESHOLD: which bundles are
+ * evicted when a path is full. An administrative record is EXPEDITED and a bundle whose payload
+ * is larger than the threshold is BULK, unless its priority was set otherwise</li>
+ * <li>SIMPLE_STORAGE_DEDUPLICATION: payload blobs are stored content-addressed by a
+ * {@link BlobStore} so that bundles with the same payload share a single file</li>
+ * <li>SIMPLE_STORAGE_IO_THREADS, SIMPLE_STORAGE_IO_QUEUE_SIZE and
+ * SIMPLE_STORAGE_IO_DEVICE_THREADS: size of the {@link IoSchedulers} pool of every device</li>
+ * <li>SIMPLE_STORAGE_COMPRESSION, SIMPLE_STORAGE_COMPRESSION_MIN_SIZE and
+ * SIMPLE_STORAGE_COMPRESSION_PATHS: bundle and blob files larger than the minimum size are
+ * deflated by a {@link Compressor}, on all the paths or only on the listed ones</li>
+ * <li>SIMPLE_STORAGE_GC_PERIOD, SIMPLE_STORAGE_GC_GRACE, SIMPLE_STORAGE_GC_RATE and
+ * SIMPLE_STORAGE_GC_QUARANTINE: periodically reclaim the files that no bundle references with
+ * an {@link OrphanCollector}</li>
  * </ul>
  *
+ * <p>Bundles already stored in either format are indexed at startup regardless of the current
+ * setting so that switching from one mode to the other does not lose any bundle.
+ *
  * @author Lucien Loiseau on 20/09/18.
  */
 public class SimpleStorage extends CoreComponent {
@@ -73,9 +114,30 @@ public class SimpleStorage extends CoreComponent {
     private static final String TMP_FOLDER = File.separator + "tmp" + File.separator;
     private static final String BLOB_FOLDER = File.separator + "blob" + File.separator;
     private static final String BUNDLE_FOLDER = File.separator + "bundle" + File.separator;
+    private static final String SEGMENT_FOLDER = File.separator + "segment" + File.separator;
+    private static final long COMPACTION_PERIOD = 60; /* in seconds */
+    private static final int BUFFER_CHUNK_SIZE = 65536;
+    private static final int BUFFER_POOL_SIZE = 64;
+    private static final long MAP_THRESHOLD = 65536;
+    private static final long MAP_WINDOW = 64 * 1024 * 1024;
 
     private Storage metaStorage;
     private CoreApi core;
+    private Map<String, SegmentLog> segmentLogs = new ConcurrentHashMap<>();
+    private Map<String, IndexCheckpoint> checkpoints = new ConcurrentHashMap<>();
+    private Disposable compaction;
+    private Committer committer = new Committer(StorageApi.Durability.NONE, 0, 1);
+    private EvictionEngine eviction = new EvictionEngine();
+    private DirectBufferPool bufferPool = new DirectBufferPool(BUFFER_CHUNK_SIZE, BUFFER_POOL_SIZE);
+    private BlobStore blobs = new BlobStore();
+    private IoSchedulers io;
+    private Placement placement = new Placement(p -> spaceLeft(p));
+    private Disposable spaceRefresh;
+    private Compressor compressor = new Compressor();
+    private OrphanCollector collector = new OrphanCollector(0, 0, false);
+    private Disposable gc;
+    private long spaceRefreshPeriod;
+    private long gcPeriod;
 
     public SimpleStorage(Storage metaStorage,
                          CoreApi core) {
@@ -90,7 +152,41 @@ public class SimpleStorage extends CoreComponent {
 
     @Override
     public void initComponent(ConfigurationApi conf, ConfigurationApi.CoreEntry entry, Log logger) {
+        /* read before the component may be brought up */
+        spaceRefreshPeriod = conf.<Integer>get(
+                ConfigurationApi.CoreEntry.SIMPLE_STORAGE_SPACE_REFRESH_PERIOD).value();
+        gcPeriod = conf.<Integer>get(ConfigurationApi.CoreEntry.SIMPLE_STORAGE_GC_PERIOD).value();
         super.initComponent(conf, entry, logger);
+        io = new IoSchedulers(
+                conf.<Integer>get(ConfigurationApi.CoreEntry.SIMPLE_STORAGE_IO_THREADS).value(),
+                conf.<Integer>get(ConfigurationApi.CoreEntry.SIMPLE_STORAGE_IO_QUEUE_SIZE)
+                        .value());
+        conf.<Integer>get(ConfigurationApi.CoreEntry.SIMPLE_STORAGE_IO_THREADS).observe()
+                .subscribe(io::setThreads);
+        conf.<Set<String>>get(ConfigurationApi.CoreEntry.SIMPLE_STORAGE_IO_DEVICE_THREADS)
+                .observe()
+                .subscribe(io::setDeviceThreads);
+        core.getConf().<StorageApi.Durability>get(
+                ConfigurationApi.CoreEntry.SIMPLE_STORAGE_DURABILITY).observe()
+                .subscribe(
+                        mode -> committer = new Committer(
+                                mode,
+                                core.getConf().<Long>get(ConfigurationApi.CoreEntry
+                                        .SIMPLE_STORAGE_GROUP_COMMIT_WINDOW).value(),
+                                core.getConf().<Integer>get(ConfigurationApi.CoreEntry
+                                        .SIMPLE_STORAGE_GROUP_COMMIT_SIZE).value()));
+        core.getConf().<StorageApi.EvictionPolicy>get(
+                ConfigurationApi.CoreEntry.SIMPLE_STORAGE_EVICTION_POLICY).observe()
+                .subscribe(eviction::setPolicy);
+        conf.<Integer>get(ConfigurationApi.CoreEntry.SIMPLE_STORAGE_GC_GRACE).observe()
+                .subscribe(v -> configureCollector(conf));
+        conf.<Integer>get(ConfigurationApi.CoreEntry.SIMPLE_STORAGE_GC_RATE).observe()
+                .subscribe(v -> configureCollector(conf));
+        conf.<Boolean>get(ConfigurationApi.CoreEntry.SIMPLE_STORAGE_GC_QUARANTINE).observe()
+                .subscribe(v -> configureCollector(conf));
+        core.getConf().<StorageApi.Placement>get(
+                ConfigurationApi.CoreEntry.SIMPLE_STORAGE_PLACEMENT).observe()
+                .subscribe(placement::setMode);
         core.getConf().<Set<String>>get(ConfigurationApi.CoreEntry.SIMPLE_STORAGE_PATH).observe()
                 .subscribe(
                         updated_paths -> {
@@ -114,21 +210,63 @@ public class SimpleStorage extends CoreComponent {
 
     @Override
     protected void componentUp() {
+        if (compaction != null) {
+            /* already up */
+            return;
+        }
+        compaction = Observable.interval(COMPACTION_PERIOD, TimeUnit.SECONDS, Schedulers.io())
+                .subscribe(
+                        i -> {
+                            compactSegmentLogs();
+                            snapshotCheckpoints();
+                        },
+                        e -> core.getLogger().w(TAG, "segment compaction stopped: "
+                                + e.getMessage()));
+        spaceRefresh = Observable.interval(spaceRefreshPeriod, TimeUnit.SECONDS, Schedulers.io())
+                .subscribe(
+                        i -> placement.refresh(),
+                        e -> core.getLogger().w(TAG, "free space refresh stopped: "
+                                + e.getMessage()));
+        if (gcPeriod > 0) {
+            gc = Observable.interval(gcPeriod, TimeUnit.SECONDS, Schedulers.io())
+                    .subscribe(
+                            i -> collectOrphans(),
+                            e -> core.getLogger().w(TAG, "orphan collector stopped: "
+                                    + e.getMessage()));
+        }
     }
 
     @Override
     protected void componentDown() {
+        if (compaction != null) {
+            compaction.dispose();
+            compaction = null;
+        }
+        if (spaceRefresh != null) {
+            spaceRefresh.dispose();
+            spaceRefresh = null;
+        }
+        if (gc != null) {
+            gc.dispose();
+            gc = null;
+        }
+        io.shutdown();
     }
 
     private LinkedList<String> storagePaths = new LinkedList<>();
 
     /**
-     * Count the number of Persistent Bundle in Storage. This method iterates over the entire index.
+     * Count the number of Persistent Bundle in Storage.
      *
      * @return number of Persistent bundle in storage
      */
     public int count() {
-        return (int) metaStorage.index.values().stream().filter(e -> e.isPersistent).count();
+        return eviction.count();
+    }
+
+    /* eviction bookkeeping, exposed to the tests */
+    EvictionEngine getEvictionEngine() {
+        return eviction;
     }
 
     private boolean removePath(String path) {
@@ -142,6 +280,17 @@ public class SimpleStorage extends CoreComponent {
                             }
                         }
                     });
+            SegmentLog log = segmentLogs.remove(path);
+            if (log != null) {
+                log.close();
+            }
+            IndexCheckpoint checkpoint = checkpoints.remove(path);
+            if (checkpoint != null) {
+                checkpoint.close();
+            }
+            eviction.removePath(path);
+            blobs.forget(path + BLOB_FOLDER);
+            placement.remove(path);
             storagePaths.remove(path);
             return true;
         }
@@ -155,6 +304,7 @@ public class SimpleStorage extends CoreComponent {
                 File ftmp = new File(path + TMP_FOLDER);
                 File fblob = new File(path + BLOB_FOLDER);
                 File fbundle = new File(path + BUNDLE_FOLDER);
+                File fsegment = new File(path + SEGMENT_FOLDER);
                 if (!ftmp.exists() && !ftmp.mkdir()) {
                     return false;
                 }
@@ -164,71 +314,469 @@ public class SimpleStorage extends CoreComponent {
                 if (!fbundle.exists() && !fbundle.mkdir()) {
                     return false;
                 }
-                indexBundlesFromPath(fbundle);
+                if (!fsegment.exists() && !fsegment.mkdir()) {
+                    return false;
+                }
+                /* the path must be known before indexing to account for its bundles */
                 storagePaths.add(path);
+                placement.add(path);
+                indexBundles(path, fbundle, fsegment);
                 return true;
             }
         }
         return false;
     }
 
-    private void indexBundlesFromPath(File folder) {
+    /*
+     * index all the bundles of a storage path. The index is restored from the checkpoint if it
+     * matches the content of the storage path, otherwise every bundle is parsed from disk.
+     */
+    private void indexBundles(String path, File bundleFolder, File segmentFolder) {
         if (!isEnabled()) {
             return;
         }
 
-        for (final File file : folder.listFiles()) {
-            /*
-             * preparing the parser. We just parse the file header and the primary block of
-             * the bundle and then build a MetaBundle that will be use for processing
-             */
-            BundleV7Item bundleParser = new BundleV7Item(
-                    core.getLogger(),
-                    core.getExtensionManager(),
-                    null);
-            CborParser parser = CBOR.parser()
-                    .cbor_open_array(2)
-                    .cbor_parse_custom_item(
-                            FileHeaderItem::new,
-                            (p, t, item) -> {
-                                p.setReg(0, item);
-                            })
-                    .cbor_open_array((p, t, s) -> {
-                    }) /* we are just parsing the primary block */
-                    .cbor_parse_custom_item(
-                            () -> new PrimaryBlockItem(
-                                    core.getExtensionManager().getEidFactory(),
-                                    core.getLogger()),
-                            (p, t, item) -> {
-                                MetaBundle meta = new MetaBundle(item.bundle);
-                                Storage.IndexEntry entry
-                                        = metaStorage.getEntryOrCreate(meta.bid, meta);
-                                entry.bundlePath = file.getAbsolutePath();
-                                entry.hasBlob = p.<FileHeaderItem>getReg(0).hasBlob;
-                                entry.blobPath = p.<FileHeaderItem>getReg(0).blobPath;
-                                entry.isPersistent = true;
-                                RxBus.post(new BundleIndexed(meta));
-                            });
+        /* the segment log is replayed in any case as it needs to be reopened */
+        List<SegmentLog.Record> segmentRecords = new LinkedList<>();
+        SegmentLog log = new SegmentLog(segmentFolder,
+                core.getConf().<Long>get(ConfigurationApi.CoreEntry.SIMPLE_STORAGE_SEGMENT_SIZE)
+                        .value());
+        try {
+            segmentRecords = log.open();
+            segmentLogs.put(path, log);
+        } catch (IOException io) {
+            core.getLogger().w(TAG, "can't open segment log: " + io.getMessage());
+        }
 
-            ByteBuffer buffer = ByteBuffer.allocate(500);
-            FileChannel in;
+        Map<String, SegmentLog.Record> segmentKeys = new HashMap<>();
+        for (SegmentLog.Record record : segmentRecords) {
+            segmentKeys.put(IndexCheckpoint.key(record.path, record.offset), record);
+        }
+        Set<String> fileKeys = new HashSet<>();
+        File[] files = bundleFolder.listFiles();
+        for (File file : files) {
+            fileKeys.add(IndexCheckpoint.key(file.getAbsolutePath(), 0));
+        }
+
+        IndexCheckpoint checkpoint = new IndexCheckpoint(new File(path));
+        Map<String, IndexCheckpoint.Record> records = checkpoint.load();
+        if (records != null
+                && records.size() == fileKeys.size() + segmentKeys.size()
+                && records.keySet().containsAll(fileKeys)
+                && records.keySet().containsAll(segmentKeys.keySet())) {
+            core.getLogger().i(TAG, "restoring index from checkpoint: " + path);
+            for (IndexCheckpoint.Record record : records.values()) {
+                try {
+                    metaParser(record.bundlePath, segmentKeys.get(record.key()))
+                            .read(ByteBuffer.wrap(record.meta));
+                } catch (RxParserException rpe) {
+                    /* ignore this record */
+                }
+            }
+        } else {
+            core.getLogger().i(TAG, "no valid checkpoint, scanning: " + path);
+            int threads = Math.max(1, core.getConf().<Integer>get(
+                    ConfigurationApi.CoreEntry.SIMPLE_STORAGE_INDEXING_THREADS).value());
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
             try {
-                in = new FileInputStream(file).getChannel();
-            } catch (FileNotFoundException fnfe) {
-                continue; /* cannot happen */
+                /* files are handed round-robin to the indexing threads */
+                Flowable.fromArray(files)
+                        .parallel(threads)
+                        .runOn(Schedulers.from(pool))
+                        .doOnNext(file -> {
+                            if (file.getName().endsWith(CompressedFileBlob.SUFFIX)) {
+                                try (InputStream in = CompressedFileBlob.decompressFrom(file)) {
+                                    streamIntoParser(in,
+                                            metaParser(file.getAbsolutePath(), null), 500);
+                                } catch (RxParserException | IOException rpe) {
+                                    /* ignore this file */
+                                }
+                                return;
+                            }
+                            try (FileChannel in = new FileInputStream(file).getChannel()) {
+                                readIntoParser(in, null,
+                                        metaParser(file.getAbsolutePath(), null), 500);
+                            } catch (RxParserException | IOException rpe) {
+                                /* ignore this file */
+                            }
+                        })
+                        .sequential()
+                        .ignoreElements()
+                        .blockingAwait();
+                Flowable.fromIterable(segmentRecords)
+                        .parallel(threads)
+                        .runOn(Schedulers.from(pool))
+                        .doOnNext(record -> {
+                            try (FileChannel in = log.openForRead(record)) {
+                                readIntoParser(in, record, metaParser(record.path, record), 500);
+                            } catch (RxParserException | IOException rpe) {
+                                /* ignore this record */
+                            }
+                        })
+                        .sequential()
+                        .ignoreElements()
+                        .blockingAwait();
+            } finally {
+                pool.shutdown();
             }
+        }
+
+        /* start a fresh journal from the current index */
+        try {
+            snapshotCheckpoint(path, checkpoint);
+            checkpoints.put(path, checkpoint);
+        } catch (IOException io) {
+            core.getLogger().w(TAG, "can't write index checkpoint: " + io.getMessage());
+        }
+    }
+
+    /*
+     * prepare the parser. We just parse the file header and the primary block of
+     * the bundle and then build a MetaBundle that will be use for processing
+     */
+    private CborParser metaParser(String bundlePath, SegmentLog.Record segment) {
+        return CBOR.parser()
+                .cbor_open_array(2)
+                .cbor_parse_custom_item(
+                        FileHeaderItem::new,
+                        (p, t, item) -> {
+                            p.setReg(0, item);
+                        })
+                .cbor_open_array((p, t, s) -> {
+                }) /* we are just parsing the primary block */
+                .cbor_parse_custom_item(
+                        () -> new PrimaryBlockItem(
+                                core.getExtensionManager().getEidFactory(),
+                                core.getLogger()),
+                        (p, t, item) -> {
+                            item.bundle.setPriority(p.<FileHeaderItem>getReg(0).priority);
+                            MetaBundle meta = new MetaBundle(item.bundle);
+                            Storage.IndexEntry entry
+                                    = metaStorage.getEntryOrCreate(meta.bid, meta);
+                            entry.bundlePath = bundlePath;
+                            entry.segment = segment;
+                            entry.hasBlob = p.<FileHeaderItem>getReg(0).hasBlob;
+                            entry.blobPath = p.<FileHeaderItem>getReg(0).blobPath;
+                            entry.isPersistent = true;
+                            if (entry.hasBlob) {
+                                blobs.acquire(entry.blobPath);
+                            }
+                            account(entry, meta,
+                                    (segment == null ? new File(bundlePath).length()
+                                            : segment.length)
+                                    + (entry.hasBlob ? new File(entry.blobPath).length() : 0));
+                            RxBus.post(new BundleIndexed(meta));
+                        });
+    }
+
+    private void snapshotCheckpoint(String path, IndexCheckpoint checkpoint) throws IOException {
+        String prefix = new File(path).getAbsolutePath() + File.separator;
+        synchronized (checkpoint) {
+            List<IndexCheckpoint.Record> records = new LinkedList<>();
+            for (Storage.IndexEntry entry : metaStorage.index.values()) {
+                if (entry.isPersistent && entry.bundlePath.startsWith(prefix)) {
+                    records.add(checkpointRecord(entry));
+                }
+            }
+            checkpoint.snapshot(records);
+        }
+    }
+
+    private void snapshotCheckpoints() {
+        checkpoints.forEach((path, checkpoint) -> {
+            if (checkpoint.needsSnapshot()) {
+                try {
+                    snapshotCheckpoint(path, checkpoint);
+                } catch (IOException io) {
+                    core.getLogger().w(TAG, "can't write index checkpoint: " + io.getMessage());
+                }
+            }
+        });
+    }
+
+    private IndexCheckpoint.Record checkpointRecord(Storage.IndexEntry entry) {
+        ByteArrayOutputStream meta = new ByteArrayOutputStream();
+        CBOR.encoder()
+                .cbor_start_array(2)  /* {header , metabundle} */
+                .cbor_start_array(3)  /* File Header = { boolean, String, priority }*/
+                .cbor_encode_boolean(entry.hasBlob)
+                .cbor_encode_text_string(entry.blobPath)
+                .cbor_encode_int(entry.bundle.getPriority().ordinal())
+                .merge(BundleV7Serializer.encode(new MetaBundle(entry.bundle),
+                        core.getExtensionManager().getBlockDataSerializerFactory()))
+                .observe()
+                .blockingForEach(buffer -> {
+                    byte[] chunk = new byte[buffer.remaining()];
+                    buffer.get(chunk);
+                    meta.write(chunk, 0, chunk.length);
+                });
+        return (entry.segment == null)
+                ? new IndexCheckpoint.Record(entry.bundlePath, 0, -1, meta.toByteArray())
+                : new IndexCheckpoint.Record(entry.bundlePath, entry.segment.offset,
+                entry.segment.length, meta.toByteArray());
+    }
 
-            /* extracting meta */
-            boolean done = false;
+    private void checkpointPut(Storage.IndexEntry entry) {
+        IndexCheckpoint checkpoint = checkpointOf(entry.bundlePath);
+        if (checkpoint != null) {
+            checkpoint.put(checkpointRecord(entry));
+        }
+    }
+
+    private void checkpointRemove(String bundlePath, long offset) {
+        IndexCheckpoint checkpoint = checkpointOf(bundlePath);
+        if (checkpoint != null) {
+            checkpoint.remove(bundlePath, offset);
+        }
+    }
+
+    private IndexCheckpoint checkpointOf(String bundlePath) {
+        for (Map.Entry<String, IndexCheckpoint> e : checkpoints.entrySet()) {
+            if (bundlePath.startsWith(new File(e.getKey()).getAbsolutePath() + File.separator)) {
+                return e.getValue();
+            }
+        }
+        return null;
+    }
+
+    /*
+     * feed the parser with the serialized bundle, either a whole bundle file or a single
+     * record of a segment log.
+     */
+    private static void readIntoParser(FileChannel in, SegmentLog.Record segment,
+                                       CborParser parser, int bufferSize)
+            throws RxParserException, IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        long pos = (segment == null) ? 0 : segment.offset;
+        long end = (segment == null) ? Long.MAX_VALUE : segment.offset + segment.length;
+        boolean done = false;
+        while (!done && pos < end) {
+            if (end - pos < buffer.capacity()) {
+                buffer.limit((int) (end - pos));
+            }
+            int read = in.read(buffer, pos);
+            if (read <= 0) {
+                break;
+            }
+            pos += read;
+            buffer.flip();
+            done = parser.read(buffer);
+            buffer.clear();
+        }
+    }
+
+    /* feed the parser with an inflated bundle file */
+    private static void streamIntoParser(InputStream in, CborParser parser, int bufferSize)
+            throws RxParserException, IOException {
+        byte[] chunk = new byte[bufferSize];
+        boolean done = false;
+        int read;
+        while (!done && (read = in.read(chunk)) > 0) {
+            done = parser.read(ByteBuffer.wrap(chunk, 0, read));
+        }
+    }
+
+    /*
+     * feed the parser with an entire serialized bundle. Large bundles are memory-mapped and
+     * handed to the parser without any intermediate copy, small ones are read at once. The
+     * mapping outlives the parsing if the parser keeps views of it in a {@link MappedBlob}.
+     */
+    private static void mapIntoParser(FileChannel in, SegmentLog.Record segment,
+                                      CborParser parser)
+            throws RxParserException, IOException {
+        long pos = (segment == null) ? 0 : segment.offset;
+        long end = (segment == null) ? in.size() : segment.offset + segment.length;
+        if (end - pos < MAP_THRESHOLD) {
+            readIntoParser(in, segment, parser, (int) Math.max(1, end - pos));
+            return;
+        }
+
+        boolean done = false;
+        while (!done && pos < end) {
+            long window = Math.min(end - pos, MAP_WINDOW);
+            MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, pos, window);
+            done = parser.read(mapped);
+            pos += window;
+        }
+    }
+
+    private void configureCollector(ConfigurationApi conf) {
+        collector.configure(
+                TimeUnit.SECONDS.toMillis(conf.<Integer>get(
+                        ConfigurationApi.CoreEntry.SIMPLE_STORAGE_GC_GRACE).value()),
+                conf.<Integer>get(ConfigurationApi.CoreEntry.SIMPLE_STORAGE_GC_RATE).value(),
+                conf.<Boolean>get(
+                        ConfigurationApi.CoreEntry.SIMPLE_STORAGE_GC_QUARANTINE).value());
+    }
+
+    /*
+     * reconcile the storage folders against the index. The segment folder is left out as its
+     * dead records are reclaimed by the compaction.
+     */
+    private void collectOrphans() throws InterruptedException {
+        Set<String> referenced = new HashSet<>();
+        for (Storage.IndexEntry entry : metaStorage.index.values()) {
+            if (entry.bundlePath != null && entry.segment == null) {
+                referenced.add(entry.bundlePath);
+            }
+            if (entry.hasBlob && entry.blobPath != null) {
+                referenced.add(entry.blobPath);
+            }
+            /* blobs of bundles in volatile storage that are not persisted yet */
+            for (CanonicalBlock block : entry.bundle.getBlocks()) {
+                if (block instanceof BlockBlob && ((BlockBlob) block).data.isFileBlob()) {
+                    try {
+                        referenced.add(new File(((BlockBlob) block).data.getFilePath())
+                                .getAbsolutePath());
+                    } catch (Blob.NotFileBlob nfb) {
+                        /* ignore */
+                    }
+                }
+            }
+        }
+
+        String[] folders = {TMP_FOLDER, BLOB_FOLDER, BUNDLE_FOLDER};
+        for (String path : new LinkedList<>(storagePaths)) {
+            collector.collect(path, folders,
+                    p -> referenced.contains(p) || blobs.count(p) > 0);
+        }
+    }
+
+    private void compactSegmentLogs() {
+        segmentLogs.forEach((path, log) -> {
             try {
-                while ((in.read(buffer) > 0) && !done) {
-                    buffer.flip();
-                    done = parser.read(buffer);
-                    buffer.clear();
+                log.compact(new SegmentLog.LiveRecords() {
+                    @Override
+                    public boolean isLive(SegmentLog.Record record) {
+                        Storage.IndexEntry entry
+                                = metaStorage.index.get(BundleId.create(record.bid));
+                        return entry != null
+                                && entry.isPersistent
+                                && entry.segment != null
+                                && entry.segment.path.equals(record.path)
+                                && entry.segment.offset == record.offset;
+                    }
+
+                    @Override
+                    public void relocate(SegmentLog.Record from, SegmentLog.Record to) {
+                        Storage.IndexEntry entry
+                                = metaStorage.index.get(BundleId.create(from.bid));
+                        entry.bundlePath = to.path;
+                        entry.segment = to;
+                        checkpointRemove(from.path, from.offset);
+                        checkpointPut(entry);
+                    }
+                });
+            } catch (IOException io) {
+                core.getLogger().w(TAG, "segment compaction failed for " + path + ": "
+                        + io.getMessage());
+            }
+        });
+    }
+
+    private SegmentLog.Record appendToSegmentLog(Bundle bundle, Flowable<ByteBuffer> data,
+                                                 long expectedSize, List<String> order)
+            throws StorageApi.StorageFullException {
+        BundleId bid = bundle.bid;
+        for (String path : order) {
+            SegmentLog log = segmentLogs.get(path);
+            if (log != null
+                    && hasRoom(path, expectedSize, bundle.getPriority())) {
+                try {
+                    return log.append(bid.getBidString(), data);
+                } catch (IOException io) {
+                    core.getLogger().w(TAG, "can't append to segment log: " + io.getMessage());
                 }
-                in.close();
-            } catch (RxParserException | IOException rpe) {
-                continue;
+            }
+        }
+        throw new StorageApi.StorageFullException();
+    }
+
+    /*
+     * check that a storage path can hold a new bundle within its quotas and the space left on
+     * disk. If not, try to make room by evicting bundles that do not have a higher priority.
+     * The space is then reserved in the cached free space of the path.
+     */
+    private boolean hasRoom(String path, long size, PrimaryBlock.Priority priority) {
+        long quotaBytes = core.getConf().<Long>get(
+                ConfigurationApi.CoreEntry.SIMPLE_STORAGE_QUOTA_BYTES).value();
+        int quotaCount = core.getConf().<Integer>get(
+                ConfigurationApi.CoreEntry.SIMPLE_STORAGE_QUOTA_COUNT).value();
+
+        long excessBytes = size - placement.free(path) + 1;
+        if (excessBytes > 0) {
+            /* the cached free space may be stale, check the disk before evicting */
+            placement.refresh(path);
+            excessBytes = size - placement.free(path) + 1;
+        }
+        if (quotaBytes > 0) {
+            excessBytes = Math.max(excessBytes, eviction.bytes(path) + size - quotaBytes);
+        }
+        int excessCount = (quotaCount > 0) ? eviction.count(path) + 1 - quotaCount : 0;
+        if (excessBytes <= 0 && excessCount <= 0) {
+            placement.consume(path, size);
+            return true;
+        }
+
+        List<BundleId> victims = eviction.victims(path,
+                Math.max(0, excessBytes),
+                Math.max(0, excessCount),
+                priority);
+        if (victims.isEmpty()) {
+            return false;
+        }
+        for (BundleId bid : victims) {
+            core.getLogger().i(TAG, "evicting " + bid.getBidString() + " from " + path);
+            metaStorage.remove(bid).onErrorComplete().blockingAwait();
+        }
+        placement.refresh(path);
+        placement.consume(path, size);
+        return true;
+    }
+
+    /*
+     * order in which the storage paths are tried to write a bundle. The first path that can
+     * hold it without evicting anything is moved to the front so that the bundle is written
+     * by the workers of the device it ends up on.
+     */
+    private List<String> writeOrder(Bundle bundle) {
+        List<String> order = placement.order();
+        long quotaBytes = core.getConf().<Long>get(
+                ConfigurationApi.CoreEntry.SIMPLE_STORAGE_QUOTA_BYTES).value();
+        int quotaCount = core.getConf().<Integer>get(
+                ConfigurationApi.CoreEntry.SIMPLE_STORAGE_QUOTA_COUNT).value();
+        long size = BundleV7Serializer.encodedSize(bundle,
+                core.getExtensionManager().getBlockDataSerializerFactory());
+        for (String path : order) {
+            if (size < placement.free(path)
+                    && (quotaBytes <= 0 || eviction.bytes(path) + size <= quotaBytes)
+                    && (quotaCount <= 0 || eviction.count(path) + 1 <= quotaCount)) {
+                order.remove(path);
+                order.add(0, path);
+                break;
+            }
+        }
+        return order;
+    }
+
+    private String storagePathOf(BundleId id) {
+        Storage.IndexEntry entry = metaStorage.index.get(id);
+        if (entry != null && entry.bundlePath != null) {
+            for (String path : storagePaths) {
+                if (entry.bundlePath.startsWith(new File(path).getAbsolutePath()
+                        + File.separator)) {
+                    return path;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void account(Storage.IndexEntry entry, Bundle bundle, long size) {
+        for (String path : storagePaths) {
+            if (entry.bundlePath.startsWith(new File(path).getAbsolutePath() + File.separator)) {
+                eviction.add(path, bundle, size);
+                return;
             }
         }
     }
@@ -243,12 +791,19 @@ public class SimpleStorage extends CoreComponent {
      */
     FileBlob createBlob(long expectedSize)
             throws StorageApi.StorageUnavailableException, StorageApi.StorageFullException {
+        return createBlob(expectedSize, PrimaryBlock.Priority.NORMAL, placement.order());
+    }
+
+    private FileBlob createBlob(long expectedSize,
+                                PrimaryBlock.Priority priority,
+                                List<String> order)
+            throws StorageApi.StorageUnavailableException, StorageApi.StorageFullException {
         if (!isEnabled()) {
             throw new StorageApi.StorageUnavailableException();
         }
 
-        for (String path : storagePaths) {
-            if (spaceLeft(path + BLOB_FOLDER) > expectedSize) {
+        for (String path : order) {
+            if (hasRoom(path, expectedSize, priority)) {
                 try {
                     File fblob = createNewFile(
                             "blob-",
@@ -278,7 +833,7 @@ public class SimpleStorage extends CoreComponent {
 
         LinkedList<String> copy = new LinkedList<>();
         copy.addAll(storagePaths);
-        copy.sort(Comparator.comparing(p -> spaceLeft(p + BLOB_FOLDER)).reversed());
+        copy.sort(Comparator.comparingLong((String p) -> placement.free(p)).reversed());
         for (String path : copy) {
             try {
                 File fblob = createNewFile("blob-", ".blob", path + BLOB_FOLDER);
@@ -290,13 +845,18 @@ public class SimpleStorage extends CoreComponent {
         throw new StorageApi.StorageFullException();
     }
 
-    private File createBundleFile(BundleId bid, long expectedSize) throws StorageApi.StorageFullException {
-        for (String path : storagePaths) {
-            if (spaceLeft(path + BUNDLE_FOLDER) > expectedSize) {
+    private File createBundleFile(Bundle bundle, long expectedSize, List<String> order,
+                                  boolean compressible)
+            throws StorageApi.StorageFullException {
+        BundleId bid = bundle.bid;
+        for (String path : order) {
+            if (hasRoom(path, expectedSize, bundle.getPriority())) {
                 try {
                     String safeBid = bid.getBidString().replaceAll("/", "_");
                     return createFile(
-                            "bundle-" + safeBid + ".bundle",
+                            "bundle-" + safeBid + ".bundle"
+                                    + (compressible && compressionFor(path)
+                                    ? CompressedFileBlob.SUFFIX : ""),
                             path + BUNDLE_FOLDER);
                 } catch (IOException io) {
                     System.out.println("IOException createNewFile: " + io.getMessage() + " : "
@@ -307,6 +867,18 @@ public class SimpleStorage extends CoreComponent {
         throw new StorageApi.StorageFullException();
     }
 
+    /* open a bundle file extended to its encoded size, so it is not grown at every write */
+    private static FileChannel preallocate(File file, long size) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(size);
+        } catch (IOException io) {
+            raf.close();
+            throw io;
+        }
+        return raf.getChannel();
+    }
+
     /**
      * store a bundle into persistent storage. This operation can take time so it is done in
      * a different thread and returns a Completable.
@@ -323,16 +895,52 @@ public class SimpleStorage extends CoreComponent {
             return Single.error(new StorageApi.BundleAlreadyExistsException());
         }
 
+        /* the path the bundle is written to is served by the workers of its own device */
+        final List<String> order = writeOrder(bundle);
         return Single.<Bundle>create(
                 s -> {
+                    bundle.setPriority(priorityOf(bundle));
+
+                    /* a large volatile payload is kept raw in a blob file of its own */
+                    Blob inline = bundle.getPayloadBlock().data;
+                    Blob spilled = spillPayload(inline, bundle.getPriority(), order);
+                    if (spilled != null) {
+                        bundle.getPayloadBlock().data = spilled;
+                    }
+
                     /* prepare bundle: we do not serialize the payload if it is a fileBLOB */
                     boolean hasBlob = false;
                     String blobPath = "";
                     Blob blob = new NullBlob();
                     if (bundle.getPayloadBlock().data.isFileBlob()) {
-                        blob = bundle.getPayloadBlock().data;
+                        Blob payload = bundle.getPayloadBlock().data;
+                        blob = payload;
                         hasBlob = true;
-                        blobPath = blob.getFilePath();
+                        try {
+                            blob = compressBlob(blob);
+                            blobPath = acquireBlob(blob.getFilePath());
+
+                            /*
+                             * the file now belongs to the BlobStore and may be shared with
+                             * other bundles, the bundle keeps a read-only view of it
+                             */
+                            Blob acquired = openBlob(blobPath);
+                            if (blob != payload) {
+                                blob.release();
+                            }
+                            payload.release();
+                            blob = acquired;
+                        } catch (IOException | Blob.NotFileBlob io) {
+                            bundle.getPayloadBlock().data = (spilled != null) ? inline : blob;
+                            if (!blobPath.isEmpty()) {
+                                releaseBlob(blobPath);
+                            } else if (spilled != null) {
+                                deleteSpilled(blob);
+                            }
+                            s.onError(new StorageApi.StorageFailedException(
+                                    "can't store payload blob: " + io.getMessage()));
+                            return;
+                        }
 
                         /* temporary remove the blob from bundle for serialization */
                         bundle.getPayloadBlock().data = new NullBlob();
@@ -343,96 +951,419 @@ public class SimpleStorage extends CoreComponent {
 
                     /*
                      * the bundle will be serialized in the file as a CBOR array containing
-                     * two item, the file header and the bundle
+                     * two item, the file header and the bundle. The encoding stops the age of
+                     * the bundle, the size is computed after it from the same age.
                      */
+                    BlockDataSerializerFactory serializerFactory
+                            = core.getExtensionManager().getBlockDataSerializerFactory();
                     CborEncoder enc = CBOR.encoder()
                             .cbor_start_array(2)  /* File = {header , bundle} */
-                            .cbor_start_array(2)  /* File Header = { boolean, String }*/
+                            .cbor_start_array(3)  /* File Header = { boolean, String, priority }*/
                             .cbor_encode_boolean(hasBlob)
                             .cbor_encode_text_string(blobPath)
-                            .merge(BundleV7Serializer.encode(bundle,
-                                    core.getExtensionManager().getBlockDataSerializerFactory()));
-
-                    /* assess file size */
-                    AtomicLong size = new AtomicLong();
-                    BundleV7Serializer.encode(bundle,
-                            core.getExtensionManager().getBlockDataSerializerFactory()).observe()
-                            .subscribe(
-                                    buffer -> size.set(size.get() + buffer.remaining()),
-                                    e -> size.set(-1),
-                                    () -> { /* ignore */ });
-
-                    /* create file */
+                            .cbor_encode_int(bundle.getPriority().ordinal())
+                            .merge(BundleV7Serializer.encode(bundle, serializerFactory));
+                    final long size = CborSize.array(2)
+                            + CborSize.array(3)
+                            + CborSize.BOOLEAN
+                            + CborSize.textString(blobPath)
+                            + CborSize.integer(bundle.getPriority().ordinal())
+                            + BundleV7Serializer.encodedSize(bundle, serializerFactory);
+
+                    /* post-serialization: we put back the blob into the bundle */
+                    final Blob original = (spilled != null) ? inline : (hasBlob ? blob : null);
+                    final Runnable restore = () -> {
+                        if (original != null) {
+                            bundle.getPayloadBlock().data = original;
+                        }
+                    };
+
+                    final boolean entryHasBlob = hasBlob;
+                    final String entryBlobPath = blobPath;
+                    final long blobSize = hasBlob ? new File(blobPath).length() : 0;
+                    boolean segmentLog = core.getConf().<Boolean>get(
+                            ConfigurationApi.CoreEntry.SIMPLE_STORAGE_SEGMENT_LOG).value();
+                    boolean compressible = core.getConf().<Boolean>get(
+                            ConfigurationApi.CoreEntry.SIMPLE_STORAGE_COMPRESSION).value()
+                            && size >= core.getConf().<Long>get(
+                            ConfigurationApi.CoreEntry.SIMPLE_STORAGE_COMPRESSION_MIN_SIZE).value();
+
+                    /*
+                     * serialize the bundle once into pooled direct buffers reserved from its
+                     * encoded size, they are then written in a single gathering write,
+                     * compressed or appended to the segment log. If the pool has no room left
+                     * for it, it is streamed straight into its file or segment and is not
+                     * compressed.
+                     */
+                    List<ByteBuffer> buffers;
+                    try {
+                        buffers = bufferPool.gather(enc.observe(), size);
+                    } catch (RuntimeException re) {
+                        restore.run();
+                        fail(s, entryBlobPath, new Throwable("bundle failed to serialize"));
+                        return;
+                    }
+                    if (buffers != null) {
+                        restore.run();
+                    }
+
+                    /* append to the segment log */
+                    if (segmentLog) {
+                        SegmentLog.Record record;
+                        try {
+                            record = appendToSegmentLog(bundle,
+                                    (buffers != null)
+                                            ? Flowable.fromIterable(buffers)
+                                            : enc.observe(BUFFER_CHUNK_SIZE),
+                                    size, order);
+                        } catch (StorageApi.StorageFullException | RuntimeException e) {
+                            record = null;
+                        } finally {
+                            if (buffers != null) {
+                                bufferPool.release(buffers);
+                            } else {
+                                restore.run();
+                            }
+                        }
+
+                        if (record == null) {
+                            fail(s, entryBlobPath, new Throwable("storage is full"));
+                            return;
+                        }
+
+                        /* the bundle is indexed once it is durable */
+                        final SegmentLog.Record committed = record;
+                        committer.commit(withBlob(entryHasBlob, entryBlobPath,
+                                segmentSyncable(record))).subscribe(
+                                () -> {
+                                    final Storage.IndexEntry entry
+                                            = metaStorage.getEntryOrCreate(meta.bid, meta);
+                                    entry.isPersistent = true;
+                                    entry.bundlePath = committed.path;
+                                    entry.segment = committed;
+                                    entry.hasBlob = entryHasBlob;
+                                    entry.blobPath = entryBlobPath;
+                                    checkpointPut(entry);
+                                    account(entry, meta, committed.length + blobSize);
+                                    bundle.tag("in_storage");
+                                    s.onSuccess(meta);
+                                },
+                                e -> {
+                                    try {
+                                        segmentLogOf(committed).remove(committed);
+                                    } catch (IOException io) {
+                                        /* ignore */
+                                    }
+                                    fail(s, entryBlobPath, new Throwable(
+                                            "bundle failed to commit: " + e.getMessage()));
+                                });
+                        return;
+                    }
+
+                    /* sample the bundle to know if it is worth compressing */
+                    compressible = compressible
+                            && buffers != null
+                            && compressor.worthCompressing(buffers);
+
+                    /* create file, the space is reserved before anything is serialized */
                     File fbundle;
                     try {
-                        fbundle = createBundleFile(bundle.bid, size.get());
+                        fbundle = createBundleFile(bundle, size, order, compressible);
                     } catch (StorageApi.StorageFullException sfe) {
-                        if (hasBlob) {
-                            bundle.getPayloadBlock().data = blob;
+                        if (buffers != null) {
+                            bufferPool.release(buffers);
+                        } else {
+                            restore.run();
                         }
-                        s.onError(new Throwable("storage is full"));
+                        fail(s, entryBlobPath, new Throwable("storage is full"));
                         return;
                     }
 
-                    /* actual serialization of the bundle */
-                    OutputStream out = new BufferedOutputStream(new FileOutputStream(fbundle));
-                    enc.observe().toObservable().subscribe(
-                            new DisposableObserver<ByteBuffer>() {
-                                @Override
-                                public void onNext(ByteBuffer buffer) {
-                                    try {
+                    /* actual write of the bundle, compressed, gathered or streamed */
+                    try {
+                        if (fbundle.getName().endsWith(CompressedFileBlob.SUFFIX)) {
+                            long gathered = 0;
+                            for (ByteBuffer buffer : buffers) {
+                                gathered += buffer.remaining();
+                            }
+                            compressor.compress(buffers, gathered, fbundle);
+                        } else {
+                            try (FileChannel out = preallocate(fbundle, size)) {
+                                if (buffers != null) {
+                                    ByteBuffer[] array = buffers.toArray(new ByteBuffer[0]);
+                                    while (array[array.length - 1].hasRemaining()) {
+                                        out.write(array);
+                                    }
+                                } else {
+                                    for (ByteBuffer buffer
+                                            : enc.observe(BUFFER_CHUNK_SIZE).blockingIterable()) {
                                         while (buffer.hasRemaining()) {
-                                            out.write(buffer.get());
+                                            out.write(buffer);
                                         }
-                                    } catch (IOException io) {
-                                        dispose();
-                                        closeSilently(out);
-                                        meta.tag("serialization_failed");
                                     }
                                 }
+                                out.truncate(out.position());
+                            }
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        fbundle.delete();
+                        meta.tag("serialization_failed");
+                    } finally {
+                        if (buffers != null) {
+                            bufferPool.release(buffers);
+                        } else {
+                            restore.run();
+                        }
+                    }
 
-                                @Override
-                                public void onError(Throwable t) {
+                    if (meta.isTagged("serialization_failed")) {
+                        fail(s, entryBlobPath,
+                                new Throwable("bundle failed to serialize into file"));
+                        return;
+                    }
+
+                    /* the bundle is indexed once it is durable */
+                    committer.commit(withBlob(entryHasBlob, entryBlobPath,
+                            Committer.file(fbundle),
+                            Committer.directory(fbundle.getParentFile()))).subscribe(
+                                () -> {
+                                    final Storage.IndexEntry entry
+                                            = metaStorage.getEntryOrCreate(meta.bid, meta);
+                                    entry.isPersistent = true;
+                                    entry.bundlePath = fbundle.getAbsolutePath();
+                                    entry.hasBlob = entryHasBlob;
+                                    entry.blobPath = entryBlobPath;
+                                    checkpointPut(entry);
+                                    account(entry, meta, fbundle.length() + blobSize);
+                                    bundle.tag("in_storage");
+                                    s.onSuccess(meta);
+                                },
+                                e -> {
                                     fbundle.delete();
-                                    closeSilently(out);
-                                    meta.tag("serialization_failed");
-                                }
+                                    fail(s, entryBlobPath, new Throwable(
+                                            "bundle failed to commit: " + e.getMessage()));
+                                });
+                }
+        ).subscribeOn(io.scheduler(order.isEmpty() ? null : order.get(0)));
+    }
 
-                                @Override
-                                public void onComplete() {
-                                    closeSilently(out);
-                                }
-                            });
+    /*
+     * priority of a bundle with regard to eviction. A priority that was set explicitly is kept,
+     * otherwise administrative records are expedited and large payloads are bulk.
+     */
+    private PrimaryBlock.Priority priorityOf(Bundle bundle) {
+        if (bundle.getPriority() != PrimaryBlock.Priority.NORMAL) {
+            return bundle.getPriority();
+        }
+        if (bundle.getV7Flag(PrimaryBlock.BundleV7Flags.ADM_RECORD)) {
+            return PrimaryBlock.Priority.EXPEDITED;
+        }
+        long threshold = core.getConf().<Long>get(
+                ConfigurationApi.CoreEntry.SIMPLE_STORAGE_BULK_THRESHOLD).value();
+        if (threshold > 0
+                && bundle.getPayloadBlock() != null
+                && bundle.getPayloadBlock().data.size() >= threshold) {
+            return PrimaryBlock.Priority.BULK;
+        }
+        return PrimaryBlock.Priority.NORMAL;
+    }
 
-                    /* post-serialization: we put back the blob into the bundle */
-                    if (hasBlob) {
-                        bundle.getPayloadBlock().data = blob;
-                    }
+    /*
+     * a bundle is only durable once its payload blob is, the blob may also just have been
+     * moved to its content address so its folder is flushed too.
+     */
+    private static Committer.Syncable[] withBlob(boolean hasBlob,
+                                                 String blobPath,
+                                                 Committer.Syncable... targets) {
+        if (!hasBlob) {
+            return targets;
+        }
+        File fblob = new File(blobPath);
+        Committer.Syncable[] all = Arrays.copyOf(targets, targets.length + 2);
+        all[targets.length] = Committer.file(fblob);
+        all[targets.length + 1] = Committer.directory(fblob.getParentFile());
+        return all;
+    }
 
-                    if (!meta.isTagged("serialization_failed")) {
-                        final Storage.IndexEntry entry
-                                = metaStorage.getEntryOrCreate(meta.bid, meta);
-                        entry.isPersistent = true;
-                        entry.bundlePath = fbundle.getAbsolutePath();
-                        entry.hasBlob = hasBlob;
-                        entry.blobPath = blobPath;
-                        bundle.tag("in_storage");
-                        s.onSuccess(meta);
-                    } else {
-                        s.onError(new Throwable("bundle failed to serialize into file"));
-                    }
-                }
-        ).subscribeOn(Schedulers.io());
+    /*
+     * take a reference on the payload blob of a bundle being stored. If deduplication is enabled
+     * and the blob lives in one of the blob folders, it is moved to its content address.
+     */
+    private String acquireBlob(String path) throws IOException {
+        if (core.getConf().<Boolean>get(
+                ConfigurationApi.CoreEntry.SIMPLE_STORAGE_DEDUPLICATION).value()
+                && blobStoragePath(path) != null) {
+            return blobs.intern(path);
+        }
+        blobs.acquire(path);
+        return path;
     }
 
-    static void closeSilently(OutputStream s) {
+    /*
+     * write a volatile payload larger than the threshold into a new blob file. Returns null if
+     * the payload is kept inline in the bundle file.
+     */
+    private FileBlob spillPayload(Blob payload,
+                                  PrimaryBlock.Priority priority,
+                                  List<String> order) {
+        long threshold = core.getConf().<Long>get(
+                ConfigurationApi.CoreEntry.SIMPLE_STORAGE_PAYLOAD_FILE_THRESHOLD).value();
+        if (threshold <= 0 || payload.isFileBlob() || payload.size() < threshold) {
+            return null;
+        }
+
+        FileBlob file;
         try {
-            s.close();
-        } catch (IOException io) {
+            file = createBlob(payload.size(), priority, order);
+        } catch (StorageApi.StorageUnavailableException | StorageApi.StorageFullException e) {
+            return null;
+        }
+        WritableBlob out = file.getWritableBlob();
+        try {
+            for (ByteBuffer buffer : payload.observe(BUFFER_CHUNK_SIZE).blockingIterable()) {
+                out.write(buffer);
+            }
+            out.close();
+            return file;
+        } catch (IOException | WritableBlob.BlobOverflowException | RuntimeException e) {
+            out.close();
+            deleteSpilled(file);
+            return null;
+        }
+    }
+
+    private static void deleteSpilled(Blob blob) {
+        try {
+            new File(blob.getFilePath()).delete();
+        } catch (Blob.NotFileBlob nfb) {
             /* ignore */
         }
     }
 
+    /*
+     * compress the payload blob of a bundle being stored if it lives in one of the blob folders,
+     * is not stored yet and is worth compressing.
+     */
+    private Blob compressBlob(Blob blob) throws IOException, Blob.NotFileBlob {
+        if (blob instanceof CompressedFileBlob
+                || !core.getConf().<Boolean>get(
+                        ConfigurationApi.CoreEntry.SIMPLE_STORAGE_COMPRESSION).value()
+                || blob.size() < core.getConf().<Long>get(
+                        ConfigurationApi.CoreEntry.SIMPLE_STORAGE_COMPRESSION_MIN_SIZE).value()) {
+            return blob;
+        }
+
+        File file = new File(blob.getFilePath()).getAbsoluteFile();
+        String storagePath = blobStoragePath(file.getPath());
+        if (storagePath == null
+                || !compressionFor(storagePath)
+                || blobs.count(file.getPath()) > 0
+                || !compressor.worthCompressing(file)) {
+            return blob;
+        }
+        return new CompressedFileBlob(compressor.compress(file).getPath());
+    }
+
+    private boolean compressionFor(String storagePath) {
+        Set<String> paths = core.getConf().<Set<String>>get(
+                ConfigurationApi.CoreEntry.SIMPLE_STORAGE_COMPRESSION_PATHS).value();
+        return paths.isEmpty() || paths.contains(storagePath);
+    }
+
+    /* storage path whose blob folder holds a blob file, null if none */
+    private String blobStoragePath(String path) {
+        File folder = new File(path).getAbsoluteFile().getParentFile();
+        for (String storagePath : storagePaths) {
+            if (folder.equals(new File(storagePath + BLOB_FOLDER).getAbsoluteFile())) {
+                return storagePath;
+            }
+        }
+        return null;
+    }
+
+    /* storage blob files are only ever deleted through the BlobStore */
+    private static FileBlob openBlob(String path) throws IOException {
+        return path.endsWith(CompressedFileBlob.SUFFIX)
+                ? new CompressedFileBlob(path)
+                : new FileBlob(path).readOnly();
+    }
+
+    private void releaseBlob(String path) {
+        try {
+            blobs.release(path);
+        } catch (IOException io) {
+            core.getLogger().w(TAG, io.getMessage() + ": " + path);
+        }
+    }
+
+    /* a bundle that failed to be stored releases its reference on the payload blob */
+    private void fail(SingleEmitter<Bundle> s, String blobPath, Throwable t) {
+        if (!blobPath.isEmpty()) {
+            releaseBlob(blobPath);
+        }
+        s.onError(t);
+    }
+
+    private Committer.Syncable segmentSyncable(SegmentLog.Record record) {
+        return new Committer.Syncable() {
+            @Override
+            public String key() {
+                return record.path;
+            }
+
+            @Override
+            public void sync() throws IOException {
+                segmentLogOf(record).sync(record);
+            }
+        };
+    }
+
+    /**
+     * Print the durability mode and the commit latency of the persistent storage.
+     *
+     * @return String
+     */
+    String printDurability() {
+        return committer.print();
+    }
+
+    /**
+     * Print the queue depth and the wait time of the storage I/O pool of every device.
+     *
+     * @return String
+     */
+    String printIo() {
+        return io.print();
+    }
+
+    /**
+     * Print the compression ratio and the time spent compressing and inflating.
+     *
+     * @return String
+     */
+    String printCompression() {
+        return compressor.print();
+    }
+
+    /**
+     * Print the number of orphan files reclaimed so far.
+     *
+     * @return String
+     */
+    String printGc() {
+        return collector.print();
+    }
+
+    private SegmentLog segmentLogOf(SegmentLog.Record record) throws IOException {
+        for (Map.Entry<String, SegmentLog> e : segmentLogs.entrySet()) {
+            String folder = new File(e.getKey() + SEGMENT_FOLDER).getAbsolutePath();
+            if (record.path.startsWith(folder + File.separator)) {
+                return e.getValue();
+            }
+        }
+        throw new IOException("no segment log for " + record.path);
+    }
+
     /**
      * Pull a bundle from storage. This operation can take some time so it is done in a different
      * thread and returns a Single RxJava object.
@@ -453,13 +1384,37 @@ public class SimpleStorage extends CoreComponent {
 
             /* pulling entry from index */
             Storage.IndexEntry entry = metaStorage.index.get(id);
-            File fbundle = new File(entry.bundlePath);
-            if (!fbundle.exists() || !fbundle.canRead()) {
+            eviction.touch(id);
+            SegmentLog.Record segment = entry.segment;
+            FileChannel in = null;
+            boolean mapped = false;
+            try {
+                if (segment != null) {
+                    /* the lock prevents the compaction from moving the record meanwhile */
+                    SegmentLog log = segmentLogOf(segment);
+                    synchronized (log) {
+                        segment = entry.segment;
+                        if (segment == null) {
+                            throw new IOException("bundle was removed");
+                        }
+                        in = log.openForRead(segment);
+                    }
+                } else if (!entry.bundlePath.endsWith(CompressedFileBlob.SUFFIX)) {
+                    in = new FileInputStream(entry.bundlePath).getChannel();
+                }
+                mapped = (in != null)
+                        && ((segment == null) ? in.size() : segment.length) >= MAP_THRESHOLD;
+            } catch (IOException io) {
                 s.onError(new StorageApi.StorageFailedException("can't read bundle file in storage: "
                         + entry.bundlePath));
                 return;
             }
 
+            /* the blobs of a mapped bundle are views of the mapping rather than copies */
+            BlobFactory blobFactory = mapped
+                    ? size -> new MappedBlob(size)
+                    : metaStorage.getBlobFactory();
+
             /* preparing file and parser */
             CborParser parser = CBOR.parser()
                     .cbor_open_array(2)
@@ -470,31 +1425,34 @@ public class SimpleStorage extends CoreComponent {
                             () -> new BundleV7Item(
                                     core.getLogger(),
                                     core.getExtensionManager(),
-                                    metaStorage.getBlobFactory()),
+                                    blobFactory),
                             (p, t, item) -> {
                                 if (p.<FileHeaderItem>getReg(0).hasBlob) {
                                     String path = p.<FileHeaderItem>getReg(0).blobPath;
                                     try {
-                                        item.bundle.getPayloadBlock().data = new FileBlob(path);
+                                        item.bundle.getPayloadBlock().data = openBlob(path);
                                     } catch (IOException io) {
                                         throw new RxParserException("can't retrieve payload blob");
                                     }
                                 }
+                                item.bundle.setPriority(p.<FileHeaderItem>getReg(0).priority);
                                 item.bundle.tag("in_storage");
                                 p.setReg(1, item.bundle); // ret value
                             });
 
             /* extracting bundle from file */
-            ByteBuffer buffer = ByteBuffer.allocate(2048);
-            FileChannel in = new FileInputStream(entry.bundlePath).getChannel();
             try {
-                boolean done = false;
-                while ((in.read(buffer) > 0) && !done) { // read buffer from file
-                    buffer.flip();
-                    done = parser.read(buffer);
-                    buffer.clear();
+                if (in == null) {
+                    long start = System.nanoTime();
+                    try (InputStream zin
+                                 = CompressedFileBlob.decompressFrom(new File(entry.bundlePath))) {
+                        streamIntoParser(zin, parser, BUFFER_CHUNK_SIZE);
+                    }
+                    compressor.inflated(start);
+                } else {
+                    mapIntoParser(in, segment, parser);
+                    in.close();
                 }
-                in.close();
             } catch (RxParserException | IOException rpe) {
                 /* should not happen */
                 s.onError(rpe);
@@ -522,7 +1480,7 @@ public class SimpleStorage extends CoreComponent {
             } else {
                 s.onError(new StorageApi.StorageFailedException("can't retrieve bundle from file"));
             }
-        }).subscribeOn(Schedulers.io());
+        }).subscribeOn(io.scheduler(storagePathOf(id)));
     }
 
     /**
@@ -548,31 +1506,51 @@ public class SimpleStorage extends CoreComponent {
             String error = "";
             Storage.IndexEntry entry = metaStorage.index.get(id);
 
-            File fbundle = new File(entry.bundlePath);
-            core.getLogger().v(TAG, "deleting " + id.getBidString()
-                    + " bundle file: "
-                    + fbundle.getAbsolutePath());
-            if (fbundle.exists() && !fbundle.canWrite()) {
-                error += "can't access bundle file for deletion";
+            if (entry.segment != null) {
+                core.getLogger().v(TAG, "deleting " + id.getBidString()
+                        + " from segment: "
+                        + entry.bundlePath);
+                try {
+                    /* the lock prevents the compaction from moving the record meanwhile */
+                    SegmentLog log = segmentLogOf(entry.segment);
+                    synchronized (log) {
+                        log.remove(entry.segment);
+                        checkpointRemove(entry.bundlePath, entry.segment.offset);
+                        entry.segment = null;
+                    }
+                } catch (IOException io) {
+                    error += "can't append tombstone to segment log";
+                }
             } else {
-                fbundle.delete();
+                File fbundle = new File(entry.bundlePath);
+                core.getLogger().v(TAG, "deleting " + id.getBidString()
+                        + " bundle file: "
+                        + fbundle.getAbsolutePath());
+                if (fbundle.exists() && !fbundle.canWrite()) {
+                    error += "can't access bundle file for deletion";
+                } else {
+                    fbundle.delete();
+                }
+                checkpointRemove(entry.bundlePath, 0);
             }
 
             if (entry.hasBlob) {
-                File fblob = new File(entry.blobPath);
-                core.getLogger().v(TAG, "deleting  " + id.getBidString()
-                        + " blob file: "
-                        + fblob.getAbsolutePath());
-                if (fblob.exists() && !fblob.canWrite()) {
-                    error += "can't access payload blob file for deletion";
-                } else {
-                    fblob.delete();
+                /* the blob file is only deleted once no other bundle shares it */
+                try {
+                    if (blobs.release(entry.blobPath)) {
+                        core.getLogger().v(TAG, "deleted " + id.getBidString()
+                                + " blob file: "
+                                + entry.blobPath);
+                    }
+                } catch (IOException io) {
+                    error += io.getMessage();
                 }
             }
             entry.hasBlob = false;
             entry.bundlePath = "";
             entry.blobPath = "";
             entry.isPersistent = false;
+            eviction.remove(id);
 
             if (!entry.isVolatile) {
                 metaStorage.removeEntry(id, entry);
@@ -602,17 +1580,35 @@ public class SimpleStorage extends CoreComponent {
                 .onErrorComplete();
     }
 
+    /* the priority was added to the header later on, older files do not have it */
     private static class FileHeaderItem implements CborParser.ParseableItem {
 
         boolean hasBlob;
         String blobPath;
+        PrimaryBlock.Priority priority = PrimaryBlock.Priority.NORMAL;
+        private long items;
 
         @Override
         public CborParser getItemParser() {
             return CBOR.parser()
-                    .cbor_open_array(2)
+                    .cbor_open_array((p, t, size) -> {
+                        if (size != 2 && size != 3) {
+                            throw new RxParserException("wrong number of item in file header");
+                        }
+                        items = size;
+                    })
                     .cbor_parse_boolean((p, b) -> hasBlob = b)
-                    .cbor_parse_text_string_full((p, str) -> blobPath = str);
+                    .cbor_parse_text_string_full((p, str) -> blobPath = str)
+                    .do_here(p -> {
+                        if (items > 2) {
+                            p.insert_now(CBOR.parser().cbor_parse_int((p2, t, i) -> {
+                                if (i < 0 || i >= PrimaryBlock.Priority.values().length) {
+                                    throw new RxParserException("unknown priority: " + i);
+                                }
+                                priority = PrimaryBlock.Priority.values()[(int) i];
+                            }));
+                        }
+                    });
         }
     }
 }
@@ -2,22 +2,30 @@ package io.disruptedsystems.libdtn.core.storage;
 
 import io.disruptedsystems.libdtn.core.api.ConfigurationApi;
 import io.disruptedsystems.libdtn.core.api.CoreApi;
+import io.disruptedsystems.libdtn.core.api.LocalEidApi;
 import io.disruptedsystems.libdtn.core.api.StorageApi;
+import io.disruptedsystems.libdtn.core.events.BundleIndexed;
+import io.disruptedsystems.libdtn.core.spi.StorageBackendSpi;
 import io.disruptedsystems.libdtn.common.data.Bundle;
 import io.disruptedsystems.libdtn.common.data.BundleId;
 import io.disruptedsystems.libdtn.common.data.CanonicalBlock;
+import io.disruptedsystems.libdtn.common.data.eid.Eid;
 import io.disruptedsystems.libdtn.common.data.blob.BaseBlobFactory;
 import io.disruptedsystems.libdtn.common.data.blob.Blob;
 import io.disruptedsystems.libdtn.common.data.blob.BlobFactory;
+import io.disruptedsystems.libdtn.common.data.blob.BlobLeakDetector;
 import io.disruptedsystems.libdtn.common.data.blob.NullBlob;
 import io.disruptedsystems.libdtn.common.data.bundlev7.processor.BlockProcessorFactory;
 import io.disruptedsystems.libdtn.common.data.bundlev7.processor.ProcessingException;
 import io.disruptedsystems.libdtn.common.utils.Log;
 import io.disruptedsystems.libdtn.core.CoreComponent;
+import io.marlinski.librxbus.RxBus;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 
+import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -44,14 +52,20 @@ public class Storage extends CoreComponent implements StorageApi {
 
         @Override
         public boolean isPersistentEnabled() {
+            if (backend != null) {
+                return true;
+            }
             return conf.<Boolean>get(ConfigurationApi.CoreEntry.COMPONENT_ENABLE_SIMPLE_STORAGE).value();
         }
 
         @Override
         public Blob createFileBlob(int expectedSize) throws BlobFactoryException {
             try {
+                if (backend != null) {
+                    return backend.createFileBlob(expectedSize);
+                }
                 return simpleStorage.createBlob(expectedSize);
-            } catch (StorageApi.StorageException se) {
+            } catch (StorageApi.StorageException | IOException se) {
                 throw new BlobFactoryException();
             }
         }
@@ -64,6 +78,7 @@ public class Storage extends CoreComponent implements StorageApi {
     private CoreBlobFactory blobFactory;
     private BlockProcessorFactory processorFactory;
     private Log logger;
+    private StorageBackendSpi backend; /* replaces SimpleStorage if selected */
 
     class IndexEntry {
         Bundle bundle;      /* either a bundle or a metabundle */
@@ -75,11 +90,15 @@ public class Storage extends CoreComponent implements StorageApi {
         boolean isVolatile = false;
         boolean isPersistent = false;
         String bundlePath; /* path to persistent bundle */
+        SegmentLog.Record segment; /* location in the segment log, null if bundle file */
         boolean hasBlob;   /* true if payload is also a file */
         String blobPath;   /* path to the payload */
     }
 
     Map<BundleId, IndexEntry> index = new ConcurrentHashMap<>();
+    SecondaryIndex secondary = new SecondaryIndex();
+    private ExpiryScheduler expiry = new ExpiryScheduler(secondary, Schedulers.io(),
+            this::bundleExpired);
 
     /**
      * Constructor.
@@ -104,6 +123,9 @@ public class Storage extends CoreComponent implements StorageApi {
     @Override
     public void initComponent(ConfigurationApi conf, ConfigurationApi.CoreEntry entry, Log logger) {
         super.initComponent(conf, entry, logger);
+        BlobLeakDetector.setLogger(logger);
+        conf.<Boolean>get(ConfigurationApi.CoreEntry.BLOB_LEAK_DETECTION).observe()
+                .subscribe(BlobLeakDetector::setEnabled);
         volatileStorage
                 .initComponent(core.getConf(), ConfigurationApi.CoreEntry.COMPONENT_ENABLE_VOLATILE_STORAGE, core.getLogger());
         simpleStorage
@@ -112,10 +134,12 @@ public class Storage extends CoreComponent implements StorageApi {
 
     @Override
     protected void componentUp() {
+        expiry.start();
     }
 
     @Override
     protected void componentDown() {
+        expiry.stop();
     }
 
     @Override
@@ -137,11 +161,38 @@ public class Storage extends CoreComponent implements StorageApi {
     IndexEntry addEntry(BundleId bid, Bundle bundle) {
         IndexEntry entry = new IndexEntry(bundle);
         index.put(bid, entry);
+        secondary.add(bid, bundle, localSink(bundle.getDestination()));
+        if (bundle.getCreationTimestamp() != 0) {
+            expiry.onIndexed(bundle.getCreationTimestamp() + bundle.getLifetime());
+        }
         bundle.tag("in_storage");
         return entry;
     }
 
-    IndexEntry getEntryOrCreate(BundleId bid, Bundle bundle) {
+    /* lifetime of an indexed bundle has ended (5.5) */
+    private void bundleExpired(BundleId bid) {
+        IndexEntry entry = index.get(bid);
+        if (entry == null || core.getBundleProtocol() == null) {
+            return;
+        }
+        logger.i(TAG, "bundle expired: " + bid.getBidString());
+        core.getBundleProtocol().bundleExpired(entry.bundle);
+    }
+
+    /* local delivery sink of a destination, as computed by the bundle protocol (5.7) */
+    private String localSink(Eid destination) {
+        LocalEidApi localEid = core.getLocalEid();
+        if (localEid == null) {
+            return null;
+        }
+        Eid localMatch = localEid.matchLocal(destination);
+        if (localMatch == null) {
+            return null;
+        }
+        return destination.getEidString().replaceFirst(localMatch.getEidString(), "");
+    }
+
+    synchronized IndexEntry getEntryOrCreate(BundleId bid, Bundle bundle) {
         if (contains(bid)) {
             return index.get(bid);
         } else {
@@ -153,7 +204,9 @@ public class Storage extends CoreComponent implements StorageApi {
     void removeEntry(BundleId bid, IndexEntry entry) {
         if (index.containsKey(bid)) {
             logger.i(TAG, "deleting from storage: " + bid.getBidString());
-            index.remove(bid, entry);
+            if (index.remove(bid, entry)) {
+                secondary.remove(bid);
+            }
         }
     }
 
@@ -175,6 +228,120 @@ public class Storage extends CoreComponent implements StorageApi {
         return index.containsKey(bid);
     }
 
+    @Override
+    public void registerBackend(StorageBackendSpi backend) {
+        String selected = conf.<String>get(ConfigurationApi.CoreEntry.STORAGE_BACKEND).value();
+        if (!backend.getModuleName().equals(selected)) {
+            logger.i(TAG, "storage backend not selected: " + backend.getModuleName());
+            return;
+        }
+        if (this.backend != null) {
+            logger.w(TAG, "storage backend already registered: "
+                    + this.backend.getModuleName());
+            return;
+        }
+
+        logger.i(TAG, "storage backend selected: " + backend.getModuleName());
+        this.backend = backend;
+        backend.open()
+                .subscribeOn(Schedulers.io())
+                .subscribe(
+                        meta -> {
+                            IndexEntry entry = getEntryOrCreate(meta.bid, meta);
+                            entry.isPersistent = true;
+                            RxBus.post(new BundleIndexed(meta));
+                        },
+                        e -> logger.w(TAG, "storage backend failed to open: "
+                                + e.getMessage()));
+    }
+
+    /* store a bundle into the persistent storage */
+    private Single<Bundle> storePersistent(Bundle bundle) {
+        if (backend == null) {
+            return simpleStorage.store(bundle);
+        }
+        if (containsPersistent(bundle.bid)) {
+            return Single.error(new BundleAlreadyExistsException());
+        }
+        return backend.store(bundle).map(meta -> {
+            IndexEntry entry = getEntryOrCreate(meta.bid, meta);
+            entry.isPersistent = true;
+            return entry.bundle;
+        });
+    }
+
+    /* pull a bundle from the persistent storage */
+    private Single<Bundle> getPersistent(BundleId id) {
+        if (backend == null) {
+            return simpleStorage.get(id);
+        }
+        if (!containsPersistent(id)) {
+            return Single.error(new BundleNotFoundException(id));
+        }
+        return backend.get(id).map(bundle -> {
+            for (CanonicalBlock block : bundle.getBlocks()) {
+                try {
+                    processorFactory.create(block.type).onPullFromStorage(block, bundle, logger);
+                } catch (BlockProcessorFactory.ProcessorNotFoundException pe) {
+                    /* ignore */
+                }
+            }
+            return bundle;
+        });
+    }
+
+    /* delete a bundle from the persistent storage */
+    private Completable removePersistent(BundleId id) {
+        if (backend == null) {
+            return simpleStorage.remove(id);
+        }
+        return backend.remove(id).doOnComplete(() -> {
+            IndexEntry entry = index.get(id);
+            if (entry != null) {
+                entry.isPersistent = false;
+                if (!entry.isVolatile) {
+                    removeEntry(id, entry);
+                }
+            }
+        });
+    }
+
+    @Override
+    public Observable<BundleId> findByDestination(Eid destination) {
+        if (!isEnabled()) {
+            return Observable.empty();
+        }
+
+        return Observable.fromIterable(secondary.destination(destination.getEidString()));
+    }
+
+    @Override
+    public Observable<BundleId> findBySource(Eid source) {
+        if (!isEnabled()) {
+            return Observable.empty();
+        }
+
+        return Observable.fromIterable(secondary.source(source.getEidString()));
+    }
+
+    @Override
+    public Observable<BundleId> findBySink(String sink) {
+        if (!isEnabled()) {
+            return Observable.empty();
+        }
+
+        return Observable.fromIterable(secondary.sink(sink));
+    }
+
+    @Override
+    public Observable<BundleId> findExpiringBefore(long timestamp) {
+        if (!isEnabled()) {
+            return Observable.empty();
+        }
+
+        return Observable.fromIterable(secondary.expiringBefore(timestamp));
+    }
+
     /**
      * check if a Bundle is stored in volatile storage.
      *
@@ -219,11 +386,11 @@ public class Storage extends CoreComponent implements StorageApi {
         }
 
         return Single.create(s -> volatileStorage.store(bundle).subscribe(
-                vb -> simpleStorage.store(vb).onErrorReturnItem(vb)
+                vb -> storePersistent(vb).onErrorReturnItem(vb)
                         .subscribe(
                                 pb -> s.onSuccess(vb),
                                 e -> s.onSuccess(vb)),
-                e -> simpleStorage.store(bundle)
+                e -> storePersistent(bundle)
                         .subscribe(
                                 s::onSuccess,
                                 s::onError)));
@@ -264,9 +431,11 @@ public class Storage extends CoreComponent implements StorageApi {
                 return Single.error(e);
             }
 
+            volatileStorage.touch(id);
             return Single.just(vb);
         } else {
-            return simpleStorage.get(id);
+            /* the bundle is about to be forwarded or delivered, bring it back to memory */
+            return getPersistent(id).doOnSuccess(volatileStorage::promote);
         }
     }
 
@@ -281,7 +450,7 @@ public class Storage extends CoreComponent implements StorageApi {
         }
 
         if (containsPersistent(id)) {
-            return simpleStorage.remove(id)
+            return removePersistent(id)
                     .onErrorComplete()
                     .andThen(volatileStorage.remove(id));
         } else {
@@ -307,6 +476,12 @@ public class Storage extends CoreComponent implements StorageApi {
             sb.append(bid.getBidString() + "  -  " + dest + "  -  " + vol + " " + per + "\n");
         });
         sb.append("\n");
+        sb.append(simpleStorage.printDurability() + "\n");
+        sb.append(simpleStorage.printIo());
+        sb.append(simpleStorage.printCompression() + "\n");
+        sb.append(simpleStorage.printGc() + "\n");
+        sb.append(blobFactory.getVolatileMemory().print() + "\n");
+        sb.append("blob leaks: " + BlobLeakDetector.leaks() + "\n");
         return sb.toString();
     }
 }
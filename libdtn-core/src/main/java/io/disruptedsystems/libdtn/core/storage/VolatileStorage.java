@@ -1,18 +1,41 @@
 package io.disruptedsystems.libdtn.core.storage;
 
+import io.disruptedsystems.libdtn.core.api.ConfigurationApi;
 import io.disruptedsystems.libdtn.core.api.CoreApi;
 import io.disruptedsystems.libdtn.core.api.StorageApi;
+import io.disruptedsystems.libdtn.common.data.BlockBlob;
 import io.disruptedsystems.libdtn.common.data.Bundle;
 import io.disruptedsystems.libdtn.common.data.BundleId;
+import io.disruptedsystems.libdtn.common.data.CanonicalBlock;
 import io.disruptedsystems.libdtn.common.data.MetaBundle;
+import io.disruptedsystems.libdtn.common.data.blob.Blob;
+import io.disruptedsystems.libdtn.common.data.blob.MappedBlob;
 import io.disruptedsystems.libdtn.core.CoreComponent;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * VolatileStorage holds all the Bundle in memory.
  *
+ * <p>When the memory held by the volatile bundles crosses a high watermark, the least recently
+ * pulled bundles that have a persistent copy are demoted, that is, their volatile copy is
+ * dropped, until the memory falls below a low watermark. A persistent bundle that is pulled
+ * from storage to be forwarded or delivered is promoted back to memory if there is room.
+ *
+ * <p>VolatileStorage holds a reference on the blobs of every volatile bundle, it is released
+ * when the bundle is removed or demoted so that the memory is freed as soon as the other
+ * holders are done with the bundle as well. The blobs that were retained are the ones released,
+ * even if the blocks of the bundle were given another blob in the meantime.
+ *
  * @author Lucien Loiseau on 26/07/18.
  */
 public class VolatileStorage extends CoreComponent {
@@ -22,6 +45,13 @@ public class VolatileStorage extends CoreComponent {
     private Storage metaStorage;
     private CoreApi core;
 
+    /* memory footprint of every volatile bundle, least recently used first */
+    private final LinkedHashMap<BundleId, Long> footprints = new LinkedHashMap<>(16, 0.75f, true);
+    /* blobs retained for every volatile bundle, guarded by footprints */
+    private final Map<BundleId, List<Blob>> retained = new HashMap<>();
+    private long usage = 0;
+    private final AtomicBoolean demoting = new AtomicBoolean(false);
+
     public VolatileStorage(Storage metaStorage, CoreApi core) {
         this.metaStorage = metaStorage;
         this.core = core;
@@ -42,12 +72,25 @@ public class VolatileStorage extends CoreComponent {
     }
 
     /**
-     * Count the number of VolatileBundle in Storage. This method iterates over the entire index.
+     * Count the number of VolatileBundle in Storage.
      *
      * @return number of volatile bundle in storage
      */
     int count() {
-        return (int) metaStorage.index.values().stream().filter(e -> e.isVolatile).count();
+        synchronized (footprints) {
+            return footprints.size();
+        }
+    }
+
+    /**
+     * Memory held by the blobs of the volatile bundles.
+     *
+     * @return number of bytes
+     */
+    long usage() {
+        synchronized (footprints) {
+            return usage;
+        }
     }
 
     /**
@@ -66,17 +109,170 @@ public class VolatileStorage extends CoreComponent {
         } else {
             Storage.IndexEntry entry = metaStorage.getEntryOrCreate(bundle.bid, bundle);
             entry.isVolatile = true;
+            track(bundle);
             return Single.just(bundle);
         }
     }
 
+    /**
+     * Mark a volatile bundle as used so that it is demoted last.
+     *
+     * @param bid of the bundle
+     */
+    void touch(BundleId bid) {
+        synchronized (footprints) {
+            footprints.get(bid);
+        }
+    }
+
+    /**
+     * Promote a bundle pulled from persistent storage back to memory, if there is room for it
+     * below the low watermark.
+     *
+     * @param bundle pulled from persistent storage
+     */
+    void promote(Bundle bundle) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        synchronized (metaStorage) {
+            Storage.IndexEntry entry = metaStorage.index.get(bundle.bid);
+            if (entry == null || entry.isVolatile || !entry.isPersistent) {
+                return;
+            }
+            synchronized (footprints) {
+                if (usage + footprint(bundle) > watermark(
+                        ConfigurationApi.CoreEntry.VOLATILE_STORAGE_LOW_WATERMARK)) {
+                    return;
+                }
+                entry.bundle = bundle;
+                entry.isVolatile = true;
+                track(bundle);
+            }
+        }
+    }
+
+    private void track(Bundle bundle) {
+        List<Blob> blobs = bundle.retainBlobs();
+        List<Blob> previousBlobs;
+        boolean spill;
+        synchronized (footprints) {
+            long size = footprint(bundle);
+            Long previous = footprints.put(bundle.bid, size);
+            usage += size - (previous == null ? 0 : previous);
+            previousBlobs = retained.put(bundle.bid, blobs);
+            spill = usage > watermark(ConfigurationApi.CoreEntry.VOLATILE_STORAGE_HIGH_WATERMARK);
+        }
+        if (previousBlobs != null) {
+            previousBlobs.forEach(Blob::release);
+        }
+        if (spill) {
+            spill();
+        }
+    }
+
+    /* stop accounting for a volatile bundle and release the blobs retained when it was tracked */
+    private void untrack(BundleId bid) {
+        List<Blob> blobs;
+        synchronized (footprints) {
+            Long size = footprints.remove(bid);
+            if (size != null) {
+                usage -= size;
+            }
+            blobs = retained.remove(bid);
+        }
+        if (blobs != null) {
+            blobs.forEach(Blob::release);
+        }
+    }
+
+    /* memory held by the blobs of a bundle, blobs backed by a file or a mapping are not counted */
+    private static long footprint(Bundle bundle) {
+        long size = 0;
+        for (CanonicalBlock block : bundle.getBlocks()) {
+            if (!(block instanceof BlockBlob)) {
+                continue;
+            }
+            Blob data = ((BlockBlob) block).data;
+            if (!data.isFileBlob() && !(data instanceof MappedBlob)) {
+                size += data.size();
+            }
+        }
+        return size;
+    }
+
+    private long watermark(ConfigurationApi.CoreEntry entry) {
+        long capacity = core.getConf().<Integer>get(
+                ConfigurationApi.CoreEntry.VOLATILE_BLOB_STORAGE_MAX_CAPACITY).value();
+        return capacity * core.getConf().<Integer>get(entry).value() / 100;
+    }
+
+    /* demote the coldest bundles in background until memory is below the low watermark */
+    private void spill() {
+        if (!demoting.compareAndSet(false, true)) {
+            return;
+        }
+
+        Schedulers.io().scheduleDirect(() -> {
+            try {
+                long low = watermark(ConfigurationApi.CoreEntry.VOLATILE_STORAGE_LOW_WATERMARK);
+                for (BundleId bid : coldest(low)) {
+                    demote(bid);
+                }
+            } finally {
+                demoting.set(false);
+            }
+        });
+    }
+
+    /* least recently used bundles with a persistent copy that must go to fall below target */
+    private List<BundleId> coldest(long target) {
+        List<BundleId> victims = new LinkedList<>();
+        synchronized (footprints) {
+            long remaining = usage;
+            for (Map.Entry<BundleId, Long> footprint : footprints.entrySet()) {
+                if (remaining <= target) {
+                    break;
+                }
+                Storage.IndexEntry entry = metaStorage.index.get(footprint.getKey());
+                if (entry != null && entry.isPersistent) {
+                    victims.add(footprint.getKey());
+                    remaining -= footprint.getValue();
+                }
+            }
+        }
+        return victims;
+    }
+
+    private void demote(BundleId bid) {
+        synchronized (metaStorage) {
+            Storage.IndexEntry entry = metaStorage.index.get(bid);
+            if (entry == null || !entry.isVolatile || !entry.isPersistent) {
+                return;
+            }
+            core.getLogger().v(TAG, "demoting bundle to persistent storage: "
+                    + bid.getBidString());
+            Bundle bundle = entry.bundle;
+            entry.bundle = new MetaBundle(bundle);
+            entry.isVolatile = false;
+            untrack(bid);
+        }
+    }
+
 
     private Completable remove(BundleId bid, Storage.IndexEntry entry) {
         return Completable.create(s -> {
-            if (!entry.isPersistent) {
-                metaStorage.removeEntry(bid, entry);
-            } else {
-                entry.bundle = new MetaBundle(entry.bundle);
+            synchronized (metaStorage) {
+                if (entry.isVolatile) {
+                    untrack(bid);
+                    if (!entry.isPersistent) {
+                        metaStorage.removeEntry(bid, entry);
+                    } else {
+                        entry.bundle = new MetaBundle(entry.bundle);
+                        entry.isVolatile = false;
+                    }
+                }
             }
             s.onComplete();
         });
@@ -91,6 +287,10 @@ public class VolatileStorage extends CoreComponent {
      */
     Completable remove(BundleId bid) {
         Storage.IndexEntry entry = metaStorage.index.get(bid);
+        if (entry == null) {
+            /* the persistent storage already removed the entry */
+            return Completable.complete();
+        }
         return remove(bid, entry);
     }
 
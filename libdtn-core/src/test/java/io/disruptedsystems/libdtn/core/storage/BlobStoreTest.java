@@ -0,0 +1,68 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Test class for the content-addressed BlobStore.
+ */
+public class BlobStoreTest {
+
+    private File dir = new File(System.getProperty("path"), "blobstoretest");
+
+    private File blob(String name, String content) throws IOException {
+        File file = new File(dir, name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes());
+        }
+        return file;
+    }
+
+    @Test
+    public void testDeduplication() throws IOException {
+        System.out.println("[+] BlobStore");
+        dir.mkdirs();
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+
+        BlobStore blobs = new BlobStore();
+
+        System.out.println("[.] identical payloads share a single blob");
+        String p1 = blobs.intern(blob("blob-1.blob", "broadcast payload").getPath());
+        String p2 = blobs.intern(blob("blob-2.blob", "broadcast payload").getPath());
+        String p3 = blobs.intern(blob("blob-3.blob", "another payload").getPath());
+        assertEquals(p1, p2);
+        assertNotEquals(p1, p3);
+        assertTrue(new File(p1).getName().startsWith(BlobStore.PREFIX));
+        assertEquals(2, dir.listFiles().length);
+        assertEquals(2, blobs.count(p1));
+
+        System.out.println("[.] interning an interned blob takes one more reference");
+        assertEquals(p1, blobs.intern(p1));
+        assertEquals(3, blobs.count(p1));
+
+        System.out.println("[.] the blob is deleted with its last reference");
+        assertFalse(blobs.release(p1));
+        assertFalse(blobs.release(p1));
+        assertTrue(new File(p1).exists());
+        assertTrue(blobs.release(p1));
+        assertFalse(new File(p1).exists());
+        assertTrue(new File(p3).exists());
+
+        System.out.println("[.] references are dropped with their folder");
+        blobs.forget(dir.getPath());
+        assertEquals(0, blobs.count(p3));
+        assertTrue(new File(p3).exists());
+        assertTrue(blobs.release(p3));
+        assertEquals(0, dir.listFiles().length);
+    }
+}
@@ -0,0 +1,62 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.disruptedsystems.libdtn.core.api.StorageApi;
+import io.reactivex.rxjava3.core.Completable;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test class for the Committer durability modes.
+ */
+public class CommitterTest {
+
+    private Committer.Syncable counting(String key, AtomicInteger syncs) {
+        return new Committer.Syncable() {
+            @Override
+            public String key() {
+                return key;
+            }
+
+            @Override
+            public void sync() {
+                syncs.incrementAndGet();
+            }
+        };
+    }
+
+    @Test
+    public void testGroupCommit() {
+        System.out.println("[+] Committer");
+        AtomicInteger syncs = new AtomicInteger();
+
+        System.out.println("[.] group commit");
+        Committer committer = new Committer(StorageApi.Durability.GROUP_COMMIT, 50, 4);
+        assertTrue(Completable.merge(Arrays.asList(
+                committer.commit(counting("segment", syncs)),
+                committer.commit(counting("segment", syncs)),
+                committer.commit(counting("segment", syncs), counting("dir", syncs))))
+                .blockingAwait(2000, TimeUnit.MILLISECONDS));
+        assertEquals(2, syncs.get());
+
+        System.out.println("[.] sync per bundle");
+        syncs.set(0);
+        committer = new Committer(StorageApi.Durability.SYNC_PER_BUNDLE, 0, 1);
+        committer.commit(counting("segment", syncs)).blockingAwait();
+        committer.commit(counting("segment", syncs)).blockingAwait();
+        assertEquals(2, syncs.get());
+
+        System.out.println("[.] no sync");
+        syncs.set(0);
+        committer = new Committer(StorageApi.Durability.NONE, 0, 1);
+        committer.commit(counting("segment", syncs)).blockingAwait();
+        assertEquals(0, syncs.get());
+        assertTrue(committer.print().contains("commits=1"));
+    }
+}
@@ -0,0 +1,86 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.disruptedsystems.libdtn.common.data.blob.CompressedFileBlob;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test class for the Compressor and the CompressedFileBlob.
+ */
+public class CompressorTest {
+
+    private File dir = new File(System.getProperty("path"), "compressortest");
+
+    private static byte[] telemetry(int size) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append("{\"sensor\":\"temp-").append(i % 16).append("\",\"value\":21.5}\n");
+        }
+        return sb.substring(0, size).getBytes();
+    }
+
+    private static byte[] read(CompressedFileBlob blob) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        blob.observe().blockingForEach(buffer -> {
+            byte[] chunk = new byte[buffer.remaining()];
+            buffer.get(chunk);
+            out.write(chunk, 0, chunk.length);
+        });
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        System.out.println("[+] Compressor");
+        dir.mkdirs();
+        Compressor compressor = new Compressor();
+
+        System.out.println("[.] serialized bundles are compressed and inflated back");
+        byte[] text = telemetry(200000);
+        List<ByteBuffer> buffers = Arrays.asList(
+                ByteBuffer.wrap(text, 0, 70000),
+                ByteBuffer.wrap(text, 70000, text.length - 70000));
+        assertTrue(compressor.worthCompressing(buffers));
+        File fbundle = new File(dir, "bundle-test.bundle" + CompressedFileBlob.SUFFIX);
+        compressor.compress(buffers, text.length, fbundle);
+        assertTrue(fbundle.length() < text.length / 4);
+        assertEquals(70000, buffers.get(0).remaining());
+        CompressedFileBlob blob = new CompressedFileBlob(fbundle.getAbsolutePath());
+        assertEquals(text.length, blob.size());
+        assertArrayEquals(text, read(blob));
+        fbundle.delete();
+
+        System.out.println("[.] blob files are replaced by their compressed copy");
+        File fblob = new File(dir, "blob-test.blob");
+        try (FileOutputStream out = new FileOutputStream(fblob)) {
+            out.write(text);
+        }
+        assertTrue(compressor.worthCompressing(fblob));
+        File compressed = compressor.compress(fblob);
+        assertFalse(fblob.exists());
+        assertTrue(compressed.getName().endsWith(CompressedFileBlob.SUFFIX));
+        assertArrayEquals(text, read(new CompressedFileBlob(compressed.getAbsolutePath())));
+        compressed.delete();
+
+        System.out.println("[.] incompressible data is skipped");
+        byte[] noise = new byte[100000];
+        new Random(42).nextBytes(noise);
+        assertFalse(compressor.worthCompressing(
+                Collections.singletonList(ByteBuffer.wrap(noise))));
+        assertTrue(compressor.print().contains("skipped=1"));
+    }
+}
@@ -0,0 +1,58 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import io.reactivex.rxjava3.core.Flowable;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test class for the bounded DirectBufferPool.
+ */
+public class DirectBufferPoolTest {
+
+    private static Flowable<ByteBuffer> data(int size) {
+        return Flowable.just(ByteBuffer.allocate(size));
+    }
+
+    private static int size(List<ByteBuffer> buffers) {
+        int size = 0;
+        for (ByteBuffer buffer : buffers) {
+            size += buffer.remaining();
+        }
+        return size;
+    }
+
+    @Test
+    public void testBound() {
+        System.out.println("[+] DirectBufferPool");
+        DirectBufferPool pool = new DirectBufferPool(1024, 4);
+
+        System.out.println("[.] gather within the pool");
+        List<ByteBuffer> first = pool.gather(data(2500), 2500);
+        assertNotNull(first);
+        assertEquals(3, first.size());
+        assertEquals(2500, size(first));
+
+        System.out.println("[.] the pool has no room for a larger bundle");
+        assertNull(pool.gather(data(2048), 2048));
+
+        System.out.println("[.] an under-estimated bundle that does not fit is not gathered");
+        assertNull(pool.gather(data(2048), 1000));
+
+        System.out.println("[.] released buffers can be gathered again");
+        pool.release(first);
+        List<ByteBuffer> second = pool.gather(data(4096), 4096);
+        assertNotNull(second);
+        assertEquals(4096, size(second));
+        pool.release(second);
+
+        System.out.println("[.] a bundle larger than the pool is never gathered");
+        assertNull(pool.gather(data(5000), 5000));
+    }
+}
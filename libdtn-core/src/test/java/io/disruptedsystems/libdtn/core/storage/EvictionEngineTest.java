@@ -0,0 +1,73 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.disruptedsystems.libdtn.common.data.Bundle;
+import io.disruptedsystems.libdtn.common.data.BundleId;
+import io.disruptedsystems.libdtn.common.data.PrimaryBlock;
+import io.disruptedsystems.libdtn.common.data.eid.DtnEid;
+import io.disruptedsystems.libdtn.core.api.StorageApi;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test class for the EvictionEngine.
+ */
+public class EvictionEngineTest {
+
+    private Bundle bundle(long lifetime, PrimaryBlock.Priority priority) {
+        Bundle bundle = new Bundle(DtnEid.nullEid(), lifetime);
+        bundle.setPriority(priority);
+        return bundle;
+    }
+
+    @Test
+    public void testEvictionPolicies() {
+        System.out.println("[+] EvictionEngine");
+        Bundle b1 = bundle(50000, PrimaryBlock.Priority.NORMAL);
+        Bundle b2 = bundle(10000, PrimaryBlock.Priority.BULK);
+        Bundle b3 = bundle(30000, PrimaryBlock.Priority.EXPEDITED);
+
+        EvictionEngine engine = new EvictionEngine();
+        engine.add("/path", b1, 100);
+        engine.add("/path", b2, 100);
+        engine.add("/path", b3, 100);
+        assertEquals(300, engine.bytes("/path"));
+        assertEquals(3, engine.count("/path"));
+
+        System.out.println("[.] no eviction");
+        assertTrue(engine.victims("/path", 100, 0, PrimaryBlock.Priority.EXPEDITED).isEmpty());
+
+        System.out.println("[.] soonest expiry");
+        engine.setPolicy(StorageApi.EvictionPolicy.SOONEST_EXPIRY);
+        List<BundleId> victims = engine.victims("/path", 150, 0, PrimaryBlock.Priority.EXPEDITED);
+        assertEquals(2, victims.size());
+        assertEquals(b2.bid, victims.get(0));
+        assertEquals(b3.bid, victims.get(1));
+
+        System.out.println("[.] lowest priority");
+        engine.setPolicy(StorageApi.EvictionPolicy.LOWEST_PRIORITY);
+        victims = engine.victims("/path", 0, 2, PrimaryBlock.Priority.EXPEDITED);
+        assertEquals(b2.bid, victims.get(0));
+        assertEquals(b1.bid, victims.get(1));
+
+        System.out.println("[.] higher priority bundles are protected");
+        assertTrue(engine.victims("/path", 300, 0, PrimaryBlock.Priority.NORMAL).isEmpty());
+        assertEquals(1, engine.victims("/path", 1, 0, PrimaryBlock.Priority.BULK).size());
+
+        System.out.println("[.] least recently used");
+        engine.setPolicy(StorageApi.EvictionPolicy.LEAST_RECENTLY_USED);
+        engine.touch(b1.bid);
+        victims = engine.victims("/path", 1, 0, PrimaryBlock.Priority.EXPEDITED);
+        assertEquals(b2.bid, victims.get(0));
+
+        System.out.println("[.] remove");
+        engine.remove(b2.bid);
+        assertEquals(200, engine.bytes("/path"));
+        victims = engine.victims("/path", 1, 0, PrimaryBlock.Priority.EXPEDITED);
+        assertEquals(b3.bid, victims.get(0));
+    }
+}
@@ -0,0 +1,71 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.disruptedsystems.libdtn.common.data.Bundle;
+import io.disruptedsystems.libdtn.common.data.BundleId;
+import io.disruptedsystems.libdtn.common.data.eid.DtnEid;
+import io.reactivex.rxjava3.schedulers.TestScheduler;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test class for the ExpiryScheduler.
+ */
+public class ExpirySchedulerTest {
+
+    private Bundle bundle(long age, long lifetime) {
+        Bundle bundle = new Bundle(DtnEid.generate(), lifetime);
+        bundle.setCreationTimestamp(System.currentTimeMillis() - age);
+        return bundle;
+    }
+
+    @Test
+    public void testExpiration() {
+        System.out.println("[+] ExpiryScheduler");
+        Bundle expired1 = bundle(5000, 1000);
+        Bundle expired2 = bundle(5000, 2000);
+        Bundle pending = bundle(0, 3600000);
+        Bundle noClock = bundle(0, 1000);
+        noClock.setCreationTimestamp(0);
+
+        SecondaryIndex index = new SecondaryIndex();
+        TestScheduler scheduler = new TestScheduler();
+        List<BundleId> fired = new LinkedList<>();
+        ExpiryScheduler expiry = new ExpiryScheduler(index, scheduler, fired::add);
+
+        index.add(expired1.bid, expired1, null);
+        index.add(pending.bid, pending, null);
+        index.add(noClock.bid, noClock, null);
+
+        System.out.println("[.] bundles indexed before start");
+        expiry.start();
+        scheduler.triggerActions();
+        assertEquals(1, fired.size());
+        assertEquals(expired1.bid, fired.get(0));
+
+        System.out.println("[.] bundles indexed after start");
+        index.add(expired2.bid, expired2, null);
+        expiry.onIndexed(expired2.getCreationTimestamp() + expired2.getLifetime());
+        scheduler.triggerActions();
+        assertEquals(2, fired.size());
+        assertEquals(expired2.bid, fired.get(1));
+
+        System.out.println("[.] pending bundles are left in the expiry table");
+        assertEquals(pending.getCreationTimestamp() + pending.getLifetime(), index.nextExpiry());
+        assertTrue(index.expiringBefore(Long.MAX_VALUE).contains(pending.bid));
+        assertTrue(!index.expiringBefore(Long.MAX_VALUE).contains(noClock.bid));
+
+        System.out.println("[.] nothing fires once stopped");
+        expiry.stop();
+        Bundle expired3 = bundle(5000, 1000);
+        index.add(expired3.bid, expired3, null);
+        expiry.onIndexed(expired3.getCreationTimestamp() + expired3.getLifetime());
+        scheduler.triggerActions();
+        assertEquals(2, fired.size());
+    }
+}
@@ -0,0 +1,56 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test class for the IndexCheckpoint journal.
+ */
+public class IndexCheckpointTest {
+
+    private File dir = new File(System.getProperty("path"));
+
+    @Test
+    public void testCheckpointJournal() throws Exception {
+        synchronized (StorageTest.LOCK) {
+            System.out.println("[+] IndexCheckpoint");
+            File file = new File(dir, IndexCheckpoint.CHECKPOINT_FILE);
+            file.delete();
+
+            IndexCheckpoint checkpoint = new IndexCheckpoint(dir);
+            assertNull(checkpoint.load());
+
+            System.out.println("[.] snapshot and journal");
+            LinkedList<IndexCheckpoint.Record> records = new LinkedList<>();
+            records.add(new IndexCheckpoint.Record("/bundle/b1", 0, -1, new byte[]{1, 2, 3}));
+            records.add(new IndexCheckpoint.Record("/segment/s0", 24, 100, new byte[]{4}));
+            checkpoint.snapshot(records);
+            checkpoint.put(new IndexCheckpoint.Record("/segment/s0", 150, 10, new byte[]{5}));
+            checkpoint.remove("/bundle/b1", 0);
+            checkpoint.close();
+
+            Map<String, IndexCheckpoint.Record> loaded = checkpoint.load();
+            assertEquals(2, loaded.size());
+            assertTrue(loaded.get(IndexCheckpoint.key("/segment/s0", 24)).inSegment());
+            assertArrayEquals(new byte[]{5},
+                    loaded.get(IndexCheckpoint.key("/segment/s0", 150)).meta);
+
+            System.out.println("[.] truncated journal");
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(raf.length() - 3);
+            }
+            assertEquals(3, checkpoint.load().size());
+
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Scheduler;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test class for the bounded storage IoSchedulers.
+ */
+public class IoSchedulersTest {
+
+    @Test
+    public void testBoundedConcurrency() {
+        System.out.println("[+] IoSchedulers");
+        String path = System.getProperty("path");
+        IoSchedulers io = new IoSchedulers(2, 4);
+
+        System.out.println("[.] paths of the same device share a scheduler");
+        Scheduler scheduler = io.scheduler(path);
+        assertSame(scheduler, io.scheduler(path));
+        assertSame(scheduler, io.scheduler(path + "/does/not/exist"));
+
+        System.out.println("[.] concurrency is bounded by the number of threads");
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        Observable.range(0, 50)
+                .flatMapCompletable(i -> Completable.fromAction(() -> {
+                    if (Thread.currentThread().getName().startsWith("storage-io-")) {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        Thread.sleep(5);
+                        running.decrementAndGet();
+                    }
+                    done.incrementAndGet();
+                }).subscribeOn(scheduler))
+                .blockingAwait();
+        assertEquals(50, done.get());
+        assertTrue(maxRunning.get() <= 2);
+        assertTrue(io.print().contains("tasks="));
+
+        System.out.println("[.] device threads can be overridden");
+        io.setDeviceThreads(Collections.singleton(path + "=1"));
+        assertTrue(io.print().contains("threads=1"));
+        io.shutdown();
+    }
+}
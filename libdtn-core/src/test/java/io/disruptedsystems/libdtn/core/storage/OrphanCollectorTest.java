@@ -0,0 +1,66 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test class for the OrphanCollector.
+ */
+public class OrphanCollectorTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private File root = new File(System.getProperty("path"), "orphancollectortest");
+    private File blobs = new File(root, "blob");
+
+    private static File file(File dir, String name, long age) throws Exception {
+        File file = new File(dir, name).getAbsoluteFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[128]);
+        }
+        file.setLastModified(System.currentTimeMillis() - age);
+        return file;
+    }
+
+    @Test
+    public void testCollect() throws Exception {
+        System.out.println("[+] OrphanCollector");
+        blobs.mkdirs();
+        String[] folders = {"/blob/"};
+        String path = root.getAbsolutePath();
+
+        System.out.println("[.] old orphans are deleted, young and referenced files are kept");
+        OrphanCollector collector = new OrphanCollector(HOUR, 0, false);
+        File orphan = file(blobs, "orphan.blob", 2 * HOUR);
+        File young = file(blobs, "young.blob", 0);
+        File referenced = file(blobs, "referenced.blob", 2 * HOUR);
+        collector.collect(path, folders,
+                Collections.singleton(referenced.getPath())::contains);
+        assertFalse(orphan.exists());
+        assertTrue(young.exists());
+        assertTrue(referenced.exists());
+        assertTrue(collector.print().contains("deleted=1"));
+
+        System.out.println("[.] orphans are quarantined for a grace period");
+        collector.configure(HOUR, 100, true);
+        File quarantined = new File(new File(path, OrphanCollector.QUARANTINE_FOLDER),
+                "referenced.blob");
+        collector.collect(path, folders, p -> false);
+        assertFalse(referenced.exists());
+        assertTrue(quarantined.exists());
+        assertTrue(young.exists());
+
+        System.out.println("[.] quarantined files are deleted after the grace period");
+        quarantined.setLastModified(System.currentTimeMillis() - 2 * HOUR);
+        collector.collect(path, folders, p -> false);
+        assertFalse(quarantined.exists());
+        young.delete();
+    }
+}
@@ -0,0 +1,68 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.disruptedsystems.libdtn.core.api.StorageApi;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test class for the Placement of bundles over the storage paths.
+ */
+public class PlacementTest {
+
+    private static final long MB = 1 << 20;
+
+    @Test
+    public void testPlacement() {
+        System.out.println("[+] Placement");
+        Map<String, Long> disks = new HashMap<>();
+        disks.put("/disk1", 300 * MB);
+        disks.put("/disk2", 100 * MB);
+        disks.put("/disk3", 0L);
+        Map<String, Integer> statfs = new HashMap<>();
+        Placement placement = new Placement(p -> {
+            statfs.merge(p, 1, Integer::sum);
+            return disks.get(p);
+        });
+        placement.add("/disk1");
+        placement.add("/disk2");
+        placement.add("/disk3");
+
+        System.out.println("[.] striped placement is proportional to the free space");
+        Map<String, Integer> elected = new HashMap<>();
+        for (int i = 0; i < 400; i++) {
+            elected.merge(placement.order().get(0), 1, Integer::sum);
+        }
+        assertEquals(300, (int) elected.get("/disk1"));
+        assertEquals(100, (int) elected.get("/disk2"));
+        assertTrue(!elected.containsKey("/disk3"));
+        assertEquals(3, placement.order().size());
+
+        System.out.println("[.] placing bundles does not hit the filesystem");
+        placement.consume("/disk1", 250 * MB);
+        assertEquals(50 * MB, placement.free("/disk1"));
+        assertEquals(1, (int) statfs.get("/disk1"));
+        elected.clear();
+        for (int i = 0; i < 150; i++) {
+            elected.merge(placement.order().get(0), 1, Integer::sum);
+        }
+        assertTrue(Math.abs(elected.get("/disk1") - 50) <= 1);
+        assertTrue(Math.abs(elected.get("/disk2") - 100) <= 1);
+
+        System.out.println("[.] refresh reads the filesystem");
+        placement.refresh();
+        assertEquals(300 * MB, placement.free("/disk1"));
+        assertEquals(2, (int) statfs.get("/disk1"));
+
+        System.out.println("[.] ordered placement follows the configuration");
+        placement.setMode(StorageApi.Placement.ORDERED);
+        assertEquals(Arrays.asList("/disk1", "/disk2", "/disk3"), placement.order());
+        assertEquals(Arrays.asList("/disk1", "/disk2", "/disk3"), placement.order());
+    }
+}
@@ -0,0 +1,54 @@
+package io.disruptedsystems.libdtn.core.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.disruptedsystems.libdtn.common.data.Bundle;
+import io.disruptedsystems.libdtn.common.data.eid.DtnEid;
+
+import org.junit.Test;
+
+/**
+ * Test class for the SecondaryIndex.
+ */
+public class SecondaryIndexTest {
+
+    @Test
+    public void testLookups() {
+        System.out.println("[+] SecondaryIndex");
+        Bundle b1 = new Bundle(DtnEid.unsafe("//node-a/app"), 10000);
+        Bundle b2 = new Bundle(DtnEid.unsafe("//node-a/app"), 30000);
+        Bundle b3 = new Bundle(DtnEid.unsafe("//node-b/app"), 20000);
+        b3.setSource(DtnEid.unsafe("//node-c/"));
+
+        SecondaryIndex index = new SecondaryIndex();
+        index.add(b1.bid, b1, "/app");
+        index.add(b2.bid, b2, "/app");
+        index.add(b3.bid, b3, null);
+
+        System.out.println("[.] destination");
+        assertEquals(2, index.destination("dtn://node-a/app").size());
+        assertEquals(b3.bid, index.destination("dtn://node-b/app").get(0));
+        assertTrue(index.destination("dtn://node-z/").isEmpty());
+
+        System.out.println("[.] source");
+        assertEquals(b3.bid, index.source("dtn://node-c/").get(0));
+
+        System.out.println("[.] sink");
+        assertEquals(2, index.sink("/app").size());
+
+        System.out.println("[.] expiry");
+        long now = b1.getCreationTimestamp();
+        assertTrue(index.expiringBefore(now).isEmpty());
+        assertEquals(b1.bid, index.expiringBefore(now + 25000).get(0));
+        assertEquals(b3.bid, index.expiringBefore(now + 25000).get(1));
+
+        System.out.println("[.] remove");
+        index.remove(b1.bid);
+        assertEquals(b2.bid, index.destination("dtn://node-a/app").get(0));
+        assertEquals(1, index.sink("/app").size());
+        index.remove(b2.bid);
+        assertTrue(index.destination("dtn://node-a/app").isEmpty());
+        assertTrue(index.sink("/app").isEmpty());
+    }
+}
@@ -3,10 +3,15 @@ package io.disruptedsystems.libdtn.core.storage;
 import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_SIMPLE_STORAGE;
 import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_STORAGE;
 import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_VOLATILE_STORAGE;
+import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_EVICTION_POLICY;
 import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_PATH;
+import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_PAYLOAD_FILE_THRESHOLD;
+import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_QUOTA_COUNT;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import io.disruptedsystems.libdtn.core.api.CoreApi;
 import io.disruptedsystems.libdtn.core.api.ExtensionManagerApi;
@@ -18,16 +23,24 @@ import io.disruptedsystems.libdtn.common.data.bundlev7.processor.BaseBlockProces
 import io.disruptedsystems.libdtn.common.data.bundlev7.processor.BlockProcessorFactory;
 import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.BaseBlockDataSerializerFactory;
 import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.BlockDataSerializerFactory;
+import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.BundleV7Serializer;
 import io.disruptedsystems.libdtn.common.data.eid.BaseEidFactory;
 import io.disruptedsystems.libdtn.common.data.eid.EidFactory;
 import io.disruptedsystems.libdtn.common.utils.Log;
 import io.disruptedsystems.libdtn.common.utils.SimpleLogger;
 import io.disruptedsystems.libdtn.core.CoreConfiguration;
 import io.disruptedsystems.libdtn.common.data.Bundle;
+import io.disruptedsystems.libdtn.common.data.PayloadBlock;
+import io.disruptedsystems.libdtn.common.data.blob.ByteBufferBlob;
+import io.disruptedsystems.libdtn.common.data.blob.FileBlob;
+import io.disruptedsystems.libdtn.common.data.blob.VolatileMemory;
+import io.disruptedsystems.libdtn.common.data.blob.WritableBlob;
+import io.disruptedsystems.libdtn.common.data.PrimaryBlock;
 
 import io.disruptedsystems.libdtn.core.MockExtensionManager;
 import io.disruptedsystems.libdtn.core.MockCore;
 import io.disruptedsystems.libdtn.core.api.ConfigurationApi;
+import io.disruptedsystems.libdtn.core.api.StorageApi;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Observable;
@@ -36,6 +49,7 @@ import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -222,6 +236,219 @@ public class SimpleStorageTest {
     }
 
 
+    @Test
+    public void testRestartIndex() {
+        synchronized (StorageTest.LOCK) {
+            System.out.println("[+] SimpleStorage restart");
+            String path = System.getProperty("path");
+            conf.<StorageApi.EvictionPolicy>get(SIMPLE_STORAGE_EVICTION_POLICY)
+                    .update(StorageApi.EvictionPolicy.OLDEST_FIRST);
+            storage = new Storage(mockCore);
+            storage.initComponent(mockCore.getConf(), COMPONENT_ENABLE_STORAGE, mockCore.getLogger());
+            clearStorage();
+
+            Bundle[] bundles = {
+                    TestBundle.testBundle1(),
+                    TestBundle.testBundle2(),
+                    TestBundle.testBundle3()
+            };
+
+            System.out.println("[.] store in SimpleStorage");
+            cockLock();
+            Observable.fromArray(bundles).flatMapCompletable(
+                    b -> Completable.fromSingle(storage.getSimpleStorage().store(b)))
+                    .subscribe(
+                            () -> WAIT_LOCK.get().countDown(),
+                            e -> WAIT_LOCK.get().countDown());
+            waitFinish();
+            assertStorageSize(bundles.length);
+            long bytes = storage.getSimpleStorage().getEvictionEngine().bytes(path);
+            assertTrue(bytes > 0);
+
+            /* a new instance indexes the bundles left on disk */
+            System.out.println("[.] restart SimpleStorage");
+            storage = new Storage(mockCore);
+            storage.initComponent(mockCore.getConf(), COMPONENT_ENABLE_STORAGE, mockCore.getLogger());
+            assertStorageSize(bundles.length);
+            EvictionEngine eviction = storage.getSimpleStorage().getEvictionEngine();
+            assertEquals(bytes, eviction.bytes(path));
+            assertEquals(bundles.length, eviction.count(path));
+            assertEquals(bundles.length, eviction.victims(path, bytes, bundles.length,
+                    PrimaryBlock.Priority.EXPEDITED).size());
+
+            clearStorage();
+            assertStorageSize(0);
+            conf.<StorageApi.EvictionPolicy>get(SIMPLE_STORAGE_EVICTION_POLICY)
+                    .update(StorageApi.EvictionPolicy.NONE);
+            for (Bundle bundle : bundles) {
+                bundle.clearBundle();
+            }
+        }
+    }
+
+
+    @Test
+    public void testDeduplicatedDiscard() throws Exception {
+        synchronized (StorageTest.LOCK) {
+            System.out.println("[+] SimpleStorage deduplicated blobs");
+            storage = new Storage(mockCore);
+            storage.initComponent(mockCore.getConf(), COMPONENT_ENABLE_STORAGE, mockCore.getLogger());
+            clearStorage();
+
+            /* two bundles carry the same payload in two blob files */
+            byte[] data = new byte[100000];
+            new Random(42).nextBytes(data);
+            Bundle[] bundles = new Bundle[2];
+            for (int i = 0; i < bundles.length; i++) {
+                FileBlob blob = storage.getSimpleStorage().createBlob(data.length);
+                WritableBlob wblob = blob.getWritableBlob();
+                wblob.write(data);
+                wblob.close();
+                bundles[i] = TestBundle.testBundle0();
+                bundles[i].addBlock(new PayloadBlock(blob));
+            }
+
+            System.out.println("[.] store in SimpleStorage");
+            for (Bundle bundle : bundles) {
+                storage.getSimpleStorage().store(bundle).blockingGet();
+            }
+            assertStorageSize(2);
+            assertEquals(bundles[0].getPayloadBlock().data.getFilePath(),
+                    bundles[1].getPayloadBlock().data.getFilePath());
+
+            /* discard the first bundle the way BundleProtocol does */
+            System.out.println("[.] discard one of the bundles");
+            storage.remove(bundles[0].bid).blockingAwait();
+            bundles[0].clearBundle();
+            assertStorageSize(1);
+
+            System.out.println("[.] pull the other bundle");
+            Bundle pulled = storage.getSimpleStorage().get(bundles[1].bid).blockingGet();
+            assertArrayEquals(data, flowableToByteArray(pulled.getPayloadBlock().data.observe()));
+            pulled.clearBundle();
+
+            clearStorage();
+            assertStorageSize(0);
+            bundles[1].clearBundle();
+        }
+    }
+
+
+    @Test
+    public void testPriorityEviction() {
+        synchronized (StorageTest.LOCK) {
+            System.out.println("[+] SimpleStorage priorities");
+            String path = System.getProperty("path");
+            conf.<StorageApi.EvictionPolicy>get(SIMPLE_STORAGE_EVICTION_POLICY)
+                    .update(StorageApi.EvictionPolicy.OLDEST_FIRST);
+            conf.<Integer>get(SIMPLE_STORAGE_QUOTA_COUNT).update(2);
+            storage = new Storage(mockCore);
+            storage.initComponent(mockCore.getConf(), COMPONENT_ENABLE_STORAGE, mockCore.getLogger());
+            clearStorage();
+
+            System.out.println("[.] an administrative record is expedited");
+            Bundle record = TestBundle.testBundle1();
+            record.setV7Flag(PrimaryBlock.BundleV7Flags.ADM_RECORD, true);
+            storage.getSimpleStorage().store(record).blockingGet();
+            assertEquals(PrimaryBlock.Priority.EXPEDITED, record.getPriority());
+            Bundle normal = TestBundle.testBundle2();
+            storage.getSimpleStorage().store(normal).blockingGet();
+            assertEquals(PrimaryBlock.Priority.NORMAL, normal.getPriority());
+
+            System.out.println("[.] a new bundle evicts the normal bundle only");
+            Bundle other = TestBundle.testBundle3();
+            storage.getSimpleStorage().store(other).blockingGet();
+            assertStorageSize(2);
+            assertTrue(storage.containsPersistent(record.bid));
+            assertFalse(storage.containsPersistent(normal.bid));
+
+            System.out.println("[.] a bulk bundle can't evict anything");
+            Bundle bulk = TestBundle.testBundle4();
+            bulk.setPriority(PrimaryBlock.Priority.BULK);
+            try {
+                storage.getSimpleStorage().store(bulk).blockingGet();
+                fail();
+            } catch (RuntimeException re) {
+                /* expected */
+            }
+            assertStorageSize(2);
+
+            System.out.println("[.] the priorities are restored at restart");
+            storage = new Storage(mockCore);
+            storage.initComponent(mockCore.getConf(), COMPONENT_ENABLE_STORAGE, mockCore.getLogger());
+            EvictionEngine eviction = storage.getSimpleStorage().getEvictionEngine();
+            assertEquals(1, eviction.victims(path, 0, 1, PrimaryBlock.Priority.NORMAL).size());
+            assertEquals(other.bid,
+                    eviction.victims(path, 0, 1, PrimaryBlock.Priority.NORMAL).get(0));
+            assertEquals(0, eviction.victims(path, 0, 2, PrimaryBlock.Priority.NORMAL).size());
+            assertEquals(PrimaryBlock.Priority.EXPEDITED,
+                    storage.getSimpleStorage().get(record.bid).blockingGet().getPriority());
+
+            clearStorage();
+            conf.<Integer>get(SIMPLE_STORAGE_QUOTA_COUNT).update(0);
+            conf.<StorageApi.EvictionPolicy>get(SIMPLE_STORAGE_EVICTION_POLICY)
+                    .update(StorageApi.EvictionPolicy.NONE);
+            for (Bundle bundle : new Bundle[]{record, normal, other, bulk}) {
+                bundle.clearBundle();
+            }
+        }
+    }
+
+
+    @Test
+    public void testPayloadSpill() throws Exception {
+        synchronized (StorageTest.LOCK) {
+            System.out.println("[+] SimpleStorage payload spill");
+            storage = new Storage(mockCore);
+            storage.initComponent(mockCore.getConf(), COMPONENT_ENABLE_STORAGE, mockCore.getLogger());
+            clearStorage();
+
+            long threshold = conf.<Long>get(SIMPLE_STORAGE_PAYLOAD_FILE_THRESHOLD).value();
+            byte[] data = new byte[(int) threshold * 4];
+            new Random(42).nextBytes(data);
+            Bundle large = TestBundle.testBundle0();
+            large.addBlock(new PayloadBlock(
+                    new ByteBufferBlob(new VolatileMemory(data.length), data)));
+            Bundle small = TestBundle.testBundle1();
+
+            System.out.println("[.] store in SimpleStorage");
+            storage.getSimpleStorage().store(large).blockingGet();
+            storage.getSimpleStorage().store(small).blockingGet();
+            assertStorageSize(2);
+            assertFalse(large.getPayloadBlock().data.isFileBlob());
+
+            System.out.println("[.] a small payload is kept in the bundle file");
+            Bundle pulledSmall = storage.getSimpleStorage().get(small.bid).blockingGet();
+            assertFalse(pulledSmall.getPayloadBlock().data.isFileBlob());
+            pulledSmall.clearBundle();
+
+            System.out.println("[.] a large payload is pulled as a blob file");
+            Bundle pulled = storage.getSimpleStorage().get(large.bid).blockingGet();
+            assertTrue(pulled.getPayloadBlock().data.isFileBlob());
+            assertEquals(data.length, pulled.getPayloadBlock().data.size());
+            assertArrayEquals(data, flowableToByteArray(pulled.getPayloadBlock().data.observe()));
+
+            System.out.println("[.] the payload is sent as slices of its mapping");
+            BlockDataSerializerFactory factory = new BaseBlockDataSerializerFactory();
+            AtomicInteger mapped = new AtomicInteger();
+            AtomicInteger sent = new AtomicInteger();
+            BundleV7Serializer.encodeCached(pulled, factory).blockingForEach(buffer -> {
+                if (buffer.isDirect() && buffer.isReadOnly()) {
+                    mapped.addAndGet(buffer.remaining());
+                }
+                sent.addAndGet(buffer.remaining());
+            });
+            assertEquals(data.length, mapped.get());
+            assertEquals(BundleV7Serializer.encodedSize(pulled, factory), sent.get());
+            pulled.clearBundle();
+
+            clearStorage();
+            assertStorageSize(0);
+            large.clearBundle();
+            small.clearBundle();
+        }
+    }
+
     public void cockLock() {
         WAIT_LOCK.set(new CountDownLatch(1));
     }
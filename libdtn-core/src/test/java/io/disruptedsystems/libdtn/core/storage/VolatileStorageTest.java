@@ -3,7 +3,10 @@ package io.disruptedsystems.libdtn.core.storage;
 import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_SIMPLE_STORAGE;
 import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_STORAGE;
 import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_VOLATILE_STORAGE;
+import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.VOLATILE_BLOB_STORAGE_MAX_CAPACITY;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import io.disruptedsystems.libdtn.core.api.CoreApi;
@@ -15,6 +18,12 @@ import io.disruptedsystems.libdtn.common.utils.Log;
 import io.disruptedsystems.libdtn.common.utils.SimpleLogger;
 import io.disruptedsystems.libdtn.core.CoreConfiguration;
 import io.disruptedsystems.libdtn.common.data.Bundle;
+import io.disruptedsystems.libdtn.common.data.MetaBundle;
+import io.disruptedsystems.libdtn.common.data.PayloadBlock;
+import io.disruptedsystems.libdtn.common.data.blob.Blob;
+import io.disruptedsystems.libdtn.common.data.blob.MappedBlob;
+import io.disruptedsystems.libdtn.common.data.blob.UntrackedByteBufferBlob;
+import io.disruptedsystems.libdtn.common.data.eid.DtnEid;
 import io.disruptedsystems.libdtn.core.MockExtensionManager;
 import io.disruptedsystems.libdtn.core.MockCore;
 import io.disruptedsystems.libdtn.core.api.ExtensionManagerApi;
@@ -22,6 +31,8 @@ import io.disruptedsystems.libdtn.core.api.ConfigurationApi;
 
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+
 /**
  * Test class for VolatileStorage.
  *
@@ -107,4 +118,117 @@ public class VolatileStorageTest {
         }
     }
 
+    @Test
+    public void testTiering() throws Exception {
+        synchronized (StorageTest.LOCK) {
+            System.out.println("[+] Volatile Storage tiering");
+            CoreConfiguration conf = new CoreConfiguration();
+            conf.<Boolean>get(COMPONENT_ENABLE_STORAGE).update(true);
+            conf.<Boolean>get(COMPONENT_ENABLE_VOLATILE_STORAGE).update(true);
+            conf.<Boolean>get(COMPONENT_ENABLE_SIMPLE_STORAGE).update(false);
+            conf.<Integer>get(VOLATILE_BLOB_STORAGE_MAX_CAPACITY).update(1000);
+            CoreApi core = new MockCore() {
+                @Override
+                public ConfigurationApi getConf() {
+                    return conf;
+                }
+
+                @Override
+                public ExtensionManagerApi getExtensionManager() {
+                    return mockCore.getExtensionManager();
+                }
+
+                @Override
+                public Log getLogger() {
+                    return new SimpleLogger();
+                }
+            };
+            Storage storage = new Storage(core);
+            storage.initComponent(conf, COMPONENT_ENABLE_STORAGE, core.getLogger());
+            VolatileStorage volatileStorage = storage.getVolatileStorage();
+
+            Bundle[] bundles = new Bundle[4];
+            for (int i = 0; i < bundles.length; i++) {
+                bundles[i] = new Bundle(DtnEid.generate());
+                bundles[i].addBlock(new PayloadBlock(new byte[300]));
+            }
+
+            System.out.println("[.] below the high watermark");
+            for (int i = 0; i < 3; i++) {
+                volatileStorage.store(bundles[i]).blockingGet();
+                storage.index.get(bundles[i].bid).isPersistent = true; /* pretend */
+            }
+            assertEquals(900, volatileStorage.usage());
+            Thread.sleep(100);
+            assertEquals(3, volatileStorage.count());
+
+            System.out.println("[.] crossing the high watermark demotes the coldest bundles");
+            volatileStorage.touch(bundles[0].bid);
+            volatileStorage.store(bundles[3]).blockingGet();
+            for (int i = 0; i < 50 && volatileStorage.usage() > 700; i++) {
+                Thread.sleep(20);
+            }
+            assertEquals(600, volatileStorage.usage());
+            assertTrue(storage.containsVolatile(bundles[0].bid));
+            assertFalse(storage.containsVolatile(bundles[1].bid));
+            assertFalse(storage.containsVolatile(bundles[2].bid));
+            assertTrue(storage.containsPersistent(bundles[1].bid));
+            assertTrue(storage.index.get(bundles[1].bid).bundle instanceof MetaBundle);
+            assertTrue(storage.containsVolatile(bundles[3].bid));
+
+            System.out.println("[.] promotion only below the low watermark");
+            volatileStorage.promote(bundles[1]);
+            assertFalse(storage.containsVolatile(bundles[1].bid));
+            volatileStorage.remove(bundles[3].bid).blockingAwait();
+            volatileStorage.promote(bundles[1]);
+            assertTrue(storage.containsVolatile(bundles[1].bid));
+            assertEquals(600, volatileStorage.usage());
+            volatileStorage.promote(bundles[2]);
+            assertFalse(storage.containsVolatile(bundles[2].bid));
+
+            System.out.println("[.] mapped payloads are not charged");
+            Bundle mapped = new Bundle(DtnEid.generate());
+            MappedBlob blob = new MappedBlob(300);
+            blob.getWritableBlob().write(
+                    ByteBuffer.allocateDirect(300).asReadOnlyBuffer());
+            mapped.addBlock(new PayloadBlock(blob));
+            volatileStorage.store(mapped).blockingGet();
+            assertEquals(600, volatileStorage.usage());
+
+            volatileStorage.clear().subscribe();
+            assertEquals(0, volatileStorage.usage());
+        }
+    }
+
+    @Test
+    public void testReleaseRetainedBlobs() {
+        synchronized (StorageTest.LOCK) {
+            System.out.println("[+] Volatile Storage retained blobs");
+            Storage storage = new Storage(mockCore);
+            storage.initComponent(
+                    mockCore.getConf(),
+                    COMPONENT_ENABLE_STORAGE,
+                    mockCore.getLogger());
+            VolatileStorage volatileStorage = storage.getVolatileStorage();
+
+            Blob original = new UntrackedByteBufferBlob(new byte[100]);
+            Bundle bundle = new Bundle(DtnEid.generate());
+            bundle.addBlock(new PayloadBlock(original));
+
+            System.out.println("[.] store bundle in VolatileStorage");
+            volatileStorage.store(bundle).blockingGet();
+            assertEquals(2, original.refCount());
+
+            System.out.println("[.] swap the payload blob while the bundle is volatile");
+            Blob replacement = new UntrackedByteBufferBlob(new byte[100]);
+            bundle.getPayloadBlock().data = replacement;
+            original.release();
+
+            System.out.println("[.] remove releases the blob that was retained");
+            volatileStorage.remove(bundle.bid).blockingAwait();
+            assertEquals(0, original.refCount());
+            assertEquals(1, replacement.refCount());
+            bundle.retainBlobs().forEach(Blob::release);
+        }
+    }
 }
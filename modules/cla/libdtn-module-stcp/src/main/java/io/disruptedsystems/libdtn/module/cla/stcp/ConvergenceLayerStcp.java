@@ -11,11 +11,11 @@ import io.disruptedsystems.libdtn.core.api.ConfigurationApi;
 import io.disruptedsystems.libdtn.core.spi.ClaChannelSpi;
 import io.disruptedsystems.libdtn.core.spi.ConvergenceLayerSpi;
 import io.marlinski.libcbor.CBOR;
-import io.marlinski.libcbor.CborEncoder;
 import io.marlinski.libcbor.CborParser;
 import io.marlinski.libcbor.rxparser.RxParserException;
 import io.disruptedsystems.libdtn.common.ExtensionToolbox;
 import io.disruptedsystems.libdtn.common.data.Bundle;
+import io.disruptedsystems.libdtn.common.data.blob.Blob;
 import io.disruptedsystems.libdtn.common.data.blob.BlobFactory;
 import io.disruptedsystems.libdtn.common.data.bundlev7.parser.BundleV7Item;
 import io.disruptedsystems.libdtn.common.data.eid.BaseClaEid;
@@ -181,10 +181,11 @@ public class ConvergenceLayerStcp implements ConvergenceLayerSpi {
                 return Observable.error(new RecvOnlyPeerException());
             }
             */
-            Flowable<ByteBuffer> job = createBundleJob(bundle, serializerFactory);
-            if (job == null) {
-                return Observable.error(new Throwable("Cannot serialize the bundle"));
-            }
+            /* the blobs are retained while the job streams them, even if the bundle is cleared */
+            Flowable<ByteBuffer> job = Flowable.using(
+                    bundle::retainBlobs,
+                    retained -> createBundleJob(bundle, serializerFactory),
+                    retained -> retained.forEach(Blob::release));
 
             ConnectionAPI.TrackOrder handle = tcpcon.order(job);
             return handle.track();
@@ -294,25 +295,25 @@ public class ConvergenceLayerStcp implements ConvergenceLayerSpi {
             }).observeOn(Schedulers.io());
         }
 
+        /*
+         * the encoded buffers are handed to the socket as they are. A payload held in a file is
+         * serialized as read-only slices of its memory mapping so the socket writes straight
+         * from the page cache instead of copying the payload through 2048-byte heap chunks.
+         */
         Flowable<ByteBuffer> createBundleJob(Bundle b,
                                              BlockDataSerializerFactory serializerFactory) {
-            CborEncoder encodedB = BundleV7Serializer.encode(b, serializerFactory);
-            long[] size = {0};
-            encodedB.observe().subscribe(
-                    buffer -> {
-                        size[0] += buffer.remaining();
-                    },
-                    e -> {
-                        size[0] = -1;
-                    });
-            if (size[0] < 0) {
-                return null;
-            }
+            /*
+             * the size is computed from the fields and the blocks that did not change since the
+             * last transmission of this bundle are not encoded again. The age is stopped once so
+             * that the size prefix and the encoded age agree.
+             */
+            BundleV7Serializer.stopAge(b);
+            long size = BundleV7Serializer.encodedSize(b, serializerFactory);
             return CBOR.encoder()
                     .cbor_start_array(2)
-                    .cbor_encode_int(size[0])
-                    .merge(encodedB)
-                    .observe(2048);
+                    .cbor_encode_int(size)
+                    .observe()
+                    .concatWith(BundleV7Serializer.encodeCached(b, serializerFactory));
         }
 
     }
@@ -19,7 +19,6 @@ import io.marlinski.librxbus.RxBus;
 import io.marlinski.librxbus.Subscribe;
 import io.reactivex.rxjava3.core.Completable;
 
-import java.nio.ByteBuffer;
 
 /**
  * <p>CoreHelloModule is a Core Module that reacts to new peer event. For each new peer, it sends
@@ -55,10 +54,7 @@ public class CoreModuleHello implements CoreModuleSpi {
         hello.eids.addAll(coreApi.getLocalEid().aliases());
 
         /* get size of hello message for the payload */
-        long size = hello.encode().observe()
-                .map(ByteBuffer::remaining)
-                .reduce(0, (a, b) -> a + b)
-                .blockingGet();
+        long size = hello.encodedSize();
 
         /* serialize the hello message into a Blob (for the payload) */
         UntrackedByteBufferBlob blobHello = new UntrackedByteBufferBlob((int) size);
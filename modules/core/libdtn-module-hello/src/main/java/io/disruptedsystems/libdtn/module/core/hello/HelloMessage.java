@@ -4,6 +4,7 @@ import io.marlinski.libcbor.CBOR;
 import io.marlinski.libcbor.CborEncoder;
 import io.marlinski.libcbor.CborParser;
 import io.disruptedsystems.libdtn.common.data.bundlev7.parser.EidItem;
+import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.CborSize;
 import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.EidSerializer;
 import io.disruptedsystems.libdtn.common.data.eid.Eid;
 import io.disruptedsystems.libdtn.common.data.eid.EidFactory;
@@ -53,4 +54,19 @@ public class HelloMessage implements CborParser.ParseableItem {
 
         return enc;
     }
+
+    /**
+     * size of the HelloMessage once encoded as a CBOR stream.
+     *
+     * @return size in bytes
+     */
+    public long encodedSize() {
+        long size = CborSize.array(eids.size());
+
+        for (Eid eid : eids) {
+            size += EidSerializer.encodedSize(eid);
+        }
+
+        return size;
+    }
 }
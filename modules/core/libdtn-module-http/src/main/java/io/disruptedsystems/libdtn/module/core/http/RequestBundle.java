@@ -25,6 +25,7 @@ import static rx.Observable.just;
 public class RequestBundle {
 
     private static final String TAG = "ApplicationAgentHTTP";
+    private static final int PAYLOAD_CHUNK_SIZE = 65536;
     private CoreApi core;
 
     RequestBundle(CoreApi core) {
@@ -72,7 +73,7 @@ public class RequestBundle {
      */
     public Observable<ByteBuf> nettyBLOB(Blob blob) {
         return Observable.create(s -> {
-            blob.observe().toObservable().subscribe(
+            blob.observe(PAYLOAD_CHUNK_SIZE).toObservable().subscribe(
                     byteBuffer -> s.onNext(Unpooled.wrappedBuffer(byteBuffer)),
                     s::onError,
                     s::onCompleted
@@ -0,0 +1,264 @@
+package io.disruptedsystems.libdtn.module.core.storage.kv;
+
+import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_SIMPLE_STORAGE;
+import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_STORAGE;
+import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_VOLATILE_STORAGE;
+import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_DURABILITY;
+import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_PATH;
+import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_SEGMENT_LOG;
+import static io.disruptedsystems.libdtn.core.api.ConfigurationApi.CoreEntry.STORAGE_BACKEND;
+
+import io.disruptedsystems.libdtn.common.data.Bundle;
+import io.disruptedsystems.libdtn.common.data.BundleId;
+import io.disruptedsystems.libdtn.common.data.PayloadBlock;
+import io.disruptedsystems.libdtn.common.data.eid.DtnEid;
+import io.disruptedsystems.libdtn.common.data.eid.EidFormatException;
+import io.disruptedsystems.libdtn.common.data.eid.EidIpn;
+import io.disruptedsystems.libdtn.common.utils.Log;
+import io.disruptedsystems.libdtn.common.utils.SimpleLogger;
+import io.disruptedsystems.libdtn.core.CoreConfiguration;
+import io.disruptedsystems.libdtn.core.api.BundleProtocolApi;
+import io.disruptedsystems.libdtn.core.api.ClaManagerApi;
+import io.disruptedsystems.libdtn.core.api.ConfigurationApi;
+import io.disruptedsystems.libdtn.core.api.CoreApi;
+import io.disruptedsystems.libdtn.core.api.DeliveryApi;
+import io.disruptedsystems.libdtn.core.api.ExtensionManagerApi;
+import io.disruptedsystems.libdtn.core.api.LinkLocalTableApi;
+import io.disruptedsystems.libdtn.core.api.LocalEidApi;
+import io.disruptedsystems.libdtn.core.api.ModuleLoaderApi;
+import io.disruptedsystems.libdtn.core.api.RegistrarApi;
+import io.disruptedsystems.libdtn.core.api.RoutingEngineApi;
+import io.disruptedsystems.libdtn.core.api.RoutingTableApi;
+import io.disruptedsystems.libdtn.core.api.StorageApi;
+import io.disruptedsystems.libdtn.core.extension.ExtensionManager;
+import io.disruptedsystems.libdtn.core.storage.Storage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the persistent storage backends through the StorageApi of the core: the SimpleStorage
+ * with one file per bundle, the SimpleStorage with its segment log, and the KvStorageBackend.
+ * The measured operations are the ones that dominate small bundles: storing then removing a
+ * bundle, and rebuilding the index when the storage is opened.
+ *
+ * <p>With sync, both backends flush a stored bundle to the device before reporting it
+ * (SYNC_PER_BUNDLE for the SimpleStorage) and neither flushes a removal of a bundle that has no
+ * payload file. Without sync, nothing is flushed.
+ */
+@State(Scope.Benchmark)
+public class StorageBackendBenchmark {
+
+    @Param({"simple", "segment", CoreModuleStorageKv.MODULE_NAME})
+    public String backend;
+
+    @Param({"512", "8192"})
+    public int payloadSize;
+
+    @Param({"true", "false"})
+    public boolean sync;
+
+    private static final int STORED = 5000;
+    private static final long REINDEX_TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+
+    private File root;
+    private byte[] payload;
+    private BenchCore core;
+
+    /* just enough of a core to run the Storage and its backends */
+    private static class BenchCore implements CoreApi {
+        private final ConfigurationApi conf = new CoreConfiguration();
+        private final Log logger = new SimpleLogger();
+        private final ExtensionManagerApi extensions = new ExtensionManager(logger);
+        private Storage storage;
+        private KvStorageBackend kv;
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public ConfigurationApi getConf() {
+            return conf;
+        }
+
+        @Override
+        public Log getLogger() {
+            return logger;
+        }
+
+        @Override
+        public LocalEidApi getLocalEid() {
+            return null;
+        }
+
+        @Override
+        public ExtensionManagerApi getExtensionManager() {
+            return extensions;
+        }
+
+        @Override
+        public RoutingEngineApi getRoutingEngine() {
+            return null;
+        }
+
+        @Override
+        public RegistrarApi getRegistrar() {
+            return null;
+        }
+
+        @Override
+        public DeliveryApi getDelivery() {
+            return null;
+        }
+
+        @Override
+        public BundleProtocolApi getBundleProtocol() {
+            return null;
+        }
+
+        @Override
+        public StorageApi getStorage() {
+            return storage;
+        }
+
+        @Override
+        public ClaManagerApi getClaManager() {
+            return null;
+        }
+
+        @Override
+        public LinkLocalTableApi getLinkLocalTable() {
+            return null;
+        }
+
+        @Override
+        public RoutingTableApi getRoutingTable() {
+            return null;
+        }
+
+        @Override
+        public ModuleLoaderApi getModuleLoader() {
+            return null;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("storagebench").toFile();
+        payload = new byte[payloadSize];
+        core = open();
+        for (int i = 0; i < STORED; i++) {
+            core.storage.store(bundle()).blockingGet();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        close(core);
+        delete(root);
+    }
+
+    /**
+     * store and remove a bundle.
+     */
+    @Benchmark
+    public void storeRemove() {
+        Bundle bundle = bundle();
+        core.storage.store(bundle).blockingGet();
+        core.storage.remove(bundle.bid).blockingAwait();
+    }
+
+    /**
+     * open the storage again and wait until every stored bundle is indexed.
+     *
+     * @return number of bundles indexed
+     * @throws Exception if the bundles were not indexed in time
+     */
+    @Benchmark
+    public int reindex() throws Exception {
+        close(core);
+        core = open();
+        long deadline = System.currentTimeMillis() + REINDEX_TIMEOUT;
+        while (core.storage.count() < STORED) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("indexed " + core.storage.count()
+                        + " bundles out of " + STORED);
+            }
+            Thread.yield();
+        }
+        return core.storage.count();
+    }
+
+    private BenchCore open() {
+        BenchCore bench = new BenchCore();
+        ConfigurationApi conf = bench.getConf();
+        ((SimpleLogger) bench.getLogger()).set(Log.LogLevel.WARN);
+        boolean simple = !backend.equals(CoreModuleStorageKv.MODULE_NAME);
+        String path = new File(root, backend).getAbsolutePath();
+        new File(path).mkdirs();
+
+        conf.<Boolean>get(COMPONENT_ENABLE_STORAGE).update(true);
+        conf.<Boolean>get(COMPONENT_ENABLE_VOLATILE_STORAGE).update(false);
+        conf.<Boolean>get(COMPONENT_ENABLE_SIMPLE_STORAGE).update(simple);
+        conf.<Set<String>>get(SIMPLE_STORAGE_PATH)
+                .update(new HashSet<>(Collections.singleton(path)));
+        conf.<Boolean>get(SIMPLE_STORAGE_SEGMENT_LOG).update(backend.equals("segment"));
+        conf.<StorageApi.Durability>get(SIMPLE_STORAGE_DURABILITY).update(sync
+                ? StorageApi.Durability.SYNC_PER_BUNDLE
+                : StorageApi.Durability.NONE);
+        conf.<String>get(STORAGE_BACKEND).update(simple ? "simple" : backend);
+
+        bench.storage = new Storage(bench);
+        bench.storage.initComponent(conf, COMPONENT_ENABLE_STORAGE, bench.getLogger());
+        if (!simple) {
+            bench.kv = new KvStorageBackend(bench, path, 64000000, 65536, sync);
+            bench.storage.registerBackend(bench.kv);
+        }
+        return bench;
+    }
+
+    private static void close(BenchCore bench) {
+        if (bench.kv != null) {
+            bench.kv.close();
+        }
+        bench.getConf().<Boolean>get(COMPONENT_ENABLE_SIMPLE_STORAGE).update(false);
+        bench.getConf().<Boolean>get(COMPONENT_ENABLE_STORAGE).update(false);
+    }
+
+    private Bundle bundle() {
+        try {
+            Bundle bundle = new Bundle(new EidIpn(5, 12));
+            bundle.setSource(new DtnEid("source"));
+            bundle.setReportto(DtnEid.nullEid());
+            bundle.bid = BundleId.create(bundle);
+            bundle.addBlock(new PayloadBlock(payload));
+            return bundle;
+        } catch (EidFormatException efe) {
+            throw new IllegalStateException(efe);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,39 @@
+package io.disruptedsystems.libdtn.module.core.storage.kv;
+
+import io.disruptedsystems.libdtn.core.api.ConfigurationApi;
+import io.disruptedsystems.libdtn.core.api.CoreApi;
+import io.disruptedsystems.libdtn.core.spi.CoreModuleSpi;
+
+/**
+ * <p>CoreModuleStorageKv is a Core Module that provides a persistent storage backend built on
+ * an embedded log-structured key-value store. Storing or removing a bundle is a single append
+ * instead of creating or deleting a file, and the index is rebuilt from compact hint files.</p>
+ *
+ * <p>It is used in place of the SimpleStorage if the core configuration entry
+ * storage_backend is set to "storage-kv". The module accepts the following entries:
+ * path, file_size, inline_threshold and sync.</p>
+ */
+public class CoreModuleStorageKv implements CoreModuleSpi {
+
+    static final String MODULE_NAME = "storage-kv";
+
+    @Override
+    public String getModuleName() {
+        return MODULE_NAME;
+    }
+
+    @Override
+    public void init(CoreApi api) {
+        ConfigurationApi conf = api.getConf();
+        String path = conf.getModuleConf(MODULE_NAME, "path",
+                "/var/lib/terra/storage-kv").value();
+        long fileSize = conf.getModuleConf(MODULE_NAME, "file_size",
+                (long) 64000000).value();
+        int inlineThreshold = conf.getModuleConf(MODULE_NAME, "inline_threshold",
+                65536).value();
+        boolean sync = conf.getModuleConf(MODULE_NAME, "sync", true).value();
+
+        api.getStorage().registerBackend(
+                new KvStorageBackend(api, path, fileSize, inlineThreshold, sync));
+    }
+}
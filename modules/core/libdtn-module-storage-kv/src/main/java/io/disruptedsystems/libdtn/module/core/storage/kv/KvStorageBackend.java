@@ -0,0 +1,305 @@
+package io.disruptedsystems.libdtn.module.core.storage.kv;
+
+import io.disruptedsystems.libdtn.common.data.Bundle;
+import io.disruptedsystems.libdtn.common.data.BundleId;
+import io.disruptedsystems.libdtn.common.data.MetaBundle;
+import io.disruptedsystems.libdtn.common.data.PayloadBlock;
+import io.disruptedsystems.libdtn.common.data.blob.Blob;
+import io.disruptedsystems.libdtn.common.data.blob.FileBlob;
+import io.disruptedsystems.libdtn.common.data.blob.NullBlob;
+import io.disruptedsystems.libdtn.common.data.bundlev7.parser.BundleV7Item;
+import io.disruptedsystems.libdtn.common.data.bundlev7.serializer.BundleV7Serializer;
+import io.disruptedsystems.libdtn.common.utils.FileUtil;
+import io.disruptedsystems.libdtn.core.api.CoreApi;
+import io.disruptedsystems.libdtn.core.api.StorageApi;
+import io.disruptedsystems.libdtn.core.spi.StorageBackendSpi;
+import io.marlinski.libcbor.CBOR;
+import io.marlinski.libcbor.CborEncoder;
+import io.marlinski.libcbor.CborParser;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KvStorageBackend persists bundles into a {@link KvStore}. Every bundle is a single value keyed
+ * by its bundle id. Small payloads are stored inline with the bundle whereas large payloads are
+ * kept in their own {@link FileBlob} and only their path is stored.
+ *
+ * <p>A value is laid out as follow so that the MetaBundle can be read without reading the whole
+ * bundle when the index is rebuilt:
+ *
+ * <pre>
+ *    +---------+---------+----------+---------+------------+----------------------+
+ *    | hasblob | pathlen | blobpath | metalen | metabundle | bundle (no payload   |
+ *    | byte    | short   |          | int     | (cbor)     | if hasblob) (cbor)   |
+ *    +---------+---------+----------+---------+------------+----------------------+
+ * </pre>
+ */
+public class KvStorageBackend implements StorageBackendSpi {
+
+    private static final String TAG = "KvStorage";
+    private static final String DATA_FOLDER = File.separator + "data" + File.separator;
+    private static final String BLOB_FOLDER = File.separator + "blob" + File.separator;
+    private static final int META_PEEK_SIZE = 1024;
+    private static final long COMPACTION_PERIOD = 60; /* in seconds */
+    private static final int COPY_CHUNK_SIZE = 65536;
+
+    private static class Header {
+        boolean hasBlob;
+        String blobPath;
+        int metaLength;
+        int size;
+
+        static Header read(ByteBuffer buffer) {
+            Header header = new Header();
+            header.hasBlob = buffer.get() != 0;
+            byte[] path = new byte[buffer.getShort()];
+            buffer.get(path);
+            header.blobPath = new String(path, StandardCharsets.UTF_8);
+            header.metaLength = buffer.getInt();
+            header.size = 1 + 2 + path.length + 4;
+            return header;
+        }
+    }
+
+    private final CoreApi core;
+    private final String path;
+    private final KvStore store;
+    private final int inlineThreshold;
+    private final boolean sync;
+    private Disposable compaction;
+
+    /**
+     * Constructor.
+     *
+     * @param core            reference to the core
+     * @param path            directory holding the store and the payload blobs
+     * @param fileSize        size of a data file of the store
+     * @param inlineThreshold payloads larger than this are kept in their own file
+     * @param sync            flush every stored bundle to the device before reporting it
+     */
+    public KvStorageBackend(CoreApi core, String path, long fileSize, int inlineThreshold,
+                            boolean sync) {
+        this.core = core;
+        this.path = path;
+        this.store = new KvStore(new File(path + DATA_FOLDER), fileSize);
+        this.inlineThreshold = inlineThreshold;
+        this.sync = sync;
+    }
+
+    @Override
+    public String getModuleName() {
+        return CoreModuleStorageKv.MODULE_NAME;
+    }
+
+    @Override
+    public Observable<Bundle> open() {
+        return Observable.<Bundle>create(s -> {
+            File blobs = new File(path + BLOB_FOLDER);
+            if (!blobs.exists() && !blobs.mkdirs()) {
+                s.onError(new StorageApi.StorageFailedException("can't create blob folder"));
+                return;
+            }
+
+            store.open();
+            core.getLogger().i(TAG, "store opened: " + store.size() + " bundles");
+            compaction = Observable.interval(COMPACTION_PERIOD, TimeUnit.SECONDS, Schedulers.io())
+                    .subscribe(
+                            i -> store.compact(),
+                            e -> core.getLogger().w(TAG, "compaction stopped: "
+                                    + e.getMessage()));
+
+            for (String key : store.keys()) {
+                ByteBuffer value = store.peek(key, META_PEEK_SIZE);
+                if (value == null) {
+                    continue;
+                }
+                Header header = Header.read(value.duplicate());
+                if (header.size + header.metaLength > value.remaining()) {
+                    value = store.peek(key, header.size + header.metaLength);
+                }
+                value.position(header.size);
+                value.limit(header.size + header.metaLength);
+                Bundle meta = parse(value);
+                if (meta != null) {
+                    s.onNext(new MetaBundle(meta));
+                } else {
+                    core.getLogger().w(TAG, "can't parse stored bundle: " + key);
+                }
+            }
+            s.onComplete();
+        }).subscribeOn(Schedulers.io());
+    }
+
+    @Override
+    public void close() {
+        if (compaction != null) {
+            compaction.dispose();
+        }
+        store.close();
+    }
+
+    @Override
+    public Blob createFileBlob(int expectedSize) throws IOException {
+        String folder = path + BLOB_FOLDER;
+        if (FileUtil.spaceLeft(folder) <= expectedSize) {
+            throw new IOException("storage full");
+        }
+        return new FileBlob(FileUtil.createNewFile("blob-", ".blob", folder));
+    }
+
+    @Override
+    public Single<Bundle> store(Bundle bundle) {
+        return Single.<Bundle>fromCallable(() -> {
+            PayloadBlock payload = bundle.getPayloadBlock();
+            Blob data = (payload == null) ? new NullBlob() : payload.data;
+            boolean hasBlob = false;
+            String blobPath = "";
+            if (data.isFileBlob()) {
+                hasBlob = true;
+                blobPath = data.getFilePath();
+            } else if (data.size() > inlineThreshold) {
+                hasBlob = true;
+                blobPath = writeBlob(data);
+            }
+
+            byte[] meta = serialize(BundleV7Serializer.encode(new MetaBundle(bundle),
+                    core.getExtensionManager().getBlockDataSerializerFactory()));
+            byte[] serialized;
+            if (hasBlob) {
+                /* temporary remove the blob from bundle for serialization */
+                payload.data = new NullBlob();
+                try {
+                    serialized = serialize(BundleV7Serializer.encode(bundle,
+                            core.getExtensionManager().getBlockDataSerializerFactory()));
+                } finally {
+                    payload.data = data;
+                }
+            } else {
+                serialized = serialize(BundleV7Serializer.encode(bundle,
+                        core.getExtensionManager().getBlockDataSerializerFactory()));
+            }
+
+            byte[] bpath = blobPath.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(1 + 2 + bpath.length + 4);
+            header.put((byte) (hasBlob ? 1 : 0));
+            header.putShort((short) bpath.length);
+            header.put(bpath);
+            header.putInt(meta.length);
+            header.flip();
+
+            synchronized (store) {
+                store.put(bundle.bid.getBidString(),
+                        header, ByteBuffer.wrap(meta), ByteBuffer.wrap(serialized));
+                if (sync) {
+                    store.sync();
+                }
+            }
+            return new MetaBundle(bundle);
+        }).subscribeOn(Schedulers.io());
+    }
+
+    @Override
+    public Single<Bundle> get(BundleId id) {
+        return Single.<Bundle>fromCallable(() -> {
+            ByteBuffer value = store.get(id.getBidString());
+            if (value == null) {
+                throw new StorageApi.BundleNotFoundException(id);
+            }
+            Header header = Header.read(value);
+            value.position(header.size + header.metaLength);
+            Bundle bundle = parse(value);
+            if (bundle == null) {
+                throw new StorageApi.StorageCorruptedException();
+            }
+            if (header.hasBlob) {
+                bundle.getPayloadBlock().data = new FileBlob(header.blobPath);
+            }
+            bundle.tag("in_storage");
+            return bundle;
+        }).subscribeOn(Schedulers.io());
+    }
+
+    @Override
+    public Completable remove(BundleId id) {
+        return Completable.fromAction(() -> {
+            String key = id.getBidString();
+            ByteBuffer value = store.peek(key, META_PEEK_SIZE);
+            if (value == null) {
+                throw new StorageApi.BundleNotFoundException(id);
+            }
+            Header header = Header.read(value);
+            /*
+             * like SimpleStorage, a removal is not flushed on its own: the tombstone reaches the
+             * device with the next flush and a removal lost in a crash only brings the bundle
+             * back. The tombstone is flushed before the payload file is deleted so that a bundle
+             * never comes back without its payload.
+             */
+            synchronized (store) {
+                store.remove(key);
+                if (sync && header.hasBlob) {
+                    store.sync();
+                }
+            }
+            if (header.hasBlob) {
+                new File(header.blobPath).delete();
+            }
+        }).subscribeOn(Schedulers.io());
+    }
+
+    /* move a volatile payload into its own file */
+    private String writeBlob(Blob data) throws IOException {
+        File file = FileUtil.createNewFile("blob-", ".blob", path + BLOB_FOLDER);
+        try (FileChannel out = new FileOutputStream(file).getChannel()) {
+            for (ByteBuffer buffer : data.observe(COPY_CHUNK_SIZE).blockingIterable()) {
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            if (sync) {
+                out.force(false);
+            }
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+        return file.getAbsolutePath();
+    }
+
+    private static byte[] serialize(CborEncoder enc) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        enc.observe().blockingForEach(buffer -> {
+            byte[] chunk = new byte[buffer.remaining()];
+            buffer.get(chunk);
+            out.write(chunk, 0, chunk.length);
+        });
+        return out.toByteArray();
+    }
+
+    private Bundle parse(ByteBuffer buffer) {
+        CborParser parser = CBOR.parser()
+                .cbor_parse_custom_item(
+                        () -> new BundleV7Item(
+                                core.getLogger(),
+                                core.getExtensionManager(),
+                                core.getStorage().getBlobFactory()),
+                        (p, t, item) -> p.setReg(0, item.bundle));
+        try {
+            parser.read(buffer);
+        } catch (Exception e) {
+            return null;
+        }
+        return parser.getReg(0);
+    }
+}
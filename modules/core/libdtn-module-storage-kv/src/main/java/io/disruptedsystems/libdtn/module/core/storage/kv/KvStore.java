@@ -0,0 +1,593 @@
+package io.disruptedsystems.libdtn.module.core.storage.kv;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * KvStore is a small embedded log-structured key-value store. Every put and every remove is a
+ * single append at the end of the active data file, and an in-memory table maps every live key
+ * to the location of its latest value. Data files are sealed once they reach a maximum size and
+ * a hint file listing the location of every record is written next to them, so that reopening
+ * the store only reads the hint files and the tail of the active file instead of every value.
+ * Sealed files that are mostly made of dead records are compacted by copying their live records
+ * at the end of the log. A hint file lists the records of its data file and ends with a crc32
+ * of its content, a hint file that does not check is ignored and the data file scanned instead.
+ *
+ * <p>A record is laid out as follow, the checksum covers everything that follows it:
+ *
+ * <pre>
+ *    +-------+------+--------+----------+-----+-------+
+ *    | crc32 | type | keylen | valuelen | key | value |
+ *    | int   | byte | short  | int      |     |       |
+ *    +-------+------+--------+----------+-----+-------+
+ * </pre>
+ *
+ * <p>A remove appends a tombstone record with an empty value.
+ */
+public class KvStore {
+
+    private static final String DATA_PREFIX = "kv-";
+    private static final String DATA_SUFFIX = ".data";
+    private static final String HINT_SUFFIX = ".hint";
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_DEL = 2;
+    private static final int RECORD_HEADER_SIZE = 11; /* crc + type + keylen + valuelen */
+    private static final double COMPACTION_RATIO = 0.5;
+
+    public static class KvException extends IOException {
+        public KvException(String msg) {
+            super(msg);
+        }
+    }
+
+    private static class Location {
+        final int file;
+        final long offset;      /* start of the record */
+        final int keyLength;
+        final int valueLength;
+
+        Location(int file, long offset, int keyLength, int valueLength) {
+            this.file = file;
+            this.offset = offset;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+        }
+
+        long recordLength() {
+            return RECORD_HEADER_SIZE + keyLength + valueLength;
+        }
+
+        long valueOffset() {
+            return offset + RECORD_HEADER_SIZE + keyLength;
+        }
+    }
+
+    private static class DataFile {
+        final int id;
+        final File file;
+        final FileChannel channel;
+        long size;
+        long live;
+
+        DataFile(int id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.size = channel.size();
+        }
+
+        File hint() {
+            return new File(file.getParentFile(), DATA_PREFIX + String.format("%08d", id)
+                    + HINT_SUFFIX);
+        }
+    }
+
+    private final File folder;
+    private final long maxFileSize;
+    private final TreeMap<Integer, DataFile> files = new TreeMap<>();
+    private final Map<String, Location> keydir = new HashMap<>();
+    private final Object compaction = new Object();
+    private DataFile active;
+
+    /**
+     * Constructor.
+     *
+     * @param folder      directory holding the data files
+     * @param maxFileSize size after which the active data file is sealed
+     */
+    public KvStore(File folder, long maxFileSize) {
+        this.folder = folder;
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Open the store and rebuild the key table. Sealed files are loaded from their hint file if
+     * any, the active file is scanned and truncated after its last valid record.
+     *
+     * @throws IOException if the store could not be opened
+     */
+    public synchronized void open() throws IOException {
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new KvException("can't create folder: " + folder.getAbsolutePath());
+        }
+
+        File[] list = folder.listFiles(f -> f.getName().startsWith(DATA_PREFIX)
+                && f.getName().endsWith(DATA_SUFFIX));
+        if (list != null) {
+            for (File f : list) {
+                String name = f.getName();
+                try {
+                    int id = Integer.parseInt(name.substring(DATA_PREFIX.length(),
+                            name.length() - DATA_SUFFIX.length()));
+                    files.put(id, new DataFile(id, f));
+                } catch (NumberFormatException nfe) {
+                    /* not one of ours */
+                }
+            }
+        }
+
+        for (DataFile data : files.values()) {
+            boolean last = data.id == files.lastKey();
+            if (!last && data.hint().exists() && loadHint(data)) {
+                continue;
+            }
+            scan(data, last);
+        }
+
+        if (files.isEmpty()) {
+            roll();
+        } else {
+            active = files.lastEntry().getValue();
+            active.channel.position(active.size);
+        }
+    }
+
+    /**
+     * Close every data file. The store must not be used afterward.
+     */
+    public synchronized void close() {
+        for (DataFile data : files.values()) {
+            try {
+                data.channel.close();
+            } catch (IOException io) {
+                /* ignore */
+            }
+        }
+        files.clear();
+        keydir.clear();
+        active = null;
+    }
+
+    /**
+     * Store a value, replacing the previous one if any.
+     *
+     * @param key   of the value
+     * @param value buffers holding the value, they are consumed
+     * @throws IOException if the value could not be written
+     */
+    public synchronized void put(String key, ByteBuffer... value) throws IOException {
+        int valueLength = 0;
+        for (ByteBuffer buffer : value) {
+            valueLength += buffer.remaining();
+        }
+        append(RECORD_PUT, key, valueLength, value);
+    }
+
+    /**
+     * Remove a value.
+     *
+     * @param key of the value
+     * @return true if the key was removed, false if there was no such key
+     * @throws IOException if the tombstone could not be written
+     */
+    public synchronized boolean remove(String key) throws IOException {
+        if (!keydir.containsKey(key)) {
+            return false;
+        }
+        append(RECORD_DEL, key, 0);
+        return true;
+    }
+
+    /**
+     * Read a value.
+     *
+     * @param key of the value
+     * @return the value or null if there is no such key
+     * @throws IOException if the value could not be read
+     */
+    public synchronized ByteBuffer get(String key) throws IOException {
+        Location location = keydir.get(key);
+        if (location == null) {
+            return null;
+        }
+        return read(location, 0, location.valueLength);
+    }
+
+    /**
+     * Read the first bytes of a value.
+     *
+     * @param key    of the value
+     * @param length maximum number of bytes to read
+     * @return the first bytes of the value or null if there is no such key
+     * @throws IOException if the value could not be read
+     */
+    public synchronized ByteBuffer peek(String key, int length) throws IOException {
+        Location location = keydir.get(key);
+        if (location == null) {
+            return null;
+        }
+        return read(location, 0, Math.min(length, location.valueLength));
+    }
+
+    public synchronized boolean contains(String key) {
+        return keydir.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return keydir.size();
+    }
+
+    /**
+     * List the live keys.
+     *
+     * @return a copy of the live keys
+     */
+    public synchronized List<String> keys() {
+        return new ArrayList<>(keydir.keySet());
+    }
+
+    /**
+     * Flush the active data file to the device.
+     *
+     * @throws IOException if the file could not be flushed
+     */
+    public synchronized void sync() throws IOException {
+        active.channel.force(false);
+    }
+
+    /**
+     * Compact the sealed data files that are mostly made of dead records. Their live records are
+     * appended to the log and the files are deleted. The store is only locked to copy one record
+     * at a time so that puts and gets go on meanwhile.
+     *
+     * @return number of data files deleted
+     * @throws IOException if compaction failed, the store remains consistent
+     */
+    public int compact() throws IOException {
+        synchronized (compaction) {
+            List<DataFile> candidates = new LinkedList<>();
+            synchronized (this) {
+                for (DataFile data : files.values()) {
+                    if (data != active && data.live < data.size * COMPACTION_RATIO) {
+                        candidates.add(data);
+                    }
+                }
+            }
+
+            for (DataFile data : candidates) {
+                /* a sealed file is never written again, it is read without the lock */
+                for (Location record : records(data)) {
+                    String key = readKey(data, record);
+                    ByteBuffer value = (record.valueLength < 0)
+                            ? null
+                            : read(data, record, 0, record.valueLength);
+                    synchronized (this) {
+                        if (files.get(data.id) != data) {
+                            throw new KvException("store closed during compaction");
+                        }
+                        Location live = keydir.get(key);
+                        boolean isLive = live != null
+                                && live.file == data.id
+                                && live.offset == record.offset;
+                        if (isLive) {
+                            append(RECORD_PUT, key, record.valueLength, value);
+                        } else if (value == null && live == null
+                                && files.firstKey() < data.id) {
+                            /* tombstone still cancels a record in an older file */
+                            append(RECORD_DEL, key, 0);
+                        }
+                    }
+                }
+
+                /* the copies are durable before the original records are deleted */
+                DataFile target;
+                synchronized (this) {
+                    target = active;
+                }
+                target.channel.force(false);
+                synchronized (this) {
+                    if (files.get(data.id) != data) {
+                        throw new KvException("store closed during compaction");
+                    }
+                    files.remove(data.id);
+                }
+                data.channel.close();
+                data.hint().delete();
+                data.file.delete();
+            }
+            return candidates.size();
+        }
+    }
+
+    private void append(byte type, String key, int valueLength, ByteBuffer... value)
+            throws IOException {
+        byte[] bkey = key.getBytes(StandardCharsets.UTF_8);
+        if (bkey.length > Short.MAX_VALUE) {
+            throw new KvException("key too long");
+        }
+        long recordLength = RECORD_HEADER_SIZE + bkey.length + valueLength;
+        if (active.size > 0 && active.size + recordLength > maxFileSize) {
+            roll();
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE + bkey.length);
+        header.putInt(0);
+        header.put(type);
+        header.putShort((short) bkey.length);
+        header.putInt(type == RECORD_DEL ? -1 : valueLength);
+        header.put(bkey);
+        header.flip();
+
+        CRC32 crc = new CRC32();
+        ByteBuffer body = header.duplicate();
+        body.position(4);
+        crc.update(body);
+        for (ByteBuffer buffer : value) {
+            crc.update(buffer.duplicate());
+        }
+        header.putInt(0, (int) crc.getValue());
+
+        ByteBuffer[] buffers = new ByteBuffer[value.length + 1];
+        buffers[0] = header;
+        System.arraycopy(value, 0, buffers, 1, value.length);
+        long offset = active.size;
+        long written = 0;
+        try {
+            while (written < recordLength) {
+                written += active.channel.write(buffers);
+            }
+        } catch (IOException io) {
+            /* drop the partial record so that the log stays readable */
+            active.channel.truncate(offset);
+            active.channel.position(offset);
+            throw io;
+        }
+        active.size += recordLength;
+
+        Location location = new Location(active.id, offset, bkey.length,
+                type == RECORD_DEL ? -1 : valueLength);
+        apply(key, location);
+    }
+
+    /* update the key table with a new record */
+    private void apply(String key, Location location) {
+        Location previous = (location.valueLength < 0)
+                ? keydir.remove(key)
+                : keydir.put(key, location);
+        if (previous != null && files.containsKey(previous.file)) {
+            files.get(previous.file).live -= previous.recordLength();
+        }
+        if (location.valueLength >= 0) {
+            files.get(location.file).live += location.recordLength();
+        }
+    }
+
+    private void roll() throws IOException {
+        int id = 0;
+        if (active != null) {
+            active.channel.force(false);
+            writeHint(active);
+            id = active.id + 1;
+        } else if (!files.isEmpty()) {
+            id = files.lastKey() + 1;
+        }
+        File file = new File(folder, DATA_PREFIX + String.format("%08d", id) + DATA_SUFFIX);
+        active = new DataFile(id, file);
+        files.put(id, active);
+    }
+
+    private ByteBuffer read(Location location, long offset, int length) throws IOException {
+        return read(files.get(location.file), location, offset, length);
+    }
+
+    private static ByteBuffer read(DataFile data, Location location, long offset, int length)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        FileChannel channel = data.channel;
+        long position = location.valueOffset() + offset;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new KvException("truncated value");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static String readKey(DataFile data, Location location) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(location.keyLength);
+        while (buffer.hasRemaining()) {
+            if (data.channel.read(buffer,
+                    location.offset + RECORD_HEADER_SIZE + buffer.position()) < 0) {
+                throw new KvException("truncated key");
+            }
+        }
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    /* list the records of a data file by walking the record headers only */
+    private static List<Location> records(DataFile data) throws IOException {
+        List<Location> records = new LinkedList<>();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        long offset = 0;
+        while (offset + RECORD_HEADER_SIZE <= data.size) {
+            header.clear();
+            while (header.hasRemaining()) {
+                if (data.channel.read(header, offset + header.position()) < 0) {
+                    return records;
+                }
+            }
+            header.flip();
+            header.getInt();
+            header.get();
+            int keyLength = header.getShort();
+            int valueLength = header.getInt();
+            Location location = new Location(data.id, offset, keyLength, valueLength);
+            records.add(location);
+            offset += RECORD_HEADER_SIZE + keyLength + Math.max(0, valueLength);
+        }
+        return records;
+    }
+
+    /*
+     * read every record of a data file and check its checksum. If the file is the active one,
+     * it is truncated after the last valid record, otherwise the file is considered corrupted.
+     */
+    private void scan(DataFile data, boolean active) throws IOException {
+        long offset = 0;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(data.file), 65536))) {
+            while (true) {
+                int crc;
+                try {
+                    crc = in.readInt();
+                } catch (EOFException eof) {
+                    break;
+                }
+                byte type = in.readByte();
+                int keyLength = in.readShort();
+                int valueLength = in.readInt();
+                if ((type != RECORD_PUT && type != RECORD_DEL) || keyLength < 0) {
+                    throw new KvException("bad record");
+                }
+                byte[] key = new byte[keyLength];
+                in.readFully(key);
+                byte[] value = new byte[Math.max(0, valueLength)];
+                in.readFully(value);
+
+                CRC32 check = new CRC32();
+                ByteBuffer head = ByteBuffer.allocate(7);
+                head.put(type).putShort((short) keyLength).putInt(valueLength).flip();
+                check.update(head);
+                check.update(key);
+                check.update(value);
+                if ((int) check.getValue() != crc) {
+                    throw new KvException("bad checksum");
+                }
+
+                apply(new String(key, StandardCharsets.UTF_8),
+                        new Location(data.id, offset, keyLength, valueLength));
+                offset += RECORD_HEADER_SIZE + keyLength + value.length;
+            }
+        } catch (IOException io) {
+            if (!active) {
+                throw new KvException("corrupted data file: " + data.file.getName());
+            }
+            /* torn write at the end of the log */
+        }
+
+        if (offset < data.size) {
+            data.channel.truncate(offset);
+            data.size = offset;
+        }
+    }
+
+    /*
+     * write the hint file of a sealed data file. It is written aside, flushed, then renamed and
+     * the folder flushed so that a hint file is either complete or absent after a crash.
+     */
+    private void writeHint(DataFile data) throws IOException {
+        File tmp = new File(folder, data.hint().getName() + ".tmp");
+        List<Location> records = records(data);
+        try (FileOutputStream file = new FileOutputStream(tmp)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(file), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(records.size());
+            for (Location record : records) {
+                byte[] key = readKey(data, record).getBytes(StandardCharsets.UTF_8);
+                out.writeLong(record.offset);
+                out.writeInt(record.valueLength);
+                out.writeShort(key.length);
+                out.write(key);
+            }
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            file.getChannel().force(false);
+        }
+        try {
+            Files.move(tmp.toPath(), data.hint().toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException io) {
+            tmp.delete();
+            return;
+        }
+        syncFolder();
+    }
+
+    /* load the records of a data file from its hint file, false if the hint file is invalid */
+    private boolean loadHint(DataFile data) {
+        List<Map.Entry<String, Location>> records = new LinkedList<>();
+        try (CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(data.hint()), 65536), new CRC32())) {
+            DataInputStream in = new DataInputStream(checked);
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long offset = in.readLong();
+                int valueLength = in.readInt();
+                byte[] key = new byte[in.readShort()];
+                in.readFully(key);
+                if (offset < 0 || offset + RECORD_HEADER_SIZE + key.length
+                        + Math.max(0, valueLength) > data.size) {
+                    return false;
+                }
+                records.add(new AbstractMap.SimpleEntry<>(new String(key, StandardCharsets.UTF_8),
+                        new Location(data.id, offset, key.length, valueLength)));
+            }
+            int crc = (int) checked.getChecksum().getValue();
+            if (in.readInt() != crc || in.read() != -1) {
+                return false;
+            }
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+
+        for (Map.Entry<String, Location> record : records) {
+            apply(record.getKey(), record.getValue());
+        }
+        return true;
+    }
+
+    private void syncFolder() {
+        try (FileChannel channel = FileChannel.open(folder.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException io) {
+            /* not supported */
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package io.disruptedsystems.libdtn.module.core.storage.kv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test class for the KvStore.
+ */
+public class KvStoreTest {
+
+    @Rule
+    public TemporaryFolder dir = new TemporaryFolder();
+
+    private static ByteBuffer value(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] b = new byte[buffer.remaining()];
+        buffer.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testStore() throws IOException {
+        System.out.println("[+] KvStore");
+        File folder = dir.newFolder();
+
+        System.out.println("[.] put get remove");
+        KvStore store = new KvStore(folder, 256);
+        store.open();
+        for (int i = 0; i < 20; i++) {
+            store.put("key" + i, value("val"), value("ue" + i));
+        }
+        assertEquals(20, store.size());
+        assertEquals("value7", string(store.get("key7")));
+        assertEquals("va", string(store.peek("key7", 2)));
+        for (int i = 0; i < 20; i += 2) {
+            assertTrue(store.remove("key" + i));
+        }
+        assertFalse(store.remove("key0"));
+        assertNull(store.get("key0"));
+        assertEquals(10, store.size());
+        store.close();
+
+        System.out.println("[.] reopen rebuilds the keydir");
+        store = new KvStore(folder, 256);
+        store.open();
+        assertEquals(10, store.size());
+        assertFalse(store.contains("key4"));
+        assertEquals("value9", string(store.get("key9")));
+
+        System.out.println("[.] compaction keeps live records only");
+        int before = folder.list().length;
+        assertTrue(store.compact() > 0);
+        assertTrue(folder.list().length < before);
+        store.close();
+        store = new KvStore(folder, 256);
+        store.open();
+        assertEquals(10, store.size());
+        assertFalse(store.contains("key4"));
+        for (int i = 1; i < 20; i += 2) {
+            assertEquals("value" + i, string(store.get("key" + i)));
+        }
+        store.close();
+    }
+
+    @Test
+    public void testHintFiles() throws IOException {
+        System.out.println("[+] KvStore hint files");
+        File folder = dir.newFolder();
+        KvStore store = new KvStore(folder, 256);
+        store.open();
+        for (int i = 0; i < 20; i++) {
+            store.put("key" + i, value("value" + i));
+        }
+        store.close();
+
+        System.out.println("[.] a corrupted hint file is ignored");
+        File[] hints = folder.listFiles(f -> f.getName().endsWith(".hint"));
+        assertTrue(hints.length > 0);
+        for (File hint : hints) {
+            try (RandomAccessFile file = new RandomAccessFile(hint, "rw")) {
+                file.seek(file.length() / 2);
+                int b = file.read();
+                file.seek(file.length() / 2);
+                file.write(b ^ 0xff);
+            }
+        }
+        assertEquals(0, folder.listFiles(f -> f.getName().endsWith(".tmp")).length);
+        store = new KvStore(folder, 256);
+        store.open();
+        assertEquals(20, store.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("value" + i, string(store.get("key" + i)));
+        }
+        store.close();
+    }
+
+    @Test
+    public void testConcurrentCompaction() throws Exception {
+        System.out.println("[+] KvStore compaction");
+        File folder = dir.newFolder();
+        KvStore store = new KvStore(folder, 256);
+        store.open();
+        for (int i = 0; i < 200; i++) {
+            store.put("key" + i, value("value" + i));
+        }
+        for (int i = 0; i < 200; i++) {
+            if (i % 10 != 0) {
+                store.remove("key" + i);
+            }
+        }
+
+        System.out.println("[.] puts go on while the store is compacted");
+        AtomicReference<IOException> error = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 200; i++) {
+                    store.put("new" + i, value("new" + i));
+                    store.put("key0", value("updated" + i));
+                }
+            } catch (IOException io) {
+                error.set(io);
+            }
+        });
+        writer.start();
+        assertTrue(store.compact() > 0);
+        writer.join();
+        assertNull(error.get());
+
+        System.out.println("[.] no record is lost or resurrected");
+        assertEquals(220, store.size());
+        assertEquals("updated199", string(store.get("key0")));
+        assertFalse(store.contains("key1"));
+        store.close();
+        store.open();
+        assertEquals(220, store.size());
+        assertEquals("updated199", string(store.get("key0")));
+        for (int i = 10; i < 200; i += 10) {
+            assertEquals("value" + i, string(store.get("key" + i)));
+        }
+        for (int i = 0; i < 200; i++) {
+            assertEquals("new" + i, string(store.get("new" + i)));
+        }
+        store.close();
+    }
+}
@@ -30,6 +30,7 @@ cp modules/aa/ldcp/libdtn-module-ldcp/build/libs/libdtn-module-ldcp.jar linux-dt
 cp modules/cla/libdtn-module-stcp/build/libs/libdtn-module-stcp.jar linux-dtn/modules/cla
 cp modules/core/libdtn-module-hello/build/libs/libdtn-module-hello.jar linux-dtn/modules/core
 cp modules/core/libdtn-module-ipdiscovery/build/libs/libdtn-module-ipdiscovery.jar linux-dtn/modules/core
+cp modules/core/libdtn-module-storage-kv/build/libs/libdtn-module-storage-kv.jar linux-dtn/modules/core
 
 # tar
 tar cvzf ./linux-dtn.tar.gz ./linux-dtn/